@@ -8,7 +8,10 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.stereotype.Component;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import ru.fitness.backend.exceptions.PasswordHashingBusyException;
+import ru.fitness.backend.services.LoginThrottle;
 
 import java.io.IOException;
 
@@ -16,11 +19,22 @@ import static org.springframework.security.web.WebAttributes.AUTHENTICATION_EXCE
 
 @Component
 @Slf4j
+@RequiredArgsConstructor
 public class CustomAuthenticationFailureHandler implements AuthenticationFailureHandler {
 
+    private final LoginThrottle loginThrottle;
+
     @Override
     public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response, AuthenticationException exception) throws IOException, ServletException {
+        if (exception instanceof PasswordHashingBusyException) {
+            // Пароль не проверялся - это не неудачная попытка, клиенту сразу отвечаем "повторите позже"
+            log.warn("Login rejected, password hashing pool is busy");
+            response.setHeader("Retry-After", "5");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, exception.getMessage());
+            return;
+        }
         log.error("Authentication failed: {} - {}", exception.getClass().getName(), exception.getMessage());
+        loginThrottle.recordFailure(request.getRemoteAddr(), request.getParameter("username"));
         
         String errorMessage = "Неверный логин или пароль";
 
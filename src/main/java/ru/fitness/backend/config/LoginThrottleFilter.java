@@ -0,0 +1,43 @@
+package ru.fitness.backend.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.fitness.backend.services.LoginThrottle;
+
+import java.io.IOException;
+
+/**
+ * Отклоняет отправку формы входа, если для адреса или учётной записи превышено число неудачных попыток,
+ * до того как пароль попадёт в BCrypt.
+ */
+@Slf4j
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private final LoginThrottle loginThrottle;
+
+    public LoginThrottleFilter(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !("POST".equals(request.getMethod()) && "/login".equals(request.getServletPath()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String username = request.getParameter("username");
+        if (loginThrottle.isBlocked(request.getRemoteAddr(), username)) {
+            log.warn("Попытка входа {} с {} отклонена: слишком много неудачных попыток", username, request.getRemoteAddr());
+            request.getSession().setAttribute("errorMessage", "Слишком много неудачных попыток входа. Попробуйте позже.");
+            response.sendRedirect("/login?error");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
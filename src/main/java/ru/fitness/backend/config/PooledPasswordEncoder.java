@@ -0,0 +1,34 @@
+package ru.fitness.backend.config;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.fitness.backend.services.PasswordHashingPool;
+
+/**
+ * Кодировщик паролей, выполняющий вычисления делегата в пуле {@link PasswordHashingPool},
+ * а не в потоке обработки запроса.
+ */
+public class PooledPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingPool pool;
+
+    public PooledPasswordEncoder(PasswordEncoder delegate, PasswordHashingPool pool) {
+        this.delegate = delegate;
+        this.pool = pool;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return pool.execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return pool.execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
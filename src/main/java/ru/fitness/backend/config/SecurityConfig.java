@@ -1,6 +1,7 @@
 package ru.fitness.backend.config;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -11,7 +12,10 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import ru.fitness.backend.services.CustomUserDetailsService;
+import ru.fitness.backend.services.LoginThrottle;
+import ru.fitness.backend.services.PasswordHashingPool;
 
 @Configuration
 @EnableWebSecurity
@@ -21,12 +25,14 @@ public class SecurityConfig {
 
     private final CustomUserDetailsService userDetailsService;
     private final CustomAuthenticationFailureHandler customAuthenticationFailureHandler;
+    private final LoginThrottle loginThrottle;
+    private final PasswordHashingPool passwordHashingPool;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .authorizeHttpRequests((requests) -> requests
-                        .requestMatchers("/login", "/registration", "/error", "/css/**", "/js/**", "/images/**").permitAll()
+                        .requestMatchers("/login", "/registration", "/error", "/news/feed.atom", "/css/**", "/js/**", "/images/**").permitAll()
                         .anyRequest().authenticated()
                 )
                 .formLogin((form) -> form
@@ -45,22 +51,27 @@ public class SecurityConfig {
                         .permitAll())
                 .csrf(csrf -> csrf
                         .ignoringRequestMatchers("/error")
-                );
+                )
+                // Перебор паролей отсекается до проверки пароля
+                .addFilterBefore(new LoginThrottleFilter(loginThrottle), UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setUserDetailsService(userDetailsService);
-        provider.setPasswordEncoder(passwordEncoder());
+        provider.setPasswordEncoder(passwordEncoder);
         provider.setHideUserNotFoundExceptions(false); // Enable to differentiate UsernameNotFoundException
         return provider;
     }
 
+    /**
+     * BCrypt считается в отдельном ограниченном пуле, а не в потоках Tomcat.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+    public PasswordEncoder passwordEncoder(@Value("${fitness.password-hashing.bcrypt-strength:10}") int strength) {
+        return new PooledPasswordEncoder(new BCryptPasswordEncoder(strength), passwordHashingPool);
     }
 }
@@ -2,21 +2,39 @@ package ru.fitness.backend.controllers;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import ru.fitness.backend.dto.CursorPageDto;
+import ru.fitness.backend.dto.NewsSummaryView;
+import ru.fitness.backend.dto.RosterEntryView;
 import ru.fitness.backend.dto.ScheduleDto;
+import ru.fitness.backend.dto.StatsTimelineDto;
 import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.StatsRollup;
+import ru.fitness.backend.models.User;
 import ru.fitness.backend.models.WorkoutType;
 import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.services.AvailabilityHeatmap;
+import ru.fitness.backend.services.CascadeDeleteJobService;
 import ru.fitness.backend.services.DashboardService;
+import ru.fitness.backend.services.NewsService;
+import ru.fitness.backend.services.RosterService;
 import ru.fitness.backend.services.ScheduleService;
+import ru.fitness.backend.services.StatsRollupService;
+import ru.fitness.backend.services.UserImportService;
 import ru.fitness.backend.services.UserService;
 import ru.fitness.backend.services.WorkoutTypeService;
 
+import java.io.InputStream;
+import java.util.HashSet;
+
 @Controller
 @RequestMapping("/admin")
 @RequiredArgsConstructor
@@ -28,12 +46,23 @@ public class AdminController {
     private final WorkoutTypeService workoutTypeService;
     private final UserService userService;
     private final DashboardService dashboardService;
-    private final ru.fitness.backend.services.NewsService newsService;
+    private final NewsService newsService;
+    private final CascadeDeleteJobService cascadeDeleteJobService;
+    private final AvailabilityHeatmap availabilityHeatmap;
+    private final RosterService rosterService;
+    private final UserImportService userImportService;
+    private final StatsRollupService statsRollupService;
 
     // --- News Management ---
     @GetMapping("/news")
-    public String listNews(Model model) {
-        model.addAttribute("newsList", newsService.getAllNews());
+    public String listNews(@RequestParam(value = "after", required = false) String after,
+                           @RequestParam(value = "size", defaultValue = "20") int size,
+                           Model model) {
+        int pageSize = Math.max(1, Math.min(size, 100));
+        CursorPageDto<NewsSummaryView> page = newsService.findArchivePage(after, pageSize);
+        model.addAttribute("newsList", page.getItems());
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("size", pageSize);
         return "admin/news";
     }
 
@@ -88,7 +117,7 @@ public class AdminController {
 
     @GetMapping("/users")
     public String listUsers(@RequestParam(value = "keyword", required = false) String keyword,
-                            @RequestParam(value = "sortField", defaultValue = "id") String sortField,
+                            @RequestParam(value = "sortField", required = false) String sortField,
                             @RequestParam(value = "sortDir", defaultValue = "asc") String sortDir,
                             Model model) {
         model.addAttribute("users", userService.findUsers(keyword, sortField, sortDir));
@@ -98,6 +127,27 @@ public class AdminController {
         return "admin/users";
     }
 
+    @GetMapping("/users/import")
+    public String showUserImportForm(Model model) {
+        model.addAttribute("importJobs", userImportService.findJobs());
+        return "admin/user-import";
+    }
+
+    @PostMapping("/users/import")
+    public String importUsers(@RequestParam("file") MultipartFile file, RedirectAttributes redirectAttributes) {
+        if (file.isEmpty()) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Выберите CSV-файл для импорта.");
+            return "redirect:/admin/users/import";
+        }
+        try (InputStream input = file.getInputStream()) {
+            userImportService.startImport(file.getOriginalFilename(), input);
+            redirectAttributes.addFlashAttribute("successMessage", "Импорт запущен в фоне, прогресс отображается ниже.");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Ошибка при загрузке файла: " + e.getMessage());
+        }
+        return "redirect:/admin/users/import";
+    }
+
     @GetMapping("/users/edit/{id}")
     public String showEditUserForm(@PathVariable("id") Long userId, Model model) {
         try {
@@ -111,12 +161,12 @@ public class AdminController {
 
     @PostMapping("/users/edit/{id}")
     public String updateUserRoles(@PathVariable("id") Long userId,
-                                @RequestParam(value = "roles", required = false) java.util.HashSet<Role> roles,
+                                @RequestParam(value = "roles", required = false) HashSet<Role> roles,
                                 RedirectAttributes redirectAttributes) {
         try {
             // Ensure roles are not null if no checkboxes are selected
             if (roles == null) {
-                roles = new java.util.HashSet<>();
+                roles = new HashSet<>();
             }
             // A user must have at least ROLE_USER
             roles.add(Role.ROLE_USER);
@@ -143,7 +193,7 @@ public class AdminController {
     @GetMapping("/users/{id}/subscriptions")
     public String listUserSubscriptions(@PathVariable("id") Long userId, Model model, RedirectAttributes redirectAttributes) {
         try {
-            ru.fitness.backend.models.User user = userService.findById(userId);
+            User user = userService.findById(userId);
             model.addAttribute("user", user);
             model.addAttribute("subscriptions", scheduleService.findSubscriptionsForUser(user));
             return "admin/user-subscriptions";
@@ -167,14 +217,18 @@ public class AdminController {
     }
 
     @GetMapping("/schedule/{id}/subscribers")
-    public String listScheduleSubscribers(@PathVariable("id") Long scheduleId, Model model, RedirectAttributes redirectAttributes) {
+    public String listScheduleSubscribers(@PathVariable("id") Long scheduleId,
+                                          @RequestParam(value = "after", required = false) String after,
+                                          @RequestParam(value = "size", defaultValue = "50") int size,
+                                          Model model, RedirectAttributes redirectAttributes) {
         try {
-            ru.fitness.backend.models.Schedule schedule = scheduleService.findById(scheduleId);
-            model.addAttribute("schedule", schedule);
-            // Reusing the same method but passing the trainer from the schedule to bypass check or add a new method
-            // Actually, findSubscribersForSchedule checks if trainer matches.
-            // We need a method for admin that doesn't check trainer ownership.
-            model.addAttribute("subscribers", scheduleService.findSubscribersForScheduleAdmin(scheduleId));
+            int pageSize = Math.max(1, Math.min(size, 200));
+            model.addAttribute("schedule", rosterService.findSchedule(scheduleId));
+            CursorPageDto<RosterEntryView> roster = rosterService.findRoster(scheduleId, after, pageSize);
+            model.addAttribute("subscribers", roster.getItems());
+            model.addAttribute("nextCursor", roster.getNextCursor());
+            model.addAttribute("bookedCount", rosterService.countBooked(scheduleId));
+            model.addAttribute("size", pageSize);
             return "admin/schedule-subscribers";
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Ошибка при получении списка: " + e.getMessage());
@@ -190,6 +244,40 @@ public class AdminController {
         return "admin/dashboard";
     }
 
+    // --- Historical Statistics ---
+
+    @GetMapping("/stats")
+    public String statistics(@RequestParam(value = "days", defaultValue = "90") int days, Model model) {
+        int period = Math.max(1, Math.min(days, 730));
+        model.addAttribute("days", period);
+        model.addAttribute("timeline", statsRollupService.getTimeline(period));
+        model.addAttribute("byWorkoutType", statsRollupService.getBreakdown(StatsRollup.Dimension.WORKOUT_TYPE, period));
+        model.addAttribute("byTrainer", statsRollupService.getBreakdown(StatsRollup.Dimension.TRAINER, period));
+        model.addAttribute("processedUntil", statsRollupService.getProcessedUntil());
+        model.addAttribute("rollupJob", statsRollupService.findJob().orElse(null));
+        return "admin/stats";
+    }
+
+    @GetMapping(value = "/stats/timeline", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public StatsTimelineDto statisticsTimeline(@RequestParam(value = "days", defaultValue = "90") int days) {
+        return statsRollupService.getTimeline(Math.max(1, Math.min(days, 730)));
+    }
+
+    @PostMapping("/stats/backfill")
+    public String backfillStatistics(@RequestParam(value = "days", defaultValue = "730") int days,
+                                     RedirectAttributes redirectAttributes) {
+        int period = Math.max(1, Math.min(days, 3650));
+        try {
+            statsRollupService.startBackfill(period);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Пересчёт статистики за " + period + " дн. запущен в фоне. Прогресс отображается на этой странице.");
+        } catch (IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+        return "redirect:/admin/stats";
+    }
+
     // --- Schedule Management ---
 
     @GetMapping("/schedule/new")
@@ -224,7 +312,7 @@ public class AdminController {
     @GetMapping("/schedule/edit/{id}")
     public String showEditScheduleForm(@PathVariable("id") Long scheduleId, Model model) {
         try {
-            ru.fitness.backend.models.Schedule schedule = scheduleService.findById(scheduleId);
+            Schedule schedule = scheduleService.findById(scheduleId);
             ScheduleDto dto = new ScheduleDto();
             dto.setId(schedule.getId());
             dto.setTrainerId(schedule.getTrainer().getId());
@@ -274,11 +362,19 @@ public class AdminController {
         return "redirect:/schedule";
     }
 
+    @PostMapping("/heatmap/rebuild")
+    public String rebuildHeatmap(RedirectAttributes redirectAttributes) {
+        availabilityHeatmap.rebuild();
+        redirectAttributes.addFlashAttribute("successMessage", "Тепловая карта пересобрана.");
+        return "redirect:/schedule/heatmap";
+    }
+
     // --- Workout Type Management ---
 
     @GetMapping("/workout-types")
     public String listWorkoutTypes(Model model) {
         model.addAttribute("workoutTypes", workoutTypeService.findAll());
+        model.addAttribute("deletionJobs", cascadeDeleteJobService.findJobs());
         return "admin/workout-types";
     }
 
@@ -336,8 +432,11 @@ public class AdminController {
     @PostMapping("/workout-types/delete/{id}")
     public String deleteWorkoutType(@PathVariable("id") Long id, RedirectAttributes redirectAttributes) {
         try {
-            workoutTypeService.deleteWorkoutType(id);
-            redirectAttributes.addFlashAttribute("successMessage", "Тип тренировки и все связанные занятия успешно удалены.");
+            String message = cascadeDeleteJobService.deleteWorkoutType(id)
+                    .map(job -> "Удаление типа \"" + job.getTitle() + "\" и " + job.getTotal() +
+                            " связанных занятий запущено в фоне. Прогресс отображается ниже.")
+                    .orElse("Тип тренировки и все связанные занятия успешно удалены.");
+            redirectAttributes.addFlashAttribute("successMessage", message);
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Ошибка: " + e.getMessage());
         }
@@ -1,5 +1,6 @@
 package ru.fitness.backend.controllers;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -10,6 +11,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import ru.fitness.backend.dto.UserRegistrationDto;
+import ru.fitness.backend.exceptions.PasswordHashingBusyException;
 import ru.fitness.backend.exceptions.UserAlreadyExistException;
 import ru.fitness.backend.services.UserService;
 
@@ -35,6 +37,7 @@ public class AuthController {
             @Valid @ModelAttribute("userDto") UserRegistrationDto userDto,
             BindingResult bindingResult,
             Model model,
+            HttpServletResponse response,
             RedirectAttributes redirectAttributes) {
 
         if (bindingResult.hasErrors()) {
@@ -48,6 +51,11 @@ public class AuthController {
         } catch (UserAlreadyExistException e) {
             model.addAttribute("registrationError", e.getMessage());
             return "registration";
+        } catch (PasswordHashingBusyException e) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "5");
+            model.addAttribute("registrationError", e.getMessage());
+            return "registration";
         } catch (Exception e) {
             model.addAttribute("registrationError", "Произошла непредвиденная ошибка при регистрации.");
             return "registration";
@@ -0,0 +1,36 @@
+package ru.fitness.backend.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ru.fitness.backend.services.ContentVersions;
+import ru.fitness.backend.services.NewsFeedWriter;
+
+@Controller
+@RequiredArgsConstructor
+public class NewsController {
+
+    private static final MediaType ATOM = MediaType.parseMediaType("application/atom+xml;charset=UTF-8");
+
+    private final NewsFeedWriter newsFeedWriter;
+    private final ContentVersions contentVersions;
+
+    /**
+     * Atom-лента новостей. Читалки опрашивают её часто, поэтому без изменений новостей ответ - 304 без обращения к базе.
+     */
+    @GetMapping("/news/feed.atom")
+    public ResponseEntity<StreamingResponseBody> feed(WebRequest webRequest) {
+        if (contentVersions.checkSharedNotModified(webRequest, ContentVersions.Aggregate.NEWS)) {
+            return null;
+        }
+        // Адрес берётся в потоке запроса: тело пишется асинхронно, когда запроса уже нет в контексте
+        String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().toUriString();
+        StreamingResponseBody body = out -> newsFeedWriter.write(out, baseUrl);
+        return ResponseEntity.ok().contentType(ATOM).body(body);
+    }
+}
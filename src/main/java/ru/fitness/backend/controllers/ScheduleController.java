@@ -2,6 +2,7 @@ package ru.fitness.backend.controllers;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.orm.jpa.JpaSystemException;
 import org.springframework.transaction.TransactionSystemException;
 import org.springframework.stereotype.Controller;
@@ -9,16 +10,40 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import ru.fitness.backend.dto.SchedulePageDto;
+import ru.fitness.backend.dto.SearchSuggestionDto;
+import ru.fitness.backend.dto.ScheduleView;
+import ru.fitness.backend.dto.SeriesBookingResultDto;
 import ru.fitness.backend.exceptions.AlreadySignedUpException;
 import ru.fitness.backend.exceptions.NoAvailableSlotsException;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.services.AdmissionQueue;
+import ru.fitness.backend.services.AvailabilityHeatmap;
+import ru.fitness.backend.services.BookedScheduleIndex;
+import ru.fitness.backend.services.BookingWindowPolicy;
+import ru.fitness.backend.services.ContentVersions;
+import ru.fitness.backend.services.IdempotencyCache;
 import ru.fitness.backend.services.ScheduleService;
+import ru.fitness.backend.services.SearchIndex;
+import ru.fitness.backend.services.SlotAvailabilityBroadcaster;
+import ru.fitness.backend.services.TimetableSnapshot;
 import ru.fitness.backend.services.UserService;
+import ru.fitness.backend.services.WaitlistService;
 import ru.fitness.backend.services.WorkoutTypeService;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Controller
 @RequiredArgsConstructor
@@ -27,6 +52,16 @@ public class ScheduleController {
     private final ScheduleService scheduleService;
     private final UserService userService;
     private final WorkoutTypeService workoutTypeService;
+    private final WaitlistService waitlistService;
+    private final IdempotencyCache idempotencyCache;
+    private final BookingWindowPolicy bookingWindowPolicy;
+    private final AdmissionQueue admissionQueue;
+    private final BookedScheduleIndex bookedScheduleIndex;
+    private final SearchIndex searchIndex;
+    private final ContentVersions contentVersions;
+    private final SlotAvailabilityBroadcaster slotAvailabilityBroadcaster;
+    private final AvailabilityHeatmap availabilityHeatmap;
+    private final TimetableSnapshot timetableSnapshot;
 
     @GetMapping("/schedule")
     public String showSchedule(@RequestParam(value = "keyword", required = false) String keyword,
@@ -34,91 +69,219 @@ public class ScheduleController {
                                @RequestParam(value = "workoutTypeId", required = false) Long workoutTypeId,
                                @RequestParam(value = "sortField", defaultValue = "startTime") String sortField,
                                @RequestParam(value = "sortDir", defaultValue = "asc") String sortDir,
+                               @RequestParam(value = "upcomingAfter", required = false) String upcomingAfter,
+                               @RequestParam(value = "pastAfter", required = false) String pastAfter,
+                               @RequestParam(value = "size", defaultValue = "12") int size,
+                               WebRequest webRequest,
                                Model model) {
-        java.util.List<ru.fitness.backend.models.Schedule> allSchedules = scheduleService.findSchedules(keyword, date, workoutTypeId, sortField, sortDir);
-        java.time.LocalDateTime now = java.time.LocalDateTime.now();
-        
-        // Разделяем на актуальные (будущие) и прошедшие
-        java.util.List<ru.fitness.backend.models.Schedule> activeSchedules = allSchedules.stream()
-                .filter(s -> s.getStartTime().isAfter(now))
-                .collect(java.util.stream.Collectors.toList());
-        
-        java.util.List<ru.fitness.backend.models.Schedule> pastSchedules = allSchedules.stream()
-                .filter(s -> s.getStartTime().isBefore(now))
-                .collect(java.util.stream.Collectors.toList());
-        
-        // Применяем дополнительную сортировку только если выбрана сортировка по времени (по умолчанию)
-        // Для других сортировок (по местам, по названию и т.д.) используем уже отсортированный список
-        if ("startTime".equals(sortField) || sortField == null || sortField.isEmpty()) {
-            // Для сортировки по времени: сначала со свободными местами, потом без мест, затем по времени
-            activeSchedules = activeSchedules.stream()
-                    .sorted((a, b) -> {
-                        // Сначала со свободными местами, потом без мест
-                        if (a.getAvailableSlots() > 0 && b.getAvailableSlots() == 0) return -1;
-                        if (a.getAvailableSlots() == 0 && b.getAvailableSlots() > 0) return 1;
-                        // Если одинаково, сортируем по времени
-                        return a.getStartTime().compareTo(b.getStartTime());
-                    })
-                    .collect(java.util.stream.Collectors.toList());
+        // Расписание, типы и тренеры не менялись, записи пользователя тоже - страница у клиента актуальна.
+        // Предстоящие тренировки берутся из снимка, поэтому в ETag входит версия опубликованного снимка
+        if (contentVersions.checkNotModified(webRequest, true, timetableSnapshot.getVersion(), ContentVersions.Aggregate.SCHEDULES,
+                ContentVersions.Aggregate.WORKOUT_TYPES, ContentVersions.Aggregate.TRAINERS)) {
+            return null;
         }
-        
-        // Прошедшие всегда сортируем по убыванию времени (самые свежие сверху)
-        pastSchedules = pastSchedules.stream()
-                .sorted((a, b) -> b.getStartTime().compareTo(a.getStartTime()))
-                .collect(java.util.stream.Collectors.toList());
-        
-        model.addAttribute("activeSchedules", activeSchedules);
-        model.addAttribute("pastSchedules", pastSchedules);
+        int pageSize = Math.max(1, Math.min(size, 100));
+        // Актуальные и прошедшие тренировки листаются независимо, у каждого списка свой курсор
+        SchedulePageDto<ScheduleView> upcomingPage = scheduleService.findUpcomingPage(keyword, date, workoutTypeId, sortField, sortDir, upcomingAfter, pageSize);
+        SchedulePageDto<Schedule> pastPage = scheduleService.findPastPage(keyword, date, workoutTypeId, pastAfter, pageSize);
+
+        model.addAttribute("activeSchedules", upcomingPage.getItems());
+        model.addAttribute("pastSchedules", pastPage.getItems());
+        model.addAttribute("nextUpcomingCursor", upcomingPage.getNextCursor());
+        model.addAttribute("nextPastCursor", pastPage.getNextCursor());
+        model.addAttribute("upcomingAfter", upcomingAfter);
+        model.addAttribute("pastAfter", pastAfter);
+        model.addAttribute("size", pageSize);
         model.addAttribute("keyword", keyword);
         model.addAttribute("selectedDate", date);
         model.addAttribute("selectedWorkoutTypeId", workoutTypeId);
         model.addAttribute("sortField", sortField);
         model.addAttribute("sortDir", sortDir);
         model.addAttribute("workoutTypes", workoutTypeService.findAll());
-        userService.getCurrentUser().ifPresent(user -> {
+        userService.getCurrentPrincipal().ifPresent(user -> {
             model.addAttribute("currentUser", user);
-            // Получаем список ID тренировок, на которые пользователь уже записан
-            java.util.List<Long> subscribedIds = scheduleService.findSubscriptionsForCurrentUser().stream()
-                    .map(sub -> sub.getSchedule().getId())
-                    .toList();
-            model.addAttribute("subscribedScheduleIds", subscribedIds);
+            // Набор ID предстоящих тренировок пользователя из кэша: проверка в шаблоне за O(1)
+            model.addAttribute("bookedScheduleIds", bookedScheduleIndex.forUser(user.getId()));
+            model.addAttribute("waitlistPositions", waitlistService.findPositionsForCurrentUser());
         });
         return "schedule";
     }
 
+    @GetMapping("/schedule/heatmap")
+    public String showHeatmap(@RequestParam(value = "workoutTypeId", required = false) Long workoutTypeId,
+                              WebRequest webRequest,
+                              Model model) {
+        if (contentVersions.checkNotModified(webRequest, true, availabilityHeatmap.getVersion(), ContentVersions.Aggregate.SCHEDULES,
+                ContentVersions.Aggregate.WORKOUT_TYPES)) {
+            return null;
+        }
+        model.addAttribute("heatmap", availabilityHeatmap.view(workoutTypeId));
+        model.addAttribute("selectedWorkoutTypeId", workoutTypeId);
+        model.addAttribute("workoutTypes", workoutTypeService.findAll());
+        return "schedule-heatmap";
+    }
+
+    @GetMapping(value = "/schedule/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<SearchSuggestionDto> suggest(@RequestParam(value = "q", defaultValue = "") String query) {
+        return searchIndex.suggest(query, 8);
+    }
+
+    /**
+     * Поток изменений свободных мест для тренировок, открытых на странице расписания.
+     */
+    @GetMapping(value = "/schedule/slots/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamSlots(@RequestParam(value = "ids", required = false) List<Long> scheduleIds) {
+        return slotAvailabilityBroadcaster.subscribe(scheduleIds != null ? scheduleIds : List.of());
+    }
+
     @PostMapping("/schedule/signup/{id}")
-    public String signUpForWorkout(@PathVariable("id") Long scheduleId, RedirectAttributes redirectAttributes) {
+    public String signUpForWorkout(@PathVariable("id") Long scheduleId,
+                                   @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyHeader,
+                                   @RequestParam(value = "idempotencyKey", required = false) String idempotencyParam,
+                                   RedirectAttributes redirectAttributes) {
+        String key = userService.idempotencyKey("signup", idempotencyHeader != null ? idempotencyHeader : idempotencyParam);
+        // В пиковый период сразу после открытия записи заявки идут через очередь допуска;
+        // повтор с тем же ключом получает тот же билет или тот же результат
+        IdempotencyCache.Outcome outcome = idempotencyCache.execute(key, scheduleId,
+                () -> isSurge(scheduleId) ? enqueueSignUp(scheduleId) : performSignUp(scheduleId));
+        if (outcome.ticketId() != null) {
+            return "redirect:/schedule/tickets/" + outcome.ticketId();
+        }
+        redirectAttributes.addFlashAttribute(outcome.success() ? "successMessage" : "errorMessage", outcome.message());
+        return "redirect:/schedule";
+    }
+
+    private IdempotencyCache.Outcome enqueueSignUp(Long scheduleId) {
+        Long userId = userService.getCurrentUserId()
+                .orElseThrow(() -> new IllegalStateException("Пользователь не аутентифицирован"));
+        return admissionQueue.submit(scheduleId, userId)
+                .map(ticket -> IdempotencyCache.Outcome.queued(ticket.getId()))
+                .orElseGet(() -> IdempotencyCache.Outcome.retryLater("Сейчас слишком много желающих записаться. Попробуйте через минуту."));
+    }
+
+    private boolean isSurge(Long scheduleId) {
+        if (!bookingWindowPolicy.isEnabled()) {
+            return false;
+        }
+        try {
+            return bookingWindowPolicy.isSurge(scheduleService.findStartTime(scheduleId));
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    @GetMapping("/schedule/tickets/{id}")
+    public String showTicket(@PathVariable("id") String ticketId, Model model, RedirectAttributes redirectAttributes) {
+        try {
+            AdmissionQueue.Ticket ticket = admissionQueue.getTicket(ticketId, userService.getCurrentUserId().orElse(null));
+            model.addAttribute("ticket", ticket);
+            model.addAttribute("position", admissionQueue.positionOf(ticket));
+            model.addAttribute("schedule", scheduleService.findById(ticket.getScheduleId()));
+            return "booking-ticket";
+        } catch (NoSuchElementException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            return "redirect:/schedule";
+        }
+    }
+
+    @GetMapping(value = "/schedule/tickets/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Object> getTicketStatus(@PathVariable("id") String ticketId) {
+        AdmissionQueue.Ticket ticket = admissionQueue.getTicket(ticketId, userService.getCurrentUserId().orElse(null));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", ticket.getId());
+        body.put("scheduleId", ticket.getScheduleId());
+        body.put("status", ticket.getStatus());
+        body.put("position", admissionQueue.positionOf(ticket));
+        body.put("message", ticket.getMessage());
+        return body;
+    }
+
+    private IdempotencyCache.Outcome performSignUp(Long scheduleId) {
         try {
             scheduleService.signUpForWorkout(scheduleId);
-            redirectAttributes.addFlashAttribute("successMessage", "Вы успешно записались на тренировку!");
+            return IdempotencyCache.Outcome.success("Вы успешно записались на тренировку!");
         } catch (NoAvailableSlotsException | AlreadySignedUpException | NoSuchElementException | IllegalArgumentException e) {
-            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            return IdempotencyCache.Outcome.failure(e.getMessage());
         } catch (TransactionSystemException | JpaSystemException e) {
             // Обрабатываем ошибки транзакций и валидации
+            e.printStackTrace(); // Для отладки
             Throwable rootCause = e.getRootCause();
-            if (rootCause != null && rootCause.getMessage() != null) {
-                String message = rootCause.getMessage();
-                if (message.contains("Время начала должно быть в будущем")) {
-                    redirectAttributes.addFlashAttribute("errorMessage", "Нельзя записаться на тренировку, которая уже началась.");
-                } else {
-                    redirectAttributes.addFlashAttribute("errorMessage", "Произошла ошибка при записи. Попробуйте снова.");
-                }
-            } else {
-                redirectAttributes.addFlashAttribute("errorMessage", "Произошла ошибка при записи. Попробуйте снова.");
+            if (rootCause != null && rootCause.getMessage() != null
+                    && rootCause.getMessage().contains("Время начала должно быть в будущем")) {
+                return IdempotencyCache.Outcome.failure("Нельзя записаться на тренировку, которая уже началась.");
             }
-            e.printStackTrace(); // Для отладки
+            return IdempotencyCache.Outcome.retryLater("Произошла ошибка при записи. Попробуйте снова.");
         } catch (RuntimeException e) {
             // Обрабатываем RuntimeException, который может содержать более детальное сообщение
+            e.printStackTrace(); // Для отладки
             String message = e.getMessage();
             if (message != null && message.contains("Произошла ошибка")) {
-                redirectAttributes.addFlashAttribute("errorMessage", message);
-            } else {
-                redirectAttributes.addFlashAttribute("errorMessage", "Произошла непредвиденная ошибка. Попробуйте снова.");
+                return IdempotencyCache.Outcome.retryLater(message);
             }
+            return IdempotencyCache.Outcome.retryLater("Произошла непредвиденная ошибка. Попробуйте снова.");
+        } catch (Exception e) {
             e.printStackTrace(); // Для отладки
+            return IdempotencyCache.Outcome.retryLater("Произошла непредвиденная ошибка. Попробуйте снова.");
+        }
+    }
+
+    /**
+     * Записывает на все занятия того же типа у того же тренера в тот же день недели на ближайшие недели.
+     */
+    @PostMapping("/schedule/series/{id}")
+    public String bookSeries(@PathVariable("id") Long scheduleId,
+                             @RequestParam(value = "weeks", defaultValue = "12") int weeks,
+                             RedirectAttributes redirectAttributes) {
+        try {
+            Schedule schedule = scheduleService.findById(scheduleId);
+            List<SeriesBookingResultDto> results = scheduleService.bookSeries(
+                    schedule.getWorkoutType().getId(),
+                    schedule.getTrainer().getId(),
+                    Set.of(schedule.getStartTime().getDayOfWeek()),
+                    LocalDate.now(),
+                    schedule.getStartTime().toLocalDate().plusWeeks(Math.max(1, Math.min(weeks, 52))));
+
+            Map<SeriesBookingResultDto.Status, Long> counts = results.stream()
+                    .collect(Collectors.groupingBy(SeriesBookingResultDto::getStatus, Collectors.counting()));
+            redirectAttributes.addFlashAttribute("successMessage", "Запись на серию: записано " +
+                    counts.getOrDefault(SeriesBookingResultDto.Status.BOOKED, 0L) + ", нет мест " +
+                    counts.getOrDefault(SeriesBookingResultDto.Status.FULL, 0L) + ", уже были записаны " +
+                    counts.getOrDefault(SeriesBookingResultDto.Status.ALREADY_BOOKED, 0L) + ", запись ещё не открыта " +
+                    counts.getOrDefault(SeriesBookingResultDto.Status.NOT_YET_OPEN, 0L) + ".");
+        } catch (NoSuchElementException | IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Произошла непредвиденная ошибка. Попробуйте снова.");
+        }
+        return "redirect:/schedule";
+    }
+
+    @PostMapping("/schedule/waitlist/{id}")
+    public String joinWaitlist(@PathVariable("id") Long scheduleId, RedirectAttributes redirectAttributes) {
+        try {
+            long position = waitlistService.joinWaitlist(scheduleId);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Вы в листе ожидания, ваша позиция: " + position + ". Мы запишем вас автоматически, как только освободится место.");
+        } catch (AlreadySignedUpException | NoSuchElementException | IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Произошла непредвиденная ошибка. Попробуйте снова.");
+        }
+        return "redirect:/schedule";
+    }
+
+    @PostMapping("/schedule/waitlist/{id}/leave")
+    public String leaveWaitlist(@PathVariable("id") Long scheduleId, RedirectAttributes redirectAttributes) {
+        try {
+            waitlistService.leaveWaitlist(scheduleId);
+            redirectAttributes.addFlashAttribute("successMessage", "Вы покинули лист ожидания.");
+        } catch (NoSuchElementException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Произошла непредвиденная ошибка. Попробуйте снова.");
-            e.printStackTrace(); // Для отладки
         }
         return "redirect:/schedule";
     }
@@ -9,6 +9,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import ru.fitness.backend.dto.CursorPageDto;
+import ru.fitness.backend.dto.RosterEntryView;
+import ru.fitness.backend.dto.SchedulePageDto;
+import ru.fitness.backend.dto.TrainerScheduleView;
+import ru.fitness.backend.services.RosterService;
 import ru.fitness.backend.services.ScheduleService;
 import ru.fitness.backend.services.UserService;
 import ru.fitness.backend.repositories.WorkoutTypeRepository;
@@ -24,30 +29,32 @@ public class TrainerController {
 
     private final UserService userService;
     private final ScheduleService scheduleService;
+    private final RosterService rosterService;
     private final WorkoutTypeRepository workoutTypeRepository;
 
     @GetMapping("/my-schedules")
     public String viewMySchedules(@RequestParam(value = "date", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
                                   @RequestParam(value = "workoutTypeId", required = false) Long workoutTypeId,
+                                  @RequestParam(value = "upcomingAfter", required = false) String upcomingAfter,
+                                  @RequestParam(value = "historyAfter", required = false) String historyAfter,
+                                  @RequestParam(value = "size", defaultValue = "20") int size,
                                   Model model) {
-        return userService.getCurrentUser()
-                .map(trainer -> {
-                    java.util.List<ru.fitness.backend.models.Schedule> allSchedules = scheduleService.findSchedulesByTrainer(trainer, date, workoutTypeId);
-                    java.time.LocalDateTime now = java.time.LocalDateTime.now();
-                    
-                    // Разделяем на активные (будущие) и прошедшие
-                    java.util.List<ru.fitness.backend.models.Schedule> activeSchedules = allSchedules.stream()
-                            .filter(s -> s.getStartTime().isAfter(now))
-                            .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
-                            .toList();
-                    
-                    java.util.List<ru.fitness.backend.models.Schedule> historySchedules = allSchedules.stream()
-                            .filter(s -> s.getStartTime().isBefore(now))
-                            .sorted((a, b) -> b.getStartTime().compareTo(a.getStartTime()))
-                            .toList();
-                    
-                    model.addAttribute("activeSchedules", activeSchedules);
-                    model.addAttribute("historySchedules", historySchedules);
+        return userService.getCurrentUserId()
+                .map(trainerId -> {
+                    int pageSize = Math.max(1, Math.min(size, 100));
+                    // Предстоящие (по возрастанию времени) и прошедшие (по убыванию) листаются независимо
+                    SchedulePageDto<TrainerScheduleView> upcomingPage = scheduleService.findTrainerSchedulePage(
+                            trainerId, date, workoutTypeId, true, upcomingAfter, pageSize);
+                    SchedulePageDto<TrainerScheduleView> historyPage = scheduleService.findTrainerSchedulePage(
+                            trainerId, date, workoutTypeId, false, historyAfter, pageSize);
+
+                    model.addAttribute("activeSchedules", upcomingPage.getItems());
+                    model.addAttribute("historySchedules", historyPage.getItems());
+                    model.addAttribute("nextUpcomingCursor", upcomingPage.getNextCursor());
+                    model.addAttribute("nextHistoryCursor", historyPage.getNextCursor());
+                    model.addAttribute("upcomingAfter", upcomingAfter);
+                    model.addAttribute("historyAfter", historyAfter);
+                    model.addAttribute("size", pageSize);
                     model.addAttribute("selectedDate", date);
                     model.addAttribute("selectedWorkoutTypeId", workoutTypeId);
                     model.addAttribute("workoutTypes", workoutTypeRepository.findAll());
@@ -57,14 +64,22 @@ public class TrainerController {
     }
 
     @GetMapping("/schedules/{scheduleId}/subscribers")
-    public String viewSubscribers(@PathVariable("scheduleId") Long scheduleId, Model model) {
-        return userService.getCurrentUser()
-                .map(trainer -> {
+    public String viewSubscribers(@PathVariable("scheduleId") Long scheduleId,
+                                  @RequestParam(value = "after", required = false) String after,
+                                  @RequestParam(value = "size", defaultValue = "50") int size,
+                                  Model model) {
+        return userService.getCurrentUserId()
+                .map(trainerId -> {
                     try {
-                        model.addAttribute("schedule", scheduleService.findById(scheduleId));
-                        model.addAttribute("subscribers", scheduleService.findSubscribersForSchedule(scheduleId, trainer));
+                        int pageSize = Math.max(1, Math.min(size, 200));
+                        model.addAttribute("schedule", rosterService.findScheduleOfTrainer(scheduleId, trainerId));
+                        CursorPageDto<RosterEntryView> roster = rosterService.findRoster(scheduleId, after, pageSize);
+                        model.addAttribute("subscribers", roster.getItems());
+                        model.addAttribute("nextCursor", roster.getNextCursor());
+                        model.addAttribute("bookedCount", rosterService.countBooked(scheduleId));
+                        model.addAttribute("size", pageSize);
                         return "trainer/schedule-subscribers";
-                    } catch (NoSuchElementException e) {
+                    } catch (NoSuchElementException | IllegalArgumentException e) {
                         // Handle schedule not found or not owned by trainer
                         return "redirect:/trainer/my-schedules";
                     }
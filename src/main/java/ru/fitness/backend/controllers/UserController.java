@@ -1,16 +1,26 @@
 package ru.fitness.backend.controllers;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import ru.fitness.backend.dto.SchedulePageDto;
+import ru.fitness.backend.models.WorkoutSubscription;
+import ru.fitness.backend.repositories.WorkoutTypeRepository;
+import ru.fitness.backend.services.ContentVersions;
+import ru.fitness.backend.services.HomeContentCache;
+import ru.fitness.backend.services.IdempotencyCache;
 import ru.fitness.backend.services.ScheduleService;
 import ru.fitness.backend.services.UserService;
 
+import java.time.LocalDate;
 import java.util.NoSuchElementException;
 
 @Controller
@@ -19,22 +29,28 @@ public class UserController {
 
     private final ScheduleService scheduleService;
     private final UserService userService;
-    private final ru.fitness.backend.services.NewsService newsService;
-    private final ru.fitness.backend.repositories.WorkoutTypeRepository workoutTypeRepository;
+    private final HomeContentCache homeContentCache;
+    private final WorkoutTypeRepository workoutTypeRepository;
+    private final IdempotencyCache idempotencyCache;
+    private final ContentVersions contentVersions;
 
     @GetMapping("/home")
-    public String home(Model model) {
-        userService.getCurrentUser().ifPresent(user -> {
+    public String home(WebRequest webRequest, Model model) {
+        if (contentVersions.checkNotModified(webRequest, true, ContentVersions.Aggregate.NEWS,
+                ContentVersions.Aggregate.WORKOUT_TYPES, ContentVersions.Aggregate.SCHEDULES)) {
+            return null;
+        }
+        userService.getCurrentPrincipal().ifPresent(user -> {
             model.addAttribute("userName", user.getFullName());
             scheduleService.findNextUpcomingSubscription().ifPresent(
                 subscription -> model.addAttribute("nextWorkout", subscription)
             );
         });
         
-        // Add news to the model
-        model.addAttribute("newsList", newsService.getLatestNews(3));
-        // Add popular workout types (just random or first 3 for now as "Featured")
-        model.addAttribute("featuredWorkouts", workoutTypeRepository.findAll().stream().limit(3).toList());
+        // News and featured workout types are the same for everyone and come from a short-lived cache
+        HomeContentCache.HomeContent content = homeContentCache.get();
+        model.addAttribute("newsList", content.latestNews());
+        model.addAttribute("featuredWorkouts", content.featuredWorkouts());
         
         return "home";
     }
@@ -45,22 +61,28 @@ public class UserController {
     }
 
     @GetMapping("/my-workouts")
-    public String myWorkouts(@RequestParam(value = "date", required = false) @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE) java.time.LocalDate date,
+    public String myWorkouts(@RequestParam(value = "date", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
                              @RequestParam(value = "workoutTypeId", required = false) Long workoutTypeId,
+                             @RequestParam(value = "upcomingAfter", required = false) String upcomingAfter,
+                             @RequestParam(value = "historyAfter", required = false) String historyAfter,
+                             @RequestParam(value = "size", defaultValue = "20") int size,
                              Model model) {
-        java.util.List<ru.fitness.backend.models.WorkoutSubscription> allSubs = scheduleService.findSubscriptionsForCurrentUser(date, workoutTypeId);
-        java.time.LocalDateTime now = java.time.LocalDateTime.now();
-        
-        java.util.List<ru.fitness.backend.models.WorkoutSubscription> active = allSubs.stream()
-                .filter(sub -> sub.getSchedule().getStartTime().isAfter(now))
-                .toList();
-        
-        java.util.List<ru.fitness.backend.models.WorkoutSubscription> history = allSubs.stream()
-                .filter(sub -> sub.getSchedule().getStartTime().isBefore(now))
-                .toList();
-        
-        model.addAttribute("activeSubscriptions", active);
-        model.addAttribute("historySubscriptions", history);
+        Long userId = userService.getCurrentUserId()
+                .orElseThrow(() -> new NoSuchElementException("Пользователь не найден"));
+        int pageSize = Math.max(1, Math.min(size, 100));
+        // Активные записи (по возрастанию времени) и история (по убыванию) листаются независимо
+        SchedulePageDto<WorkoutSubscription> activePage = scheduleService.findUserSubscriptionPage(
+                userId, date, workoutTypeId, true, upcomingAfter, pageSize);
+        SchedulePageDto<WorkoutSubscription> historyPage = scheduleService.findUserSubscriptionPage(
+                userId, date, workoutTypeId, false, historyAfter, pageSize);
+
+        model.addAttribute("activeSubscriptions", activePage.getItems());
+        model.addAttribute("historySubscriptions", historyPage.getItems());
+        model.addAttribute("nextUpcomingCursor", activePage.getNextCursor());
+        model.addAttribute("nextHistoryCursor", historyPage.getNextCursor());
+        model.addAttribute("upcomingAfter", upcomingAfter);
+        model.addAttribute("historyAfter", historyAfter);
+        model.addAttribute("size", pageSize);
         model.addAttribute("selectedDate", date);
         model.addAttribute("selectedWorkoutTypeId", workoutTypeId);
         model.addAttribute("workoutTypes", workoutTypeRepository.findAll());
@@ -68,15 +90,22 @@ public class UserController {
     }
 
     @PostMapping("/my-workouts/cancel/{id}")
-    public String cancelWorkout(@PathVariable("id") Long subscriptionId, RedirectAttributes redirectAttributes) {
-        try {
-            scheduleService.cancelSubscription(subscriptionId);
-            redirectAttributes.addFlashAttribute("successMessage", "Вы успешно отменили запись на тренировку.");
-        } catch (NoSuchElementException | IllegalStateException e) {
-            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
-        } catch (Exception e) {
-            redirectAttributes.addFlashAttribute("errorMessage", "Произошла непредвиденная ошибка. Попробуйте снова.");
-        }
+    public String cancelWorkout(@PathVariable("id") Long subscriptionId,
+                                @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyHeader,
+                                @RequestParam(value = "idempotencyKey", required = false) String idempotencyParam,
+                                RedirectAttributes redirectAttributes) {
+        String key = userService.idempotencyKey("cancel", idempotencyHeader != null ? idempotencyHeader : idempotencyParam);
+        IdempotencyCache.Outcome outcome = idempotencyCache.execute(key, subscriptionId, () -> {
+            try {
+                scheduleService.cancelSubscription(subscriptionId);
+                return IdempotencyCache.Outcome.success("Вы успешно отменили запись на тренировку.");
+            } catch (NoSuchElementException | IllegalStateException e) {
+                return IdempotencyCache.Outcome.failure(e.getMessage());
+            } catch (Exception e) {
+                return IdempotencyCache.Outcome.retryLater("Произошла непредвиденная ошибка. Попробуйте снова.");
+            }
+        });
+        redirectAttributes.addFlashAttribute(outcome.success() ? "successMessage" : "errorMessage", outcome.message());
         return "redirect:/my-workouts";
     }
 
@@ -102,15 +131,18 @@ public class UserController {
                                 @RequestParam("phoneNumber") String phoneNumber,
                                 @RequestParam("bio") String bio,
                                 RedirectAttributes redirectAttributes) {
-        userService.getCurrentUser().ifPresent(user -> {
-            userService.updateUserProfile(user.getId(), fullName, phoneNumber, bio);
+        userService.getCurrentUserId().ifPresent(userId -> {
+            userService.updateUserProfile(userId, fullName, phoneNumber, bio);
             redirectAttributes.addFlashAttribute("successMessage", "Профиль успешно обновлен.");
         });
         return "redirect:/profile";
     }
 
     @GetMapping("/trainers")
-    public String listTrainers(Model model) {
+    public String listTrainers(WebRequest webRequest, Model model) {
+        if (contentVersions.checkNotModified(webRequest, false, ContentVersions.Aggregate.TRAINERS)) {
+            return null;
+        }
         model.addAttribute("trainers", userService.findTrainers());
         return "trainers";
     }
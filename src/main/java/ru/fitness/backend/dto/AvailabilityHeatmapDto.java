@@ -0,0 +1,49 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Тепловая карта заполненности по дням и часам: строка - день, столбец - час из {@link #hours}.
+ */
+@Getter
+@AllArgsConstructor
+public class AvailabilityHeatmapDto {
+
+    @Getter
+    @AllArgsConstructor
+    public static class Cell {
+        public static final Cell EMPTY = new Cell(0, 0, 0);
+
+        private final int classes;
+        private final int totalSlots;
+        private final int bookedSlots;
+
+        public boolean isEmpty() {
+            return classes == 0;
+        }
+
+        public int getFreeSlots() {
+            return totalSlots - bookedSlots;
+        }
+
+        public int getFillPercent() {
+            return totalSlots == 0 ? 0 : Math.round(bookedSlots * 100f / totalSlots);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Row {
+        private final LocalDate date;
+        private final List<Cell> cells;
+    }
+
+    private final Long workoutTypeId;
+    private final List<Integer> hours;
+    private final List<Row> rows;
+    private final long version;
+}
@@ -0,0 +1,39 @@
+package ru.fitness.backend.dto;
+
+import lombok.Getter;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.User;
+
+import java.util.Set;
+
+/**
+ * Неизменяемый снимок вошедшего пользователя: всё, что страницам нужно о нём знать, без сущности и её
+ * ленивых связей. {@code version} - номер загрузки снимка, по нему видно, что данные перечитаны.
+ */
+@Getter
+public class CurrentUser {
+
+    private final Long id;
+    private final String email;
+    private final String fullName;
+    private final Set<Role> roles;
+    private final boolean active;
+    private final long version;
+
+    public CurrentUser(Long id, String email, String fullName, Set<Role> roles, boolean active, long version) {
+        this.id = id;
+        this.email = email;
+        this.fullName = fullName;
+        this.roles = Set.copyOf(roles);
+        this.active = active;
+        this.version = version;
+    }
+
+    public static CurrentUser of(User user, long version) {
+        return new CurrentUser(user.getId(), user.getEmail(), user.getFullName(), user.getRoles(), user.isActive(), version);
+    }
+
+    public boolean hasRole(Role role) {
+        return roles.contains(role);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.util.List;
+
+/**
+ * Страница списка с keyset-пагинацией (новости, записавшиеся на тренировку) и непрозрачный курсор
+ * следующей страницы (null, если дальше ничего нет). Формат курсора определяет сервис списка.
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPageDto<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
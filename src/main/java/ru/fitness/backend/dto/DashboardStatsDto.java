@@ -11,8 +11,8 @@ import java.util.Map;
 public class DashboardStatsDto {
     private long totalUsers;
     private long newUsersLast7Days;
-    private long upcomingWorkouts; // We will implement this later
+    private long upcomingWorkouts;
     private double averageWorkoutDuration;
     private List<WorkoutPopularityDto> workoutPopularity;
-    private Map<String, Long> trainerWorkoutCounts; // And this
+    private Map<String, Long> trainerWorkoutCounts; // Trainer name -> upcoming workouts
 }
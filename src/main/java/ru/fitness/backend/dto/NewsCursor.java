@@ -0,0 +1,41 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Позиция в архиве новостей (keyset-пагинация по дате публикации и ID): последняя показанная новость.
+ * Следующая страница начинается строго после неё, без OFFSET. В URL передаётся в виде непрозрачной строки.
+ */
+@Getter
+@AllArgsConstructor
+public class NewsCursor {
+
+    private final LocalDateTime publishDate;
+    private final Long id;
+
+    public String encode() {
+        String raw = publishDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return курсор или null, если строка пустая или повреждена (тогда архив показывается с начала)
+     */
+    public static NewsCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new NewsCursor(LocalDateTime.parse(raw.substring(0, separator)), Long.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.fitness.backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись ленты новостей, читаемая из курсора базы без создания управляемых сущностей.
+ */
+public record NewsFeedEntry(Long id, String title, String content, LocalDateTime publishDate) {
+}
@@ -0,0 +1,26 @@
+package ru.fitness.backend.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка архива новостей: заголовок и начало текста, выбранные проекцией без чтения полного текста.
+ */
+@Getter
+public class NewsSummaryView {
+
+    public static final int SUMMARY_LENGTH = 300;
+
+    private final Long id;
+    private final String title;
+    private final String summary;
+    private final LocalDateTime publishDate;
+
+    public NewsSummaryView(Long id, String title, String summary, Integer contentLength, LocalDateTime publishDate) {
+        this.id = id;
+        this.title = title;
+        this.summary = contentLength != null && contentLength > SUMMARY_LENGTH ? summary.stripTrailing() + "…" : summary;
+        this.publishDate = publishDate;
+    }
+}
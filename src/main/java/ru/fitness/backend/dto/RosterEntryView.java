@@ -0,0 +1,22 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка списка записавшихся на тренировку: запись и контакты участника, выбранные одним запросом
+ * без загрузки сущностей пользователей.
+ */
+@Getter
+@AllArgsConstructor
+public class RosterEntryView {
+
+    private final Long subscriptionId;
+    private final Long userId;
+    private final String fullName;
+    private final String email;
+    private final String phoneNumber;
+    private final LocalDateTime subscriptionDate;
+}
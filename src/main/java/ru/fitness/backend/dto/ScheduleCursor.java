@@ -0,0 +1,62 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Позиция в постраничном списке тренировок (keyset-пагинация): значения ключей сортировки последней
+ * показанной тренировки. Следующая страница начинается строго после неё, без OFFSET.
+ * В URL передаётся в виде непрозрачной строки.
+ */
+@Getter
+@AllArgsConstructor
+public class ScheduleCursor {
+
+    private final String sortValue;
+    private final LocalDateTime startTime;
+    private final Long id;
+
+    /**
+     * Значение основного ключа сортировки в том типе, в котором его сравнивает запрос.
+     * @return значение или null, если курсор построен для другой сортировки
+     */
+    public Comparable<?> sortKey(String sortField) {
+        if ("workoutType.title".equals(sortField)) {
+            return sortValue;
+        }
+        try {
+            return Integer.valueOf(sortValue);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String encode() {
+        String raw = sortValue + "|" + startTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return курсор или null, если строка пустая или повреждена (тогда список показывается с начала)
+     */
+    public static ScheduleCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idSeparator = raw.lastIndexOf('|');
+            int timeSeparator = raw.lastIndexOf('|', idSeparator - 1);
+            return new ScheduleCursor(
+                    raw.substring(0, timeSeparator),
+                    LocalDateTime.parse(raw.substring(timeSeparator + 1, idSeparator)),
+                    Long.valueOf(raw.substring(idSeparator + 1)));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.util.List;
+
+/**
+ * Страница списка тренировок и курсор следующей страницы (null, если дальше ничего нет).
+ */
+@Getter
+@AllArgsConstructor
+public class SchedulePageDto<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
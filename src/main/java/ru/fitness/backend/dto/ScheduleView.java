@@ -0,0 +1,85 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.fitness.backend.models.Schedule;
+
+import java.time.LocalDateTime;
+
+/**
+ * Неизменяемое представление тренировки для страницы расписания: только то, что показывает карточка.
+ * Имена свойств совпадают с сущностью {@link Schedule}, поэтому шаблон работает с любым из них.
+ */
+@Getter
+public class ScheduleView {
+
+    @Getter
+    @AllArgsConstructor
+    public static class WorkoutTypeView {
+        private final Long id;
+        private final String title;
+        private final String description;
+        private final int durationMinutes;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class TrainerView {
+        private final Long id;
+        private final String fullName;
+    }
+
+    private final Long id;
+    private final LocalDateTime startTime;
+    private final int availableSlots;
+    private final Integer totalSlots;
+    private final WorkoutTypeView workoutType;
+    private final TrainerView trainer;
+
+    /**
+     * Плоский конструктор для JPQL-выражения {@code SELECT new ...}.
+     */
+    public ScheduleView(Long id, LocalDateTime startTime, int availableSlots, Integer totalSlots,
+                        Long workoutTypeId, String title, String description, int durationMinutes,
+                        Long trainerId, String trainerFullName) {
+        this.id = id;
+        this.startTime = startTime;
+        this.availableSlots = availableSlots;
+        this.totalSlots = totalSlots;
+        this.workoutType = new WorkoutTypeView(workoutTypeId, title, description, durationMinutes);
+        this.trainer = new TrainerView(trainerId, trainerFullName);
+    }
+
+    private ScheduleView(ScheduleView source, int availableSlots) {
+        this.id = source.id;
+        this.startTime = source.startTime;
+        this.availableSlots = availableSlots;
+        this.totalSlots = source.totalSlots;
+        this.workoutType = source.workoutType;
+        this.trainer = source.trainer;
+    }
+
+    public static ScheduleView from(Schedule schedule) {
+        return new ScheduleView(schedule.getId(), schedule.getStartTime(), schedule.getAvailableSlots(), schedule.getTotalSlots(),
+                schedule.getWorkoutType().getId(), schedule.getWorkoutType().getTitle(),
+                schedule.getWorkoutType().getDescription(), schedule.getWorkoutType().getDurationMinutes(),
+                schedule.getTrainer().getId(), schedule.getTrainer().getFullName());
+    }
+
+    /**
+     * Значение основного ключа сортировки для курсора постраничного списка.
+     * При сортировке по времени основной ключ - наличие свободных мест.
+     */
+    public Comparable<?> sortKey(String sortField) {
+        return switch (sortField) {
+            case "availableSlots" -> availableSlots;
+            case "workoutType.title" -> workoutType.getTitle();
+            case "workoutType.durationMinutes" -> workoutType.getDurationMinutes();
+            default -> availableSlots > 0 ? 1 : 0;
+        };
+    }
+
+    public ScheduleView withAvailableSlots(int availableSlots) {
+        return availableSlots == this.availableSlots ? this : new ScheduleView(this, availableSlots);
+    }
+}
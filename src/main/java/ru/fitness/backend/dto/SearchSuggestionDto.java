@@ -0,0 +1,20 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchSuggestionDto {
+
+    public enum Kind {
+        WORKOUT_TYPE, TRAINER
+    }
+
+    private Kind kind;
+    private Long id;
+    private String label;
+    private double score;
+}
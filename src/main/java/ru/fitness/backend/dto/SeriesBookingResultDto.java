@@ -0,0 +1,24 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Результат записи на одно занятие из серии.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeriesBookingResultDto {
+
+    public enum Status {
+        BOOKED, FULL, ALREADY_BOOKED, NOT_YET_OPEN
+    }
+
+    private Long scheduleId;
+    private LocalDateTime startTime;
+    private Status status;
+}
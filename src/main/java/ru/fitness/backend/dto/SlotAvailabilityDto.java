@@ -0,0 +1,26 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Изменение числа свободных мест на тренировке для потока Server-Sent Events страницы расписания.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotAvailabilityDto {
+    private Long scheduleId;
+    private Integer availableSlots;
+    private Integer totalSlots;
+    private boolean deleted;
+
+    public static SlotAvailabilityDto of(ScheduleView view) {
+        return new SlotAvailabilityDto(view.getId(), view.getAvailableSlots(), view.getTotalSlots(), false);
+    }
+
+    public static SlotAvailabilityDto deleted(Long scheduleId) {
+        return new SlotAvailabilityDto(scheduleId, null, null, true);
+    }
+}
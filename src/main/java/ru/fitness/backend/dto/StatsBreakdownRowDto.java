@@ -0,0 +1,23 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Итоги за период по одному типу тренировки или тренеру.
+ */
+@Getter
+@AllArgsConstructor
+public class StatsBreakdownRowDto {
+
+    private final Long id;
+    private final String name;
+    private final long bookings;
+    private final long cancellations;
+    private final long capacity;
+    private final long occupied;
+
+    public double getFillPercent() {
+        return capacity == 0 ? 0.0 : Math.round(occupied * 1000.0 / capacity) / 10.0;
+    }
+}
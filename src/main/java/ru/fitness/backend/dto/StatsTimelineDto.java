@@ -0,0 +1,23 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Ряды статистики клуба для графиков: по одному значению на каждый час или день интервала,
+ * интервалы без данных заполнены нулями.
+ */
+@Getter
+@AllArgsConstructor
+public class StatsTimelineDto {
+
+    private final String granularity;
+    private final List<String> labels;
+    private final List<Long> registrations;
+    private final List<Long> bookings;
+    private final List<Long> cancellations;
+    // Доля занятых мест на начавшихся в этот интервал тренировках, null - тренировок не было
+    private final List<Double> fillPercent;
+}
@@ -0,0 +1,32 @@
+package ru.fitness.backend.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка списка занятий тренера: тренировка и число записавшихся, посчитанное тем же запросом.
+ */
+@Getter
+public class TrainerScheduleView {
+
+    private final Long id;
+    private final LocalDateTime startTime;
+    private final int availableSlots;
+    private final Integer totalSlots;
+    private final ScheduleView.WorkoutTypeView workoutType;
+    private final long bookedCount;
+
+    /**
+     * Плоский конструктор для выражения {@code construct} запроса Criteria API.
+     */
+    public TrainerScheduleView(Long id, LocalDateTime startTime, int availableSlots, Integer totalSlots,
+                               Long workoutTypeId, String title, int durationMinutes, Long bookedCount) {
+        this.id = id;
+        this.startTime = startTime;
+        this.availableSlots = availableSlots;
+        this.totalSlots = totalSlots;
+        this.workoutType = new ScheduleView.WorkoutTypeView(workoutTypeId, title, null, durationMinutes);
+        this.bookedCount = bookedCount != null ? bookedCount : 0;
+    }
+}
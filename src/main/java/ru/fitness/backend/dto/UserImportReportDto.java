@@ -0,0 +1,30 @@
+package ru.fitness.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Итог массового импорта пользователей: счётчики и ошибки по строкам файла
+ * (список ошибок ограничен, {@code errorsTruncated} показывает, что показаны не все).
+ */
+@Getter
+@AllArgsConstructor
+public class UserImportReportDto {
+
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+        private final int line;
+        private final String email;
+        private final String message;
+    }
+
+    private final int totalRows;
+    private final int imported;
+    private final int failed;
+    private final List<RowError> errors;
+    private final boolean errorsTruncated;
+    private final long durationMillis;
+}
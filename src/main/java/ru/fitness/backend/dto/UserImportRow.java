@@ -0,0 +1,29 @@
+package ru.fitness.backend.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * Строка CSV-файла массового импорта пользователей. Ограничения совпадают с регистрацией.
+ */
+@Data
+public class UserImportRow {
+
+    private int line;
+
+    @NotBlank(message = "Email не может быть пустым")
+    @Email(message = "Некорректный формат email")
+    private String email;
+
+    @Size(max = 255, message = "Имя не должно превышать 255 символов")
+    private String fullName;
+
+    @Size(max = 20, message = "Номер телефона не должен превышать 20 символов")
+    private String phoneNumber;
+
+    @NotBlank(message = "Пароль не может быть пустым")
+    @Size(min = 8, message = "Пароль должен содержать не менее 8 символов")
+    private String password;
+}
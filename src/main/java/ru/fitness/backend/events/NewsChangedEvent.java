@@ -0,0 +1,7 @@
+package ru.fitness.backend.events;
+
+/**
+ * Публикуется при создании, изменении или удалении новости.
+ */
+public record NewsChangedEvent(Long newsId) {
+}
@@ -0,0 +1,28 @@
+package ru.fitness.backend.events;
+
+/**
+ * Публикуется сервисами при изменении тренировки. Слушатели получают событие после фиксации транзакции
+ * ({@code @TransactionalEventListener}), поэтому видят уже сохранённое состояние.
+ */
+public record ScheduleChangedEvent(Long scheduleId, Kind kind) {
+
+    public enum Kind {
+        CREATED, UPDATED, SLOTS_CHANGED, DELETED
+    }
+
+    public static ScheduleChangedEvent created(Long scheduleId) {
+        return new ScheduleChangedEvent(scheduleId, Kind.CREATED);
+    }
+
+    public static ScheduleChangedEvent updated(Long scheduleId) {
+        return new ScheduleChangedEvent(scheduleId, Kind.UPDATED);
+    }
+
+    public static ScheduleChangedEvent slotsChanged(Long scheduleId) {
+        return new ScheduleChangedEvent(scheduleId, Kind.SLOTS_CHANGED);
+    }
+
+    public static ScheduleChangedEvent deleted(Long scheduleId) {
+        return new ScheduleChangedEvent(scheduleId, Kind.DELETED);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.fitness.backend.events;
+
+/**
+ * Публикуется при записи пользователя на тренировку или отмене записи (в том числе при автоматической
+ * записи из листа ожидания).
+ */
+public record SubscriptionChangedEvent(Long userId, Long scheduleId, boolean booked) {
+
+    public static SubscriptionChangedEvent booked(Long userId, Long scheduleId) {
+        return new SubscriptionChangedEvent(userId, scheduleId, true);
+    }
+
+    public static SubscriptionChangedEvent cancelled(Long userId, Long scheduleId) {
+        return new SubscriptionChangedEvent(userId, scheduleId, false);
+    }
+}
@@ -0,0 +1,8 @@
+package ru.fitness.backend.events;
+
+/**
+ * Публикуется, когда записи удаляются вместе с тренировками одной инструкцией (удаление тренировки
+ * или порции тренировок типа), без отдельного {@link SubscriptionChangedEvent} на каждую запись.
+ */
+public record SubscriptionsDeletedEvent(Long workoutTypeId, int count) {
+}
@@ -0,0 +1,23 @@
+package ru.fitness.backend.events;
+
+/**
+ * Публикуется при регистрации пользователя, изменении его имени, email, ролей или статуса и при удалении.
+ */
+public record UserChangedEvent(Long userId, Kind kind) {
+
+    public enum Kind {
+        REGISTERED, UPDATED, DELETED
+    }
+
+    public static UserChangedEvent registered(Long userId) {
+        return new UserChangedEvent(userId, Kind.REGISTERED);
+    }
+
+    public static UserChangedEvent updated(Long userId) {
+        return new UserChangedEvent(userId, Kind.UPDATED);
+    }
+
+    public static UserChangedEvent deleted(Long userId) {
+        return new UserChangedEvent(userId, Kind.DELETED);
+    }
+}
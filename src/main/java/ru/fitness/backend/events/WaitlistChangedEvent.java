@@ -0,0 +1,8 @@
+package ru.fitness.backend.events;
+
+/**
+ * Публикуется, когда очередь листа ожидания тренировки сдвигается: пользователь встал в неё, покинул её
+ * или был переведён из неё в записанные. Позиции остальных ожидающих при этом меняются.
+ */
+public record WaitlistChangedEvent(Long scheduleId) {
+}
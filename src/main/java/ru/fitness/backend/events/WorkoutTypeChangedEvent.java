@@ -0,0 +1,7 @@
+package ru.fitness.backend.events;
+
+/**
+ * Публикуется при создании, изменении или удалении типа тренировки (удаление уносит и все его занятия).
+ */
+public record WorkoutTypeChangedEvent(Long workoutTypeId, boolean deleted) {
+}
@@ -0,0 +1,13 @@
+package ru.fitness.backend.exceptions;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Пул хеширования паролей перегружен: очередь заполнена или задача не дождалась потока.
+ * Запрос отклоняется сразу (503), а не занимает поток сервера на время очереди.
+ */
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = @Index(name = "idx_news_publish_date", columnList = "publish_date, id"))
 public class News {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -12,6 +12,11 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_schedule_start_time_id", columnList = "start_time, id"),
+        @Index(name = "idx_schedule_trainer_start_time", columnList = "trainer_id, start_time, id"),
+        @Index(name = "idx_schedule_trainer_workout_start_time", columnList = "trainer_id, workout_id, start_time")
+})
 @Getter
 @Setter
 @AllArgsConstructor
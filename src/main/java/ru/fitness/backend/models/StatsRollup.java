@@ -0,0 +1,69 @@
+package ru.fitness.backend.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Агрегат статистики за час или день: значение показателя в целом по клубу, по типу тренировки или по тренеру.
+ * Строки пересчитываются заданием свёртки целыми интервалами, графики читают только их.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "stats_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stats_rollup_bucket",
+                columnNames = {"granularity", "metric", "dimension", "dimension_id", "bucket_start"}),
+        indexes = @Index(name = "idx_stats_rollup_granularity_bucket", columnList = "granularity, bucket_start"))
+public class StatsRollup {
+
+    public enum Granularity {
+        HOUR, DAY
+    }
+
+    public enum Metric {
+        // Регистрации пользователей (только в целом по клубу)
+        REGISTRATIONS,
+        // Созданные записи, включая отменённые позже, - по времени создания
+        BOOKINGS,
+        // Отмены записей - по времени отмены
+        CANCELLATIONS,
+        // Места и занятые места на тренировках - по времени начала тренировки
+        CAPACITY,
+        OCCUPIED
+    }
+
+    public enum Dimension {
+        ALL, WORKOUT_TYPE, TRAINER
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Granularity granularity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Metric metric;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Dimension dimension;
+
+    // ID типа тренировки или тренера, 0 для Dimension.ALL
+    @Column(nullable = false)
+    private long dimensionId;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private long amount;
+}
@@ -0,0 +1,27 @@
+package ru.fitness.backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отметка свёртки статистики: до какого момента исходные данные уже свёрнуты.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "stats_rollup_state")
+public class StatsRollupState {
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDateTime processedUntil;
+}
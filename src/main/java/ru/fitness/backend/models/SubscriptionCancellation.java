@@ -0,0 +1,60 @@
+package ru.fitness.backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Журнал отмен записей. Сама запись при отмене удаляется, поэтому для статистики здесь остаются
+ * время её создания и отмены, тип тренировки и тренер. Ссылки хранятся значениями, без внешних ключей:
+ * история не зависит от последующего удаления тренировки или типа. Записи, удалённые вместе с тренировкой
+ * или типом, тоже попадают в журнал, чтобы не пропасть из статистики записей, но отменами не считаются.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "subscription_cancellation", indexes = {
+        @Index(name = "idx_subscription_cancellation_cancelled_at", columnList = "cancelled_at"),
+        @Index(name = "idx_subscription_cancellation_subscribed_at", columnList = "subscribed_at")
+})
+public class SubscriptionCancellation {
+
+    public enum Reason {
+        // Пользователь или администратор отменил запись
+        CANCELLED,
+        // Запись удалена вместе с тренировкой или типом тренировки
+        REMOVED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long scheduleId;
+
+    @Column(nullable = false)
+    private Long workoutTypeId;
+
+    @Column(nullable = false)
+    private Long trainerId;
+
+    @Column(nullable = false)
+    private LocalDateTime subscribedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime cancelledAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Reason reason;
+}
@@ -14,7 +14,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_date_of_created", columnList = "date_of_created"))
 @Data
 public class User implements UserDetails {
     @Id
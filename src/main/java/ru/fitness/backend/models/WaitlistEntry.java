@@ -0,0 +1,45 @@
+package ru.fitness.backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Место в листе ожидания на тренировку. Порядок очереди задаётся номером {@code seq}: номера растут,
+ * но после выхода из очереди остаются пропуски, поэтому позиция - это число записей с меньшим номером.
+ * Индекс (schedule_id, seq) даёт голову, хвост и позицию без чтения самих строк очереди.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "waitlist_entry",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "schedule_id"}),
+        indexes = @Index(name = "idx_waitlist_entry_schedule_seq", columnList = "schedule_id, seq"))
+public class WaitlistEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "schedule_id", nullable = false)
+    private Schedule schedule;
+
+    @Column(nullable = false)
+    private LocalDateTime joinedAt;
+
+    /**
+     * Номер в очереди тренировки: новый ожидающий получает номер хвоста + 1,
+     * выход из очереди номера остальных не меняет.
+     */
+    private Long seq;
+}
@@ -15,6 +15,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Table(name = "workout_subscription", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"user_id", "schedule_id"})
+}, indexes = {
+        @Index(name = "idx_workout_subscription_schedule", columnList = "schedule_id, id"),
+        @Index(name = "idx_workout_subscription_date", columnList = "subscription_date"),
+        @Index(name = "idx_workout_subscription_user_start", columnList = "user_id, schedule_start_time, id")
 })
 public class WorkoutSubscription {
     @Id
@@ -32,9 +36,17 @@ public class WorkoutSubscription {
     @Column(nullable = false)
     private LocalDateTime subscriptionDate;
 
+    /**
+     * Копия времени начала тренировки: страницы "Мои записи" сортируются и листаются по индексу
+     * (user_id, schedule_start_time, id) без соединения с расписанием. Заполняется при вставке записи
+     * и обновляется при переносе тренировки.
+     */
+    private LocalDateTime scheduleStartTime;
+
     public WorkoutSubscription(User user, Schedule schedule) {
         this.user = user;
         this.schedule = schedule;
         this.subscriptionDate = LocalDateTime.now();
+        this.scheduleStartTime = schedule.getStartTime();
     }
 }
@@ -0,0 +1,84 @@
+package ru.fitness.backend.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Множественные операции бронирования, которые неудобно выражать через Spring Data:
+ * UPDATE ... RETURNING и пакетные INSERT через JDBC batching.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BookingJdbcRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Одной инструкцией резервирует по одному месту на каждой тренировке, где оно есть
+     * и где уже открыто окно записи.
+     * @return ID тренировок, на которых место зарезервировано
+     */
+    public List<Long> reserveSlots(Collection<Long> scheduleIds, LocalDateTime now, LocalDateTime bookableBefore) {
+        if (scheduleIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(
+                "UPDATE schedule SET available_slots = available_slots - 1 " +
+                "WHERE id IN (:ids) AND available_slots > 0 AND start_time > :now AND start_time < :bookableBefore " +
+                "RETURNING id",
+                new MapSqlParameterSource("ids", scheduleIds)
+                        .addValue("now", Timestamp.valueOf(now))
+                        .addValue("bookableBefore", Timestamp.valueOf(bookableBefore)),
+                Long.class);
+    }
+
+    /**
+     * Возвращает по одному месту на каждой из тренировок.
+     */
+    public void releaseSlots(Collection<Long> scheduleIds) {
+        if (scheduleIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(
+                "UPDATE schedule SET available_slots = LEAST(available_slots + 1, total_slots) WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", scheduleIds));
+    }
+
+    /**
+     * Пакетно вставляет записи пользователя на тренировки; уже существующие пары пропускаются.
+     * @return ID тренировок, для которых запись не была создана из-за конфликта
+     */
+    public List<Long> insertSubscriptions(Long userId, List<Long> scheduleIds, LocalDateTime now) {
+        if (scheduleIds.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[scheduleIds.size()];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new MapSqlParameterSource()
+                    .addValue("userId", userId)
+                    .addValue("scheduleId", scheduleIds.get(i))
+                    .addValue("now", Timestamp.valueOf(now));
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(
+                "INSERT INTO workout_subscription (user_id, schedule_id, subscription_date, schedule_start_time) " +
+                "SELECT :userId, s.id, :now, s.start_time FROM schedule s WHERE s.id = :scheduleId " +
+                "ON CONFLICT (user_id, schedule_id) DO NOTHING",
+                batch);
+
+        List<Long> conflicts = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] == 0) {
+                conflicts.add(scheduleIds.get(i));
+            }
+        }
+        return conflicts;
+    }
+}
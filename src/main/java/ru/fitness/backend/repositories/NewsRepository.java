@@ -1,11 +1,42 @@
 package ru.fitness.backend.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import ru.fitness.backend.dto.NewsFeedEntry;
+import ru.fitness.backend.dto.NewsSummaryView;
 import ru.fitness.backend.models.News;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface NewsRepository extends JpaRepository<News, Long> {
-    // Найти последние новости, отсортированные по дате
-    List<News> findAllByOrderByPublishDateDesc();
+    // Несколько последних новостей: LIMIT в SQL по индексу publish_date
+    List<News> findByOrderByPublishDateDescIdDesc(Limit limit);
+
+    // Первая страница архива: только заголовок и начало текста
+    @Query("SELECT new ru.fitness.backend.dto.NewsSummaryView(n.id, n.title, SUBSTRING(n.content, 1, "
+            + NewsSummaryView.SUMMARY_LENGTH + "), LENGTH(n.content), n.publishDate) "
+            + "FROM News n ORDER BY n.publishDate DESC, n.id DESC")
+    List<NewsSummaryView> findSummaries(Limit limit);
+
+    // Следующая страница архива строго после последней показанной новости (keyset по индексу publish_date, id)
+    @Query("SELECT new ru.fitness.backend.dto.NewsSummaryView(n.id, n.title, SUBSTRING(n.content, 1, "
+            + NewsSummaryView.SUMMARY_LENGTH + "), LENGTH(n.content), n.publishDate) "
+            + "FROM News n WHERE n.publishDate < :publishDate OR (n.publishDate = :publishDate AND n.id < :id) "
+            + "ORDER BY n.publishDate DESC, n.id DESC")
+    List<NewsSummaryView> findSummariesAfter(@Param("publishDate") LocalDateTime publishDate,
+                                             @Param("id") Long id,
+                                             Limit limit);
+
+    // Лента новостей курсором: строки приходят порциями по fetch size, а не одним списком; LIMIT в SQL
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "50"))
+    @Query("SELECT new ru.fitness.backend.dto.NewsFeedEntry(n.id, n.title, n.content, n.publishDate) "
+            + "FROM News n ORDER BY n.publishDate DESC, n.id DESC")
+    Stream<NewsFeedEntry> streamFeed(Limit limit);
 }
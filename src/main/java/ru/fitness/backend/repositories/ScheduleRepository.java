@@ -1,19 +1,26 @@
 package ru.fitness.backend.repositories;
 
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.fitness.backend.dto.ScheduleView;
 import ru.fitness.backend.models.Schedule;
 import ru.fitness.backend.models.User;
 import ru.fitness.backend.models.WorkoutType;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ScheduleRepository extends JpaRepository<Schedule, Long>, JpaSpecificationExecutor<Schedule> {
+public interface ScheduleRepository extends JpaRepository<Schedule, Long>, JpaSpecificationExecutor<Schedule>,
+        ScheduleRepositoryCustom {
 
     /**
      * Finds all schedule entries and eagerly fetches related WorkoutType and Trainer entities
@@ -23,17 +30,121 @@ public interface ScheduleRepository extends JpaRepository<Schedule, Long>, JpaSp
     @Query("SELECT s FROM Schedule s JOIN FETCH s.workoutType JOIN FETCH s.trainer ORDER BY s.startTime ASC")
     List<Schedule> findAllWithDetails();
 
+    /**
+     * Тип тренировки и тренер нужны каждой карточке расписания, поэтому загружаются тем же запросом.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"workoutType", "trainer"})
+    List<Schedule> findAll(Specification<Schedule> spec, Sort sort);
+
+    @EntityGraph(attributePaths = {"workoutType", "trainer"})
     List<Schedule> findByTrainer(User trainer);
+
+    @EntityGraph(attributePaths = {"workoutType"})
+    Optional<Schedule> findWithWorkoutTypeById(Long id);
     
     /**
-     * Обновляет только количество доступных мест, минуя валидацию всей сущности
-     * Используется нативный SQL, чтобы обойти Bean Validation (@Future на startTime)
+     * Атомарно резервирует одно место на тренировке.
+     * Условие available_slots > 0 проверяется в той же инструкции UPDATE, что и списание места,
+     * поэтому параллельные запросы не могут продать больше мест, чем есть.
+     * Заодно отсекаются прошедшие тренировки, тренировки с ещё не открытым окном записи
+     * и запись тренера на собственное занятие.
+     * @param bookableBefore верхняя граница времени начала тренировок, запись на которые уже открыта
+     * @return 1, если место зарезервировано, 0 - если бронирование отклонено
+     */
+    @Modifying
+    @Query(value = "UPDATE schedule SET available_slots = available_slots - 1 " +
+            "WHERE id = :id AND available_slots > 0 AND start_time > :now AND start_time < :bookableBefore " +
+            "AND trainer_id <> :userId", nativeQuery = true)
+    int reserveSlot(@Param("id") Long id, @Param("userId") Long userId,
+                    @Param("now") LocalDateTime now, @Param("bookableBefore") LocalDateTime bookableBefore);
+
+    @Modifying
+    @Query("DELETE FROM Schedule s WHERE s.id IN :ids")
+    int deleteAllByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Schedule s WHERE s.workoutType.id = :workoutTypeId")
+    int deleteAllByWorkoutTypeId(@Param("workoutTypeId") Long workoutTypeId);
+
+    @Query("SELECT s.id FROM Schedule s WHERE s.workoutType.id = :workoutTypeId")
+    List<Long> findIdsByWorkoutTypeId(@Param("workoutTypeId") Long workoutTypeId);
+
+    long countByWorkoutTypeId(Long workoutTypeId);
+
+    /**
+     * Блокирует очередную порцию тренировок типа для пакетного удаления.
+     * Параллельные бронирования этих тренировок дождутся конца транзакции и увидят, что тренировки уже нет.
+     */
+    @Query(value = "SELECT id FROM schedule WHERE workout_id = :workoutTypeId ORDER BY id LIMIT :limit FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockChunkByWorkoutTypeId(@Param("workoutTypeId") Long workoutTypeId, @Param("limit") int limit);
+
+    /**
+     * Блокирует порцию тренировок типа с ID больше {@code afterId}: так все тренировки типа блокируются
+     * в одной транзакции порциями, без удаления между ними.
+     */
+    @Query(value = "SELECT id FROM schedule WHERE workout_id = :workoutTypeId AND id > :afterId ORDER BY id LIMIT :limit FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockChunkByWorkoutTypeIdAfter(@Param("workoutTypeId") Long workoutTypeId, @Param("afterId") long afterId,
+                                             @Param("limit") int limit);
+
+    String TIMETABLE_VIEW = "SELECT new ru.fitness.backend.dto.ScheduleView(s.id, s.startTime, s.availableSlots, s.totalSlots, " +
+            "wt.id, wt.title, wt.description, wt.durationMinutes, t.id, t.fullName) " +
+            "FROM Schedule s JOIN s.workoutType wt JOIN s.trainer t ";
+
+    /**
+     * Предстоящие тренировки для снимка расписания. Проекция всегда читает актуальные значения из базы,
+     * даже если сущности уже загружены в текущий контекст персистентности.
+     */
+    @Query(TIMETABLE_VIEW + "WHERE s.startTime > :now")
+    List<ScheduleView> findTimetableViews(@Param("now") LocalDateTime now);
+
+    @Query(TIMETABLE_VIEW + "WHERE s.id IN :ids")
+    List<ScheduleView> findTimetableViewsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(TIMETABLE_VIEW + "WHERE s.workoutType.id = :workoutTypeId AND s.startTime > :now")
+    List<ScheduleView> findTimetableViewsByWorkoutTypeId(@Param("workoutTypeId") Long workoutTypeId,
+                                                         @Param("now") LocalDateTime now);
+
+    @Query(TIMETABLE_VIEW + "WHERE s.startTime >= :from AND s.startTime < :to")
+    List<ScheduleView> findTimetableViewsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT s.startTime FROM Schedule s WHERE s.id = :id")
+    Optional<LocalDateTime> findStartTimeById(@Param("id") Long id);
+
+    @Query("SELECT s.workoutType.id FROM Schedule s WHERE s.id = :id")
+    Optional<Long> findWorkoutTypeIdById(@Param("id") Long id);
+
+    /**
+     * Возвращает одно место после отмены записи. Изменение выполняется относительным UPDATE,
+     * чтобы не перезаписать параллельные списания мест.
+     */
+    @Modifying
+    @Query(value = "UPDATE schedule SET available_slots = LEAST(available_slots + 1, total_slots) WHERE id = :id", nativeQuery = true)
+    int releaseSlot(@Param("id") Long id);
+
+    /**
+     * Блокирует строку тренировки до конца транзакции. Используется, чтобы постановка в лист ожидания
+     * и освобождение места выполнялись строго по очереди.
      */
-    @Modifying(clearAutomatically = true)
-    @Query(value = "UPDATE schedule SET available_slots = available_slots - 1 WHERE id = :id", nativeQuery = true)
-    void decrementAvailableSlots(@Param("id") Long id);
+    @Query(value = "SELECT id FROM schedule WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
     // Найдёт все записи расписания для конкретного тренера
 
+    /**
+     * Находит все занятия серии: тип тренировки, тренер и дни недели (ISO: 1 - понедельник, 7 - воскресенье)
+     * в заданном интервале времени.
+     */
+    @Query(value = "SELECT * FROM schedule WHERE workout_id = :workoutTypeId AND trainer_id = :trainerId " +
+            "AND start_time > :from AND start_time < :to AND CAST(EXTRACT(ISODOW FROM start_time) AS INTEGER) IN (:days) " +
+            "ORDER BY start_time", nativeQuery = true)
+    List<Schedule> findSeries(@Param("workoutTypeId") Long workoutTypeId,
+                              @Param("trainerId") Long trainerId,
+                              @Param("days") Collection<Integer> days,
+                              @Param("from") LocalDateTime from,
+                              @Param("to") LocalDateTime to);
+
     List<Schedule> findByWorkoutType(WorkoutType workoutType);
     // Найдёт все записи для конкретного типа тренировки
 
@@ -0,0 +1,42 @@
+package ru.fitness.backend.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+import ru.fitness.backend.dto.ScheduleCursor;
+import ru.fitness.backend.dto.TrainerScheduleView;
+import ru.fitness.backend.models.Schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Постраничная выборка расписания с keyset-пагинацией. Сортировка и отсечение по курсору выполняются в SQL,
+ * поэтому стоимость страницы не зависит от объёма истории.
+ */
+public interface ScheduleRepositoryCustom {
+
+    /**
+     * Предстоящие тренировки. Для сортировки по времени порядок такой: сначала со свободными местами,
+     * затем по времени начала и ID; для остальных полей - по полю, затем по времени начала и ID.
+     * @param after курсор последней показанной тренировки или null для первой страницы
+     */
+    List<Schedule> findUpcomingPage(Specification<Schedule> filter, String sortField, boolean descending,
+                                    ScheduleCursor after, LocalDateTime now, int limit);
+
+    /**
+     * Прошедшие тренировки, самые свежие сверху.
+     * @param after курсор последней показанной тренировки или null для первой страницы
+     */
+    List<Schedule> findPastPage(Specification<Schedule> filter, ScheduleCursor after, LocalDateTime now, int limit);
+
+    /**
+     * Занятия тренера с числом записавшихся. Предстоящие идут по возрастанию времени, история - по убыванию;
+     * фильтры по дате и типу тренировки выполняются в SQL по индексам (trainer_id, start_time)
+     * и (trainer_id, workout_id, start_time).
+     * @param date день занятий или null
+     * @param workoutTypeId тип тренировки или null
+     * @param after курсор последнего показанного занятия или null для первой страницы
+     */
+    List<TrainerScheduleView> findTrainerPage(Long trainerId, LocalDate date, Long workoutTypeId, boolean upcoming,
+                                              ScheduleCursor after, LocalDateTime now, int limit);
+}
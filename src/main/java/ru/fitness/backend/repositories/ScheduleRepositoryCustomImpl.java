@@ -0,0 +1,147 @@
+package ru.fitness.backend.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import ru.fitness.backend.dto.ScheduleCursor;
+import ru.fitness.backend.dto.TrainerScheduleView;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.WorkoutSubscription;
+import ru.fitness.backend.models.WorkoutType;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ScheduleRepositoryCustomImpl implements ScheduleRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Schedule> findUpcomingPage(Specification<Schedule> filter, String sortField, boolean descending,
+                                           ScheduleCursor after, LocalDateTime now, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Schedule> query = cb.createQuery(Schedule.class);
+        Root<Schedule> root = fetchDetails(query.from(Schedule.class));
+
+        Expression<Comparable<Object>> sortKey = sortKey(root, cb, sortField);
+        Expression<LocalDateTime> startTime = root.get("startTime");
+        Expression<Long> id = root.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(filter.toPredicate(root, query, cb));
+        predicates.add(cb.greaterThan(startTime, now));
+        if (after != null) {
+            @SuppressWarnings("unchecked")
+            Comparable<Object> afterValue = (Comparable<Object>) after.sortKey(sortField);
+            // (ключ, время, id) строго после курсора с учётом направления основного ключа
+            predicates.add(cb.or(
+                    descending ? cb.lessThan(sortKey, afterValue) : cb.greaterThan(sortKey, afterValue),
+                    cb.and(cb.equal(sortKey, afterValue), cb.or(
+                            cb.greaterThan(startTime, after.getStartTime()),
+                            cb.and(cb.equal(startTime, after.getStartTime()), cb.greaterThan(id, after.getId()))))));
+        }
+
+        query.select(root)
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(descending ? cb.desc(sortKey) : cb.asc(sortKey), cb.asc(startTime), cb.asc(id));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<Schedule> findPastPage(Specification<Schedule> filter, ScheduleCursor after, LocalDateTime now, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Schedule> query = cb.createQuery(Schedule.class);
+        Root<Schedule> root = fetchDetails(query.from(Schedule.class));
+
+        Expression<LocalDateTime> startTime = root.get("startTime");
+        Expression<Long> id = root.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(filter.toPredicate(root, query, cb));
+        predicates.add(cb.lessThanOrEqualTo(startTime, now));
+        if (after != null) {
+            predicates.add(cb.or(
+                    cb.lessThan(startTime, after.getStartTime()),
+                    cb.and(cb.equal(startTime, after.getStartTime()), cb.lessThan(id, after.getId()))));
+        }
+
+        query.select(root)
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(cb.desc(startTime), cb.desc(id));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<TrainerScheduleView> findTrainerPage(Long trainerId, LocalDate date, Long workoutTypeId, boolean upcoming,
+                                                     ScheduleCursor after, LocalDateTime now, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TrainerScheduleView> query = cb.createQuery(TrainerScheduleView.class);
+        Root<Schedule> root = query.from(Schedule.class);
+        Join<Schedule, WorkoutType> workoutType = root.join("workoutType");
+
+        Expression<LocalDateTime> startTime = root.get("startTime");
+        Expression<Long> id = root.get("id");
+
+        // Число записей считается коррелированным подзапросом по индексу workout_subscription(schedule_id)
+        Subquery<Long> booked = query.subquery(Long.class);
+        Root<WorkoutSubscription> subscription = booked.from(WorkoutSubscription.class);
+        booked.select(cb.count(subscription)).where(cb.equal(subscription.get("schedule"), root));
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(root.get("trainer").get("id"), trainerId));
+        predicates.add(upcoming ? cb.greaterThan(startTime, now) : cb.lessThanOrEqualTo(startTime, now));
+        if (date != null) {
+            predicates.add(cb.greaterThanOrEqualTo(startTime, date.atStartOfDay()));
+            predicates.add(cb.lessThan(startTime, date.plusDays(1).atStartOfDay()));
+        }
+        if (workoutTypeId != null) {
+            predicates.add(cb.equal(root.get("workoutType").get("id"), workoutTypeId));
+        }
+        if (after != null) {
+            predicates.add(upcoming
+                    ? cb.or(cb.greaterThan(startTime, after.getStartTime()),
+                            cb.and(cb.equal(startTime, after.getStartTime()), cb.greaterThan(id, after.getId())))
+                    : cb.or(cb.lessThan(startTime, after.getStartTime()),
+                            cb.and(cb.equal(startTime, after.getStartTime()), cb.lessThan(id, after.getId()))));
+        }
+
+        query.select(cb.construct(TrainerScheduleView.class,
+                        id, startTime, root.get("availableSlots"), root.get("totalSlots"),
+                        workoutType.get("id"), workoutType.get("title"), workoutType.get("durationMinutes"), booked))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(upcoming ? cb.asc(startTime) : cb.desc(startTime), upcoming ? cb.asc(id) : cb.desc(id));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Тип тренировки и тренер нужны карточке расписания, поэтому загружаются тем же запросом.
+     */
+    private static Root<Schedule> fetchDetails(Root<Schedule> root) {
+        root.fetch("workoutType");
+        root.fetch("trainer");
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Expression<Comparable<Object>> sortKey(Root<Schedule> root, CriteriaBuilder cb, String sortField) {
+        return switch (sortField) {
+            case "availableSlots" -> root.get("availableSlots");
+            case "workoutType.title" -> root.get("workoutType").get("title");
+            case "workoutType.durationMinutes" -> root.get("workoutType").get("durationMinutes");
+            // Наличие свободных мест: 1 - есть, 0 - нет
+            default -> (Expression<Comparable<Object>>) (Expression<?>) cb.<Integer>selectCase()
+                    .when(cb.greaterThan(root.get("availableSlots"), 0), 1)
+                    .otherwise(0);
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package ru.fitness.backend.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.fitness.backend.models.StatsRollup;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Свёртка исходных таблиц в stats_rollup и чтение свёрнутых рядов. Интервал пересчитывается целиком:
+ * строки агрегатов в нём удаляются и вставляются заново одним INSERT ... SELECT на показатель,
+ * поэтому повторный запуск за тот же интервал даёт тот же результат.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsRollupJdbcRepository {
+
+    public record Point(StatsRollup.Metric metric, LocalDateTime bucketStart, long value) {
+    }
+
+    public record Total(long dimensionId, StatsRollup.Metric metric, long value) {
+    }
+
+    // Источники показателей: строки (at, type_id, trainer_id, amount) в интервале [:from, :to)
+    private static final Map<StatsRollup.Metric, String> SOURCES = Map.of(
+            StatsRollup.Metric.REGISTRATIONS,
+            "SELECT date_of_created AS at, CAST(NULL AS BIGINT) AS type_id, CAST(NULL AS BIGINT) AS trainer_id, 1 AS amount " +
+            "FROM users WHERE date_of_created >= :from AND date_of_created < :to",
+            // Отменённая запись удалена из workout_subscription, но осталась в журнале отмен со временем создания
+            StatsRollup.Metric.BOOKINGS,
+            "SELECT ws.subscription_date AS at, s.workout_id AS type_id, s.trainer_id AS trainer_id, 1 AS amount " +
+            "FROM workout_subscription ws JOIN schedule s ON s.id = ws.schedule_id " +
+            "WHERE ws.subscription_date >= :from AND ws.subscription_date < :to " +
+            "UNION ALL " +
+            "SELECT subscribed_at, workout_type_id, trainer_id, 1 " +
+            "FROM subscription_cancellation WHERE subscribed_at >= :from AND subscribed_at < :to",
+            // Записи, удалённые вместе с тренировкой или типом, отменами не считаются
+            StatsRollup.Metric.CANCELLATIONS,
+            "SELECT cancelled_at AS at, workout_type_id AS type_id, trainer_id AS trainer_id, 1 AS amount " +
+            "FROM subscription_cancellation WHERE cancelled_at >= :from AND cancelled_at < :to AND reason = 'CANCELLED'",
+            StatsRollup.Metric.CAPACITY,
+            "SELECT start_time AS at, workout_id AS type_id, trainer_id AS trainer_id, " +
+            "COALESCE(total_slots, available_slots) AS amount " +
+            "FROM schedule WHERE start_time >= :from AND start_time < :to",
+            StatsRollup.Metric.OCCUPIED,
+            "SELECT start_time AS at, workout_id AS type_id, trainer_id AS trainer_id, " +
+            "GREATEST(COALESCE(total_slots, available_slots) - available_slots, 0) AS amount " +
+            "FROM schedule WHERE start_time >= :from AND start_time < :to");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Пересчитывает агрегаты одной гранулярности за интервал.
+     * @param from начало интервала, выровненное по границе часа или дня
+     * @return число записанных строк агрегатов
+     */
+    public int rollUp(StatsRollup.Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("unit", granularity == StatsRollup.Granularity.HOUR ? "hour" : "day")
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        jdbcTemplate.update(
+                "DELETE FROM stats_rollup WHERE granularity = :granularity AND bucket_start >= :from AND bucket_start < :to",
+                params);
+
+        int written = 0;
+        for (StatsRollup.Metric metric : StatsRollup.Metric.values()) {
+            params.addValue("metric", metric.name());
+            String grouped = metric == StatsRollup.Metric.REGISTRATIONS
+                    ? "SELECT :granularity, :metric, 'ALL', 0, bucket, SUM(amount) FROM (%s) t GROUP BY bucket"
+                    : "SELECT :granularity, :metric, " +
+                      "CASE WHEN GROUPING(type_id) = 0 THEN 'WORKOUT_TYPE' WHEN GROUPING(trainer_id) = 0 THEN 'TRAINER' ELSE 'ALL' END, " +
+                      "CASE WHEN GROUPING(type_id) = 0 THEN type_id WHEN GROUPING(trainer_id) = 0 THEN trainer_id ELSE 0 END, " +
+                      "bucket, SUM(amount) FROM (%s) t " +
+                      "GROUP BY GROUPING SETS ((bucket), (bucket, type_id), (bucket, trainer_id))";
+            written += jdbcTemplate.update(
+                    "INSERT INTO stats_rollup (granularity, metric, dimension, dimension_id, bucket_start, amount) " +
+                    grouped.formatted("SELECT date_trunc(:unit, at) AS bucket, type_id, trainer_id, amount " +
+                                      "FROM (" + SOURCES.get(metric) + ") src"),
+                    params);
+        }
+        return written;
+    }
+
+    /**
+     * Удаляет агрегаты одной гранулярности старше указанного момента.
+     */
+    public int deleteBefore(StatsRollup.Granularity granularity, LocalDateTime before) {
+        return jdbcTemplate.update(
+                "DELETE FROM stats_rollup WHERE granularity = :granularity AND bucket_start < :before",
+                new MapSqlParameterSource("granularity", granularity.name())
+                        .addValue("before", Timestamp.valueOf(before)));
+    }
+
+    /**
+     * Ряды показателей одного среза (клуб целиком, тип тренировки или тренер) по возрастанию времени.
+     */
+    public List<Point> findSeries(StatsRollup.Granularity granularity, StatsRollup.Dimension dimension, long dimensionId,
+                                  Collection<StatsRollup.Metric> metrics, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(
+                "SELECT metric, bucket_start, amount FROM stats_rollup " +
+                "WHERE granularity = :granularity AND metric IN (:metrics) AND dimension = :dimension " +
+                "AND dimension_id = :dimensionId AND bucket_start >= :from AND bucket_start < :to " +
+                "ORDER BY bucket_start",
+                new MapSqlParameterSource("granularity", granularity.name())
+                        .addValue("metrics", metrics.stream().map(Enum::name).toList())
+                        .addValue("dimension", dimension.name())
+                        .addValue("dimensionId", dimensionId)
+                        .addValue("from", Timestamp.valueOf(from))
+                        .addValue("to", Timestamp.valueOf(to)),
+                (rs, rowNum) -> new Point(StatsRollup.Metric.valueOf(rs.getString("metric")),
+                        rs.getTimestamp("bucket_start").toLocalDateTime(), rs.getLong("amount")));
+    }
+
+    /**
+     * Суммы показателей за интервал по каждому типу тренировки или тренеру.
+     */
+    public List<Total> findTotals(StatsRollup.Granularity granularity, StatsRollup.Dimension dimension,
+                                  LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(
+                "SELECT dimension_id, metric, SUM(amount) AS total FROM stats_rollup " +
+                "WHERE granularity = :granularity AND dimension = :dimension " +
+                "AND bucket_start >= :from AND bucket_start < :to " +
+                "GROUP BY dimension_id, metric",
+                new MapSqlParameterSource("granularity", granularity.name())
+                        .addValue("dimension", dimension.name())
+                        .addValue("from", Timestamp.valueOf(from))
+                        .addValue("to", Timestamp.valueOf(to)),
+                (rs, rowNum) -> new Total(rs.getLong("dimension_id"),
+                        StatsRollup.Metric.valueOf(rs.getString("metric")), rs.getLong("total")));
+    }
+}
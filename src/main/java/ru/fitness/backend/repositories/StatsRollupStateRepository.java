@@ -0,0 +1,7 @@
+package ru.fitness.backend.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.fitness.backend.models.StatsRollupState;
+
+public interface StatsRollupStateRepository extends JpaRepository<StatsRollupState, String> {
+}
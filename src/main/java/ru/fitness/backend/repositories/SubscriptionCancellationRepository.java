@@ -0,0 +1,35 @@
+package ru.fitness.backend.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.fitness.backend.models.SubscriptionCancellation;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface SubscriptionCancellationRepository extends JpaRepository<SubscriptionCancellation, Long> {
+
+    /**
+     * Переносит в журнал все записи на тренировки перед их удалением одной инструкцией. Строки помечаются
+     * как удалённые вместе с тренировкой: они остаются в статистике записей, но не считаются отменами.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO subscription_cancellation " +
+            "(user_id, schedule_id, workout_type_id, trainer_id, subscribed_at, cancelled_at, reason) " +
+            "SELECT ws.user_id, s.id, s.workout_id, s.trainer_id, ws.subscription_date, :cancelledAt, 'REMOVED' " +
+            "FROM workout_subscription ws JOIN schedule s ON s.id = ws.schedule_id " +
+            "WHERE s.id IN (:scheduleIds)", nativeQuery = true)
+    int journalAllByScheduleIds(@Param("scheduleIds") Collection<Long> scheduleIds,
+                                @Param("cancelledAt") LocalDateTime cancelledAt);
+
+    @Modifying
+    @Query(value = "INSERT INTO subscription_cancellation " +
+            "(user_id, schedule_id, workout_type_id, trainer_id, subscribed_at, cancelled_at, reason) " +
+            "SELECT ws.user_id, s.id, s.workout_id, s.trainer_id, ws.subscription_date, :cancelledAt, 'REMOVED' " +
+            "FROM workout_subscription ws JOIN schedule s ON s.id = ws.schedule_id " +
+            "WHERE s.workout_id = :workoutTypeId", nativeQuery = true)
+    int journalAllByWorkoutTypeId(@Param("workoutTypeId") Long workoutTypeId,
+                                  @Param("cancelledAt") LocalDateTime cancelledAt);
+}
@@ -0,0 +1,101 @@
+package ru.fitness.backend.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.fitness.backend.models.Role;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Массовые операции над пользователями для импорта: проверка email одним запросом на пачку
+ * и пакетные INSERT через JDBC batching (IDENTITY-ключ не даёт Hibernate группировать вставки).
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserJdbcRepository {
+
+    public record NewUser(String email, String passwordHash, String fullName, String phoneNumber) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Сравнение без учёта регистра (по индексу idx_users_email_lower).
+     * @param emails email в нижнем регистре
+     * @return email из переданных (в нижнем регистре), которые уже зарегистрированы
+     */
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT lower(email) FROM users WHERE lower(email) IN (:emails)",
+                new MapSqlParameterSource("emails", emails),
+                String.class));
+    }
+
+    /**
+     * Пакетно вставляет пользователей; email, занятые с момента проверки, пропускаются.
+     * @return email вставленных пользователей
+     */
+    public List<String> insertUsers(List<NewUser> users, LocalDateTime now) {
+        if (users.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[users.size()];
+        for (int i = 0; i < batch.length; i++) {
+            NewUser user = users.get(i);
+            batch[i] = new MapSqlParameterSource()
+                    .addValue("email", user.email())
+                    .addValue("password", user.passwordHash())
+                    .addValue("fullName", user.fullName())
+                    .addValue("phoneNumber", user.phoneNumber())
+                    .addValue("now", Timestamp.valueOf(now));
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(
+                "INSERT INTO users (email, password, full_name, phone_number, active, date_of_created) " +
+                "VALUES (:email, :password, :fullName, :phoneNumber, true, :now) ON CONFLICT (email) DO NOTHING",
+                batch);
+
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] != 0) {
+                emails.add(users.get(i).email());
+            }
+        }
+        return emails;
+    }
+
+    public Map<String, Long> findIdsByEmails(Collection<String> emails) {
+        Map<String, Long> ids = new HashMap<>();
+        if (emails.isEmpty()) {
+            return ids;
+        }
+        jdbcTemplate.query("SELECT id, email FROM users WHERE email IN (:emails)",
+                new MapSqlParameterSource("emails", emails),
+                rs -> {
+                    ids.put(rs.getString("email"), rs.getLong("id"));
+                });
+        return ids;
+    }
+
+    public void insertRoles(Collection<Long> userIds, Role role) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource[] batch = userIds.stream()
+                .map(id -> new MapSqlParameterSource("userId", id).addValue("role", role.name()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO user_role (user_id, roles) VALUES (:userId, :role)", batch);
+    }
+}
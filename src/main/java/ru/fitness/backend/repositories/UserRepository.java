@@ -1,7 +1,12 @@
 package ru.fitness.backend.repositories;
 
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.fitness.backend.models.Role;
 import ru.fitness.backend.models.User;
 
@@ -32,12 +37,39 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
      * @param role The role to search for.
      * @return A list of users with that role.
      */
+    @EntityGraph(attributePaths = {"roles"})
     List<User> findAllByRolesContaining(Role role);
 
     /**
-     * Counts users registered after a given date.
+     * Finds users matching a specification, loading their roles in the same statement
+     * instead of one select per user.
+     * @param spec The filter specification.
+     * @param sort The sort order.
+     * @return A list of matching users.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"roles"})
+    List<User> findAll(Specification<User> spec, Sort sort);
+
+    /**
+     * Loads the searchable fields of every user for the in-memory search index.
+     * @return Rows of (id, fullName, email).
+     */
+    @Query("SELECT u.id, u.fullName, u.email FROM User u")
+    List<Object[]> findSearchRows();
+
+    /**
+     * Users registered after a given date, oldest first.
      * @param date The date to compare with.
-     * @return The number of users.
+     * @return Rows of (id, dateOfCreated).
+     */
+    @Query("SELECT u.id, u.dateOfCreated FROM User u WHERE u.dateOfCreated > :date ORDER BY u.dateOfCreated, u.id")
+    List<Object[]> findRegistrationsAfter(@Param("date") LocalDateTime date);
+
+    /**
+     * The highest user id; ids are assigned in increasing order, so users above it were created later.
+     * @return The highest id or 0 if there are no users.
      */
-    long countByDateOfCreatedAfter(LocalDateTime date);
+    @Query("SELECT COALESCE(MAX(u.id), 0) FROM User u")
+    long findMaxId();
 }
@@ -0,0 +1,69 @@
+package ru.fitness.backend.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.fitness.backend.models.WaitlistEntry;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    /**
+     * Ставит пользователя в конец очереди под номером хвоста + 1. Повторная постановка не создаёт дубликат.
+     * Вызывается под блокировкой строки тренировки, иначе два ожидающих могут получить один номер.
+     * @return 1, если запись создана, 0 - если пользователь уже в листе ожидания
+     */
+    @Modifying
+    @Query(value = "INSERT INTO waitlist_entry (user_id, schedule_id, joined_at, seq) " +
+            "SELECT :userId, :scheduleId, :now, COALESCE(MAX(w.seq), 0) + 1 FROM waitlist_entry w WHERE w.schedule_id = :scheduleId " +
+            "ON CONFLICT (user_id, schedule_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId, @Param("scheduleId") Long scheduleId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.user.id = :userId AND w.schedule.id = :scheduleId")
+    int deleteByUserAndSchedule(@Param("userId") Long userId, @Param("scheduleId") Long scheduleId);
+
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.id = :id")
+    int deleteEntry(@Param("id") Long id);
+
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.schedule.id IN :scheduleIds")
+    int deleteAllByScheduleIds(@Param("scheduleIds") Collection<Long> scheduleIds);
+
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.schedule.id IN " +
+            "(SELECT s.id FROM Schedule s WHERE s.workoutType.id = :workoutTypeId)")
+    int deleteAllByWorkoutTypeId(@Param("workoutTypeId") Long workoutTypeId);
+
+    /**
+     * Берёт голову очереди с блокировкой строки. Вызывающий уже держит блокировку строки тренировки,
+     * поэтому продвижения одной очереди выполняются по одному.
+     */
+    @Query(value = "SELECT * FROM waitlist_entry WHERE schedule_id = :scheduleId ORDER BY seq LIMIT 1 FOR UPDATE",
+            nativeQuery = true)
+    Optional<WaitlistEntry> lockHead(@Param("scheduleId") Long scheduleId);
+
+    /**
+     * Позиция пользователя в очереди (с 1): число записей с номером не больше его номера.
+     * Подсчёт идёт только по индексу (schedule_id, seq), пропуски после выходов из очереди не мешают.
+     * @return позиция или 0, если пользователя нет в листе ожидания
+     */
+    @Query(value = "SELECT COALESCE((SELECT (SELECT COUNT(*) FROM waitlist_entry h WHERE h.schedule_id = :scheduleId AND h.seq <= me.seq) " +
+            "FROM waitlist_entry me WHERE me.schedule_id = :scheduleId AND me.user_id = :userId), 0)",
+            nativeQuery = true)
+    long findPosition(@Param("userId") Long userId, @Param("scheduleId") Long scheduleId);
+
+    /**
+     * Все листы ожидания пользователя вместе с позициями: пары [schedule_id, position].
+     */
+    @Query(value = "SELECT w.schedule_id, (SELECT COUNT(*) FROM waitlist_entry h " +
+            "WHERE h.schedule_id = w.schedule_id AND h.seq <= w.seq) FROM waitlist_entry w WHERE w.user_id = :userId",
+            nativeQuery = true)
+    List<Object[]> findPositionsByUser(@Param("userId") Long userId);
+}
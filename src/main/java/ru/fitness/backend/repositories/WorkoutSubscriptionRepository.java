@@ -1,32 +1,98 @@
 package ru.fitness.backend.repositories;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import ru.fitness.backend.dto.WorkoutPopularityDto;
+import org.springframework.data.repository.query.Param;
+import ru.fitness.backend.dto.RosterEntryView;
 import ru.fitness.backend.models.Schedule;
 import ru.fitness.backend.models.User;
 import ru.fitness.backend.models.WorkoutSubscription;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface WorkoutSubscriptionRepository extends JpaRepository<WorkoutSubscription, Long> {
+public interface WorkoutSubscriptionRepository extends JpaRepository<WorkoutSubscription, Long>, WorkoutSubscriptionRepositoryCustom {
 
     boolean existsByUserAndSchedule(User user, Schedule schedule);
 
+    boolean existsByUserIdAndScheduleId(Long userId, Long scheduleId);
+
+    /**
+     * Вставляет запись на тренировку, если такой пары (пользователь, тренировка) ещё нет.
+     * Конфликт по уникальному ключу не выбрасывает исключение, а возвращает 0 вставленных строк.
+     * @return 1, если запись создана, 0 - если пользователь уже записан
+     */
+    @Modifying
+    @Query(value = "INSERT INTO workout_subscription (user_id, schedule_id, subscription_date, schedule_start_time) " +
+            "SELECT :userId, s.id, :now, s.start_time FROM schedule s WHERE s.id = :scheduleId " +
+            "ON CONFLICT (user_id, schedule_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId, @Param("scheduleId") Long scheduleId, @Param("now") LocalDateTime now);
+
+    /**
+     * Переносит копию времени начала в записях на тренировку после изменения её времени.
+     */
+    @Modifying
+    @Query("UPDATE WorkoutSubscription ws SET ws.scheduleStartTime = :startTime WHERE ws.schedule.id = :scheduleId")
+    int updateScheduleStartTime(@Param("scheduleId") Long scheduleId, @Param("startTime") LocalDateTime startTime);
+
+    /**
+     * Записи пользователя вместе с тренировкой, её типом и тренером - всё, что показывает страница "Мои записи".
+     */
+    @EntityGraph(attributePaths = {"schedule", "schedule.workoutType", "schedule.trainer"})
     List<WorkoutSubscription> findByUser(User user);
 
+    @Query("SELECT ws.schedule.id FROM WorkoutSubscription ws WHERE ws.user.id = :userId AND ws.schedule.startTime > :now")
+    List<Long> findUpcomingScheduleIdsByUserId(@Param("userId") Long userId, @Param("now") LocalDateTime now);
+
+    @Query("SELECT ws.schedule.id FROM WorkoutSubscription ws WHERE ws.user.id = :userId AND ws.schedule.id IN :scheduleIds")
+    List<Long> findBookedScheduleIds(@Param("userId") Long userId, @Param("scheduleIds") Collection<Long> scheduleIds);
+
     Optional<WorkoutSubscription> findByUserAndSchedule(User user, Schedule schedule);
 
-    void deleteAllBySchedule(Schedule schedule);
+    /**
+     * Удаляет все записи на указанные тренировки одной инструкцией, не загружая сущности.
+     */
+    @Modifying
+    @Query("DELETE FROM WorkoutSubscription ws WHERE ws.schedule.id IN :scheduleIds")
+    int deleteAllByScheduleIds(@Param("scheduleIds") Collection<Long> scheduleIds);
+
+    @Modifying
+    @Query("DELETE FROM WorkoutSubscription ws WHERE ws.schedule.id IN " +
+            "(SELECT s.id FROM Schedule s WHERE s.workoutType.id = :workoutTypeId)")
+    int deleteAllByWorkoutTypeId(@Param("workoutTypeId") Long workoutTypeId);
 
+    @EntityGraph(attributePaths = {"user"})
     List<WorkoutSubscription> findAllBySchedule(Schedule schedule); // Добавлен метод
 
-    Optional<WorkoutSubscription> findFirstByUserAndScheduleStartTimeAfterOrderByScheduleStartTimeAsc(User user, java.time.LocalDateTime now);
+    long countByScheduleId(Long scheduleId);
+
+    /**
+     * Страница списка записавшихся в порядке записи (keyset по ID записи, индекс по schedule_id, id).
+     * @param afterId ID последней показанной записи или 0 для первой страницы
+     */
+    @Query("SELECT new ru.fitness.backend.dto.RosterEntryView(ws.id, u.id, u.fullName, u.email, u.phoneNumber, ws.subscriptionDate) " +
+           "FROM WorkoutSubscription ws JOIN ws.user u " +
+           "WHERE ws.schedule.id = :scheduleId AND ws.id > :afterId ORDER BY ws.id")
+    List<RosterEntryView> findRosterPage(@Param("scheduleId") Long scheduleId, @Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Ближайшая предстоящая запись пользователя для главной страницы: одна строка (LIMIT 1) с тренировкой
+     * и её типом. Фильтр и порядок - по копии времени начала в самой записи, поэтому строка берётся первой
+     * из индекса idx_workout_subscription_user_start (user_id, schedule_start_time, id).
+     */
+    @EntityGraph(attributePaths = {"schedule", "schedule.workoutType"})
+    Optional<WorkoutSubscription> findFirstByUserIdAndScheduleStartTimeAfterOrderByScheduleStartTimeAsc(Long userId, LocalDateTime now);
 
-    @Query("SELECT new ru.fitness.backend.dto.WorkoutPopularityDto(s.workoutType, COUNT(ws.id)) " +
-           "FROM WorkoutSubscription ws JOIN ws.schedule s " +
-           "GROUP BY s.workoutType " +
-           "ORDER BY COUNT(ws.id) DESC")
-    List<WorkoutPopularityDto> findWorkoutPopularity();
+    /**
+     * Число записей по типам тренировок для сверки счётчиков дашборда.
+     * @return строки (ID типа тренировки, число записей)
+     */
+    @Query("SELECT s.workoutType.id, COUNT(ws.id) FROM WorkoutSubscription ws JOIN ws.schedule s " +
+           "GROUP BY s.workoutType.id")
+    List<Object[]> countByWorkoutTypes();
 }
@@ -0,0 +1,25 @@
+package ru.fitness.backend.repositories;
+
+import ru.fitness.backend.dto.ScheduleCursor;
+import ru.fitness.backend.models.WorkoutSubscription;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Постраничная выборка записей пользователя с keyset-пагинацией: фильтры, сортировка и отсечение по курсору
+ * выполняются в SQL, поэтому стоимость страницы не зависит от числа записей за всё время.
+ */
+public interface WorkoutSubscriptionRepositoryCustom {
+
+    /**
+     * Записи пользователя вместе с тренировкой, её типом и тренером. Предстоящие идут по возрастанию времени
+     * начала, история - по убыванию.
+     * @param date день тренировки или null
+     * @param workoutTypeId тип тренировки или null
+     * @param after курсор последней показанной записи (время начала тренировки и ID записи) или null для первой страницы
+     */
+    List<WorkoutSubscription> findUserPage(Long userId, LocalDate date, Long workoutTypeId, boolean upcoming,
+                                           ScheduleCursor after, LocalDateTime now, int limit);
+}
@@ -0,0 +1,66 @@
+package ru.fitness.backend.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Fetch;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import ru.fitness.backend.dto.ScheduleCursor;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.WorkoutSubscription;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class WorkoutSubscriptionRepositoryCustomImpl implements WorkoutSubscriptionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<WorkoutSubscription> findUserPage(Long userId, LocalDate date, Long workoutTypeId, boolean upcoming,
+                                                  ScheduleCursor after, LocalDateTime now, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<WorkoutSubscription> query = cb.createQuery(WorkoutSubscription.class);
+        Root<WorkoutSubscription> root = query.from(WorkoutSubscription.class);
+        // Тренировка, её тип и тренер нужны строке страницы, поэтому загружаются тем же запросом
+        Fetch<WorkoutSubscription, Schedule> scheduleFetch = root.fetch("schedule");
+        scheduleFetch.fetch("workoutType");
+        scheduleFetch.fetch("trainer");
+        Join<WorkoutSubscription, Schedule> schedule = (Join<WorkoutSubscription, Schedule>) scheduleFetch;
+
+        // Фильтр и ключ страницы - копия времени начала в самой записи, по индексу (user_id, schedule_start_time, id)
+        Expression<LocalDateTime> startTime = root.get("scheduleStartTime");
+        Expression<Long> id = root.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(root.get("user").get("id"), userId));
+        predicates.add(upcoming ? cb.greaterThan(startTime, now) : cb.lessThanOrEqualTo(startTime, now));
+        if (date != null) {
+            predicates.add(cb.greaterThanOrEqualTo(startTime, date.atStartOfDay()));
+            predicates.add(cb.lessThan(startTime, date.plusDays(1).atStartOfDay()));
+        }
+        if (workoutTypeId != null) {
+            predicates.add(cb.equal(schedule.get("workoutType").get("id"), workoutTypeId));
+        }
+        if (after != null) {
+            predicates.add(upcoming
+                    ? cb.or(cb.greaterThan(startTime, after.getStartTime()),
+                            cb.and(cb.equal(startTime, after.getStartTime()), cb.greaterThan(id, after.getId())))
+                    : cb.or(cb.lessThan(startTime, after.getStartTime()),
+                            cb.and(cb.equal(startTime, after.getStartTime()), cb.lessThan(id, after.getId()))));
+        }
+
+        query.select(root)
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(upcoming ? cb.asc(startTime) : cb.desc(startTime), upcoming ? cb.asc(id) : cb.desc(id));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
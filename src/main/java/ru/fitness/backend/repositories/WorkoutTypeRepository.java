@@ -1,5 +1,6 @@
 package ru.fitness.backend.repositories;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import ru.fitness.backend.models.WorkoutType;
 import java.util.List;
@@ -10,4 +11,7 @@ public interface WorkoutTypeRepository extends JpaRepository<WorkoutType, Long>
 
     List<WorkoutType> findByDurationMinutes(int duration);
     // Найдёт тренировки по продолжительности
+
+    List<WorkoutType> findByOrderByIdAsc(Limit limit);
+    // Первые N типов тренировок (LIMIT в SQL)
 }
\ No newline at end of file
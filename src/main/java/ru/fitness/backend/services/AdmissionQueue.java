@@ -0,0 +1,213 @@
+package ru.fitness.backend.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.fitness.backend.exceptions.WorkoutSubscriptionException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Очередь допуска для пикового периода открытия записи.
+ * Заявки складываются в ограниченную очередь, отдельный диспетчер выдаёт их в порядке поступления
+ * (или в случайном порядке внутри пачки в режиме LOTTERY) с заданной скоростью, а сама запись
+ * выполняется на виртуальных потоках с ограничением числа одновременных обращений к БД.
+ * Клиент получает билет и опрашивает его статус; при переполнении очереди заявка сразу отклоняется.
+ */
+@Slf4j
+@Component
+public class AdmissionQueue {
+
+    public enum Status {
+        QUEUED, PROCESSING, BOOKED, REJECTED
+    }
+
+    public enum Order {
+        FIFO, LOTTERY
+    }
+
+    @Getter
+    public static class Ticket {
+        private final String id = UUID.randomUUID().toString();
+        private final Long userId;
+        private final Long scheduleId;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final long sequence;
+        private volatile Status status = Status.QUEUED;
+        private volatile String message;
+        private volatile LocalDateTime finishedAt;
+
+        private Ticket(Long userId, Long scheduleId, long sequence) {
+            this.userId = userId;
+            this.scheduleId = scheduleId;
+            this.sequence = sequence;
+        }
+
+        public boolean isFinished() {
+            return status == Status.BOOKED || status == Status.REJECTED;
+        }
+
+        private void finish(Status status, String message) {
+            this.message = message;
+            this.finishedAt = LocalDateTime.now();
+            this.status = status;
+        }
+    }
+
+    private final ScheduleService scheduleService;
+    private final BlockingQueue<Ticket> queue;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final Map<String, Ticket> pendingByBooking = new ConcurrentHashMap<>();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+    private final Order order;
+    private final int batchSize;
+    private final long dispatchIntervalNanos;
+    private final Duration ticketTtl;
+    private Thread dispatcher;
+
+    public AdmissionQueue(ScheduleService scheduleService,
+                          @Value("${fitness.booking.admission.capacity:5000}") int capacity,
+                          @Value("${fitness.booking.admission.rate-per-second:200}") int ratePerSecond,
+                          @Value("${fitness.booking.admission.max-in-flight:20}") int maxInFlight,
+                          @Value("${fitness.booking.admission.order:FIFO}") Order order,
+                          @Value("${fitness.booking.admission.ticket-ttl-seconds:600}") long ticketTtlSeconds) {
+        this.scheduleService = scheduleService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.order = order;
+        this.batchSize = Math.max(1, ratePerSecond);
+        this.dispatchIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        this.ticketTtl = Duration.ofSeconds(ticketTtlSeconds);
+    }
+
+    @PostConstruct
+    void start() {
+        dispatcher = Thread.ofPlatform().name("admission-dispatcher").daemon().start(this::dispatchLoop);
+        log.info("Очередь допуска запущена: режим {}, {} заявок/с", order, batchSize);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        dispatcher.interrupt();
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ставит заявку на запись в очередь. Повторная заявка того же пользователя на ту же тренировку,
+     * пока первая не обработана, возвращает уже выданный билет.
+     * @return билет или пустой Optional, если очередь переполнена
+     */
+    public Optional<Ticket> submit(Long scheduleId, Long userId) {
+        String bookingKey = userId + ":" + scheduleId;
+        Ticket ticket = new Ticket(userId, scheduleId, enqueued.incrementAndGet());
+        Ticket existing = pendingByBooking.putIfAbsent(bookingKey, ticket);
+        if (existing != null) {
+            return Optional.of(existing);
+        }
+        tickets.put(ticket.getId(), ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.getId());
+            pendingByBooking.remove(bookingKey, ticket);
+            log.warn("Очередь допуска переполнена, заявка пользователя {} на тренировку {} отклонена", userId, scheduleId);
+            return Optional.empty();
+        }
+        return Optional.of(ticket);
+    }
+
+    /**
+     * Возвращает билет, если он принадлежит указанному пользователю.
+     * @throws NoSuchElementException если билет не найден или истёк
+     */
+    public Ticket getTicket(String ticketId, Long userId) {
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.getUserId().equals(userId)) {
+            throw new NoSuchElementException("Заявка не найдена или уже устарела.");
+        }
+        return ticket;
+    }
+
+    /**
+     * Приблизительное число заявок перед данной (в режиме LOTTERY порядок внутри пачки случаен).
+     */
+    public long positionOf(Ticket ticket) {
+        if (ticket.getStatus() != Status.QUEUED) {
+            return 0;
+        }
+        return Math.max(1, ticket.getSequence() - dispatched.get());
+    }
+
+    private void dispatchLoop() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        long nextDispatch = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                if (order == Order.LOTTERY) {
+                    Collections.shuffle(batch);
+                }
+                for (Ticket ticket : batch) {
+                    long wait = nextDispatch - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    nextDispatch = Math.max(nextDispatch, System.nanoTime() - TimeUnit.SECONDS.toNanos(1)) + dispatchIntervalNanos;
+                    inFlight.acquire();
+                    dispatched.incrementAndGet();
+                    ticket.status = Status.PROCESSING;
+                    workers.execute(() -> process(ticket));
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batch.forEach(ticket -> ticket.finish(Status.REJECTED, "Сервис перезапускается. Попробуйте снова."));
+        queue.forEach(ticket -> ticket.finish(Status.REJECTED, "Сервис перезапускается. Попробуйте снова."));
+    }
+
+    private void process(Ticket ticket) {
+        try {
+            scheduleService.signUpForWorkout(ticket.getScheduleId(), ticket.getUserId());
+            ticket.finish(Status.BOOKED, "Вы успешно записались на тренировку!");
+        } catch (WorkoutSubscriptionException | NoSuchElementException | IllegalArgumentException e) {
+            ticket.finish(Status.REJECTED, e.getMessage());
+        } catch (Exception e) {
+            log.error("Ошибка при обработке заявки {} из очереди допуска", ticket.getId(), e);
+            ticket.finish(Status.REJECTED, "Произошла ошибка при записи. Попробуйте снова.");
+        } finally {
+            pendingByBooking.remove(ticket.getUserId() + ":" + ticket.getScheduleId(), ticket);
+            inFlight.release();
+        }
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    void evictExpiredTickets() {
+        LocalDateTime threshold = LocalDateTime.now().minus(ticketTtl);
+        tickets.values().removeIf(ticket -> ticket.isFinished() && ticket.getFinishedAt().isBefore(threshold));
+    }
+}
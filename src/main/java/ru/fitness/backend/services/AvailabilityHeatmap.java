@@ -0,0 +1,316 @@
+package ru.fitness.backend.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.fitness.backend.dto.AvailabilityHeatmapDto;
+import ru.fitness.backend.dto.ScheduleView;
+import ru.fitness.backend.events.ScheduleChangedEvent;
+import ru.fitness.backend.events.WorkoutTypeChangedEvent;
+import ru.fitness.backend.repositories.ScheduleRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Материализованная тепловая карта заполненности тренировок по дням и часам на ближайшие недели.
+ * Хранит суммы мест по ячейкам (тип тренировки, день, час) и вклад каждой тренировки в них.
+ * Все изменения применяет один поток карты: удаление и изменение мест при включённом распределителе
+ * считаются из события и счётчиков в памяти, создание и правка перечитывают тренировки пачкой вне
+ * потока запроса. После пачки поток публикует неизменяемую сетку, которую читатели используют без блокировок;
+ * готовые карты (все типы и каждый тип отдельно) кэшируются в самой сетке.
+ * Полная пересборка выполняется при старте, каждую ночь (сдвиг окна) и по команде администратора.
+ */
+@Slf4j
+@Component
+public class AvailabilityHeatmap {
+
+    // Ключ ячеек по всем типам тренировок
+    private static final long ALL_TYPES = 0L;
+    private static final int DEFAULT_FIRST_HOUR = 8;
+    private static final int DEFAULT_LAST_HOUR = 21;
+
+    private record CellKey(long workoutTypeId, LocalDate date, int hour) {
+    }
+
+    private record Contribution(long workoutTypeId, LocalDate date, int hour, int totalSlots, int bookedSlots) {
+    }
+
+    private static final class Counter {
+        private int classes;
+        private int totalSlots;
+        private int bookedSlots;
+    }
+
+    /**
+     * Опубликованное состояние карты: не меняется после создания.
+     */
+    private record Grid(LocalDate windowStart, long version, Map<CellKey, AvailabilityHeatmapDto.Cell> cells,
+                        List<Integer> hours, Map<Long, AvailabilityHeatmapDto> rendered) {
+    }
+
+    // Что нужно сделать с тренировкой; при слиянии побеждает более сильное действие
+    private enum Action {
+        SLOTS, RELOAD, DELETE
+    }
+
+    private final ScheduleRepository scheduleRepository;
+    private final ObjectProvider<InMemorySlotAllocator> slotAllocator;
+    private final TransactionTemplate readTransaction;
+    private final int days;
+    private volatile Grid grid;
+    private final Map<Long, Action> pending = new ConcurrentHashMap<>();
+    // Единственный писатель; состояние ниже меняется только этим потоком
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "heatmap-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final Map<Long, Contribution> contributions = new HashMap<>();
+    private final Map<CellKey, Counter> cells = new HashMap<>();
+    private LocalDate windowStart = LocalDate.now();
+    private long version;
+
+    public AvailabilityHeatmap(ScheduleRepository scheduleRepository,
+                               ObjectProvider<InMemorySlotAllocator> slotAllocator,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${fitness.heatmap.days:28}") int days) {
+        this.scheduleRepository = scheduleRepository;
+        this.slotAllocator = slotAllocator;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.days = days;
+        this.grid = new Grid(windowStart, 0, Map.of(), hours(Map.of()), new ConcurrentHashMap<>());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Полная пересборка: окно начинается с сегодняшнего дня. Выполняется потоком карты;
+     * метод возвращается после публикации.
+     */
+    @Scheduled(cron = "${fitness.heatmap.rebuild-cron:0 5 0 * * *}")
+    public void rebuild() {
+        try {
+            writer.submit(this::reload).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Ошибка пересборки тепловой карты", e.getCause());
+        }
+    }
+
+    @TransactionalEventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        Action action = switch (event.kind()) {
+            case DELETED -> Action.DELETE;
+            // Счётчик распределителя точнее базы и читается без запроса
+            case SLOTS_CHANGED -> slotAllocator.getIfAvailable() != null ? Action.SLOTS : Action.RELOAD;
+            case CREATED, UPDATED -> Action.RELOAD;
+        };
+        pending.merge(event.scheduleId(), action, (current, next) -> current.compareTo(next) >= 0 ? current : next);
+        writer.execute(this::applyPending);
+    }
+
+    @TransactionalEventListener
+    public void onWorkoutTypeChanged(WorkoutTypeChangedEvent event) {
+        if (!event.deleted()) {
+            return;
+        }
+        writer.execute(() -> {
+            contributions.entrySet().stream()
+                    .filter(entry -> entry.getValue().workoutTypeId() == event.workoutTypeId())
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(this::remove);
+            publishIfIdle();
+        });
+    }
+
+    /**
+     * Версия опубликованной карты; растёт при каждой публикации.
+     */
+    public long getVersion() {
+        return grid.version();
+    }
+
+    /**
+     * Карта по всем типам или по одному типу тренировки. Столбцы часов одинаковы для всех типов,
+     * чтобы при переключении фильтра сетка не прыгала.
+     * @param workoutTypeId тип тренировки или null для всех типов
+     */
+    public AvailabilityHeatmapDto view(Long workoutTypeId) {
+        Grid current = grid;
+        long typeKey = workoutTypeId != null ? workoutTypeId : ALL_TYPES;
+        return current.rendered().computeIfAbsent(typeKey, key -> render(current, workoutTypeId, key));
+    }
+
+    private AvailabilityHeatmapDto render(Grid grid, Long workoutTypeId, long typeKey) {
+        List<AvailabilityHeatmapDto.Row> rows = new ArrayList<>(days);
+        for (int day = 0; day < days; day++) {
+            LocalDate date = grid.windowStart().plusDays(day);
+            List<AvailabilityHeatmapDto.Cell> row = new ArrayList<>(grid.hours().size());
+            for (int hour : grid.hours()) {
+                row.add(grid.cells().getOrDefault(new CellKey(typeKey, date, hour), AvailabilityHeatmapDto.Cell.EMPTY));
+            }
+            rows.add(new AvailabilityHeatmapDto.Row(date, row));
+        }
+        return new AvailabilityHeatmapDto(workoutTypeId, grid.hours(), rows, grid.version());
+    }
+
+    private void reload() {
+        pending.clear();
+        windowStart = LocalDate.now();
+        List<ScheduleView> views = readTransaction.execute(status -> scheduleRepository.findTimetableViewsBetween(
+                windowStart.atStartOfDay(), windowStart.plusDays(days).atStartOfDay()));
+        contributions.clear();
+        cells.clear();
+        views.forEach(this::put);
+        publish();
+        log.info("Тепловая карта пересобрана: {} тренировок с {} на {} дней", contributions.size(), windowStart, days);
+    }
+
+    /**
+     * Применяет накопившиеся изменения тренировок. Вызывается только потоком карты.
+     */
+    private void applyPending() {
+        Set<Long> reloadIds = new HashSet<>();
+        for (Long id : List.copyOf(pending.keySet())) {
+            Action action = pending.remove(id);
+            if (action == null) {
+                continue;
+            }
+            switch (action) {
+                case DELETE -> remove(id);
+                case SLOTS -> updateSlots(id);
+                case RELOAD -> reloadIds.add(id);
+            }
+        }
+        if (!reloadIds.isEmpty()) {
+            try {
+                List<ScheduleView> views = readTransaction.execute(status ->
+                        scheduleRepository.findTimetableViewsByIds(List.copyOf(reloadIds)));
+                reloadIds.forEach(this::remove);
+                views.forEach(this::put);
+            } catch (RuntimeException e) {
+                // Не применённые изменения подберёт ночная пересборка
+                log.error("Ошибка обновления тепловой карты для тренировок {}", reloadIds, e);
+            }
+        }
+        publishIfIdle();
+    }
+
+    /**
+     * Меняет только число занятых мест тренировки по счётчику распределителя.
+     */
+    private void updateSlots(Long scheduleId) {
+        Contribution old = contributions.get(scheduleId);
+        InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+        if (old == null || allocator == null) {
+            return;
+        }
+        int booked = Math.max(0, old.totalSlots() - allocator.availableSlots(scheduleId));
+        if (booked != old.bookedSlots()) {
+            remove(scheduleId);
+            put(scheduleId, new Contribution(old.workoutTypeId(), old.date(), old.hour(), old.totalSlots(), booked));
+        }
+    }
+
+    private void put(ScheduleView view) {
+        LocalDate date = view.getStartTime().toLocalDate();
+        if (date.isBefore(windowStart) || !date.isBefore(windowStart.plusDays(days))) {
+            return;
+        }
+        int available = availableSlots(view);
+        int total = view.getTotalSlots() != null && view.getTotalSlots() > 0 ? view.getTotalSlots() : available;
+        put(view.getId(), new Contribution(view.getWorkoutType().getId(), date, view.getStartTime().getHour(),
+                total, Math.max(0, total - available)));
+    }
+
+    private void put(Long scheduleId, Contribution contribution) {
+        contributions.put(scheduleId, contribution);
+        add(contribution, contribution.workoutTypeId(), 1);
+        add(contribution, ALL_TYPES, 1);
+    }
+
+    private void remove(Long scheduleId) {
+        Contribution contribution = contributions.remove(scheduleId);
+        if (contribution != null) {
+            add(contribution, contribution.workoutTypeId(), -1);
+            add(contribution, ALL_TYPES, -1);
+        }
+    }
+
+    private void add(Contribution contribution, long typeKey, int sign) {
+        CellKey key = new CellKey(typeKey, contribution.date(), contribution.hour());
+        Counter counter = cells.computeIfAbsent(key, k -> new Counter());
+        counter.classes += sign;
+        counter.totalSlots += sign * contribution.totalSlots();
+        counter.bookedSlots += sign * contribution.bookedSlots();
+        if (counter.classes == 0) {
+            cells.remove(key);
+        }
+    }
+
+    /**
+     * Публикует сетку, только если в очереди потока не осталось изменений: всплеск событий даёт одну публикацию.
+     */
+    private void publishIfIdle() {
+        if (writer.getQueue().isEmpty()) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        Map<CellKey, AvailabilityHeatmapDto.Cell> snapshot = new HashMap<>(cells.size() * 2);
+        cells.forEach((key, counter) -> snapshot.put(key,
+                new AvailabilityHeatmapDto.Cell(counter.classes, counter.totalSlots, counter.bookedSlots)));
+        grid = new Grid(windowStart, ++version, Map.copyOf(snapshot), hours(snapshot), new ConcurrentHashMap<>());
+    }
+
+    private static List<Integer> hours(Map<CellKey, AvailabilityHeatmapDto.Cell> cells) {
+        int firstHour = cells.keySet().stream().filter(key -> key.workoutTypeId() == ALL_TYPES)
+                .mapToInt(CellKey::hour).min().orElse(DEFAULT_FIRST_HOUR);
+        int lastHour = cells.keySet().stream().filter(key -> key.workoutTypeId() == ALL_TYPES)
+                .mapToInt(CellKey::hour).max().orElse(DEFAULT_LAST_HOUR);
+        return IntStream.rangeClosed(firstHour, lastHour).boxed().toList();
+    }
+
+    /**
+     * При включённом распределителе мест в памяти база отстаёт от счётчиков.
+     */
+    private int availableSlots(ScheduleView view) {
+        InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+        return allocator == null ? view.getAvailableSlots() : allocator.availableSlots(view.getId());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writer.shutdownNow();
+    }
+}
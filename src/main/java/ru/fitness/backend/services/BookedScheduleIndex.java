@@ -0,0 +1,180 @@
+package ru.fitness.backend.services;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.fitness.backend.events.SubscriptionChangedEvent;
+import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Кэш ID предстоящих тренировок, на которые записан пользователь, для отметок "Вы записаны" в расписании.
+ * Набор хранится как компактное множество примитивных long с проверкой за O(1). После фиксации записи
+ * или отмены закэшированный набор обновляется по самому событию, а не перечитывается: при распределении
+ * мест в памяти запись попадает в базу позже. По той же причине набор, загружаемый из базы, дополняется
+ * ещё не записанными бронированиями распределителя.
+ */
+@Component
+public class BookedScheduleIndex {
+
+    /**
+     * Неизменяемое множество положительных ID (открытая адресация, 0 - пустая ячейка).
+     */
+    public static final class ScheduleIdSet {
+
+        private static final ScheduleIdSet EMPTY = new ScheduleIdSet(new long[1]);
+
+        private final long[] table;
+        private final int mask;
+
+        private ScheduleIdSet(long[] table) {
+            this.table = table;
+            this.mask = table.length - 1;
+        }
+
+        static ScheduleIdSet of(Collection<Long> ids) {
+            if (ids.isEmpty()) {
+                return EMPTY;
+            }
+            // Заполнение не больше половины - короткие цепочки проб
+            long[] table = new long[Integer.highestOneBit(ids.size() * 2 - 1) << 1];
+            int mask = table.length - 1;
+            for (long id : ids) {
+                int slot = hash(id) & mask;
+                while (table[slot] != 0 && table[slot] != id) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id;
+            }
+            return new ScheduleIdSet(table);
+        }
+
+        ScheduleIdSet with(long id) {
+            if (contains(id)) {
+                return this;
+            }
+            List<Long> ids = ids();
+            ids.add(id);
+            return of(ids);
+        }
+
+        ScheduleIdSet without(long id) {
+            if (!contains(id)) {
+                return this;
+            }
+            List<Long> ids = ids();
+            ids.remove(id);
+            return of(ids);
+        }
+
+        private List<Long> ids() {
+            List<Long> ids = new ArrayList<>(table.length / 2 + 1);
+            for (long value : table) {
+                if (value != 0) {
+                    ids.add(value);
+                }
+            }
+            return ids;
+        }
+
+        public boolean contains(long id) {
+            int slot = hash(id) & mask;
+            long value;
+            while ((value = table[slot]) != 0) {
+                if (value == id) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private static int hash(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private final WorkoutSubscriptionRepository workoutSubscriptionRepository;
+    private final UserService userService;
+    private final ObjectProvider<InMemorySlotAllocator> slotAllocator;
+    private final Map<Long, ScheduleIdSet> entries;
+    // Идущие загрузки по пользователям (под монитором entries): изменение записей пользователя снимает его метку,
+    // и набор, прочитанный до изменения, не попадает в кэш; загрузки других пользователей не затрагиваются
+    private final Map<Long, Object> loads = new HashMap<>();
+
+    public BookedScheduleIndex(WorkoutSubscriptionRepository workoutSubscriptionRepository,
+                               UserService userService,
+                               ObjectProvider<InMemorySlotAllocator> slotAllocator,
+                               @Value("${fitness.booked-index.max-users:10000}") int maxUsers) {
+        this.workoutSubscriptionRepository = workoutSubscriptionRepository;
+        this.userService = userService;
+        this.slotAllocator = slotAllocator;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ScheduleIdSet> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /**
+     * @return набор ID предстоящих тренировок текущего пользователя или пустой Optional для анонимного посетителя
+     */
+    public Optional<ScheduleIdSet> forCurrentUser() {
+        return userService.getCurrentUserId().map(this::forUser);
+    }
+
+    public ScheduleIdSet forUser(Long userId) {
+        Object load = new Object();
+        synchronized (entries) {
+            ScheduleIdSet cached = entries.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            loads.put(userId, load);
+        }
+        ScheduleIdSet loaded = null;
+        try {
+            Set<Long> ids = new HashSet<>();
+            InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+            if (allocator != null) {
+                // Сначала незаписанные, затем база: бронирование, записанное между чтениями, будет в базе
+                ids.addAll(allocator.unflushedScheduleIds(userId));
+            }
+            ids.addAll(workoutSubscriptionRepository.findUpcomingScheduleIdsByUserId(userId, LocalDateTime.now()));
+            loaded = ScheduleIdSet.of(ids);
+            return loaded;
+        } finally {
+            synchronized (entries) {
+                if (loads.remove(userId, load) && loaded != null) {
+                    entries.put(userId, loaded);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        synchronized (entries) {
+            loads.remove(event.userId());
+            ScheduleIdSet cached = entries.get(event.userId());
+            if (cached != null) {
+                entries.put(event.userId(), event.booked()
+                        ? cached.with(event.scheduleId())
+                        : cached.without(event.scheduleId()));
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.fitness.backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Окно записи: запись на тренировку открывается за заданное число дней до её начала в заданное время
+ * (например, за 7 дней в 08:00). Сразу после открытия действует "пиковый" период, в течение которого
+ * заявки проходят через очередь допуска {@link AdmissionQueue}.
+ */
+@Component
+public class BookingWindowPolicy {
+
+    private static final DateTimeFormatter OPENS_AT_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+
+    private final int daysBefore;
+    private final LocalTime openTime;
+    private final Duration surgeDuration;
+
+    public BookingWindowPolicy(@Value("${fitness.booking.window.days-before:7}") int daysBefore,
+                               @Value("${fitness.booking.window.open-time:08:00}") String openTime,
+                               @Value("${fitness.booking.window.surge-minutes:10}") long surgeMinutes) {
+        this.daysBefore = daysBefore;
+        this.openTime = LocalTime.parse(openTime);
+        this.surgeDuration = Duration.ofMinutes(surgeMinutes);
+    }
+
+    /**
+     * Окно записи отключается значением days-before <= 0.
+     */
+    public boolean isEnabled() {
+        return daysBefore > 0;
+    }
+
+    public LocalDateTime opensAt(LocalDateTime startTime) {
+        return startTime.toLocalDate().minusDays(daysBefore).atTime(openTime);
+    }
+
+    public boolean isOpen(LocalDateTime startTime) {
+        return !isEnabled() || !LocalDateTime.now().isBefore(opensAt(startTime));
+    }
+
+    /**
+     * Верхняя граница (не включительно) времени начала тренировок, запись на которые уже открыта.
+     * Позволяет проверять окно записи прямо в условии SQL-запроса.
+     */
+    public LocalDateTime bookableBefore(LocalDateTime now) {
+        if (!isEnabled()) {
+            return LocalDateTime.of(9999, 12, 31, 0, 0);
+        }
+        LocalDate lastOpenDate = now.toLocalDate().plusDays(daysBefore);
+        if (now.toLocalTime().isBefore(openTime)) {
+            lastOpenDate = lastOpenDate.minusDays(1);
+        }
+        return lastOpenDate.plusDays(1).atStartOfDay();
+    }
+
+    /**
+     * Пиковый период сразу после открытия записи, когда заявки выгоднее обрабатывать через очередь.
+     */
+    public boolean isSurge(LocalDateTime startTime) {
+        if (!isEnabled()) {
+            return false;
+        }
+        LocalDateTime opensAt = opensAt(startTime);
+        LocalDateTime now = LocalDateTime.now();
+        return !now.isBefore(opensAt) && now.isBefore(opensAt.plus(surgeDuration));
+    }
+
+    public String closedMessage(LocalDateTime startTime) {
+        return "Запись на эту тренировку откроется " + opensAt(startTime).format(OPENS_AT_FORMAT) + ".";
+    }
+}
@@ -0,0 +1,154 @@
+package ru.fitness.backend.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.fitness.backend.models.WorkoutType;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Удаление типов тренировок с большой историей. Небольшие каскады выполняются сразу одной транзакцией,
+ * крупные - фоновой задачей порциями по несколько сотен занятий, каждая в своей короткой транзакции,
+ * чтобы не держать блокировки таблиц минутами и не упираться в таймаут запроса админки.
+ */
+@Slf4j
+@Service
+public class CascadeDeleteJobService {
+
+    private static final int MAX_KEPT_JOBS = 20;
+
+    public enum Status {
+        RUNNING, DONE, FAILED
+    }
+
+    @Getter
+    public static class Job {
+        private final Long workoutTypeId;
+        private final String title;
+        private final long total;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile long processed;
+        private volatile Status status = Status.RUNNING;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        private Job(Long workoutTypeId, String title, long total) {
+            this.workoutTypeId = workoutTypeId;
+            this.title = title;
+            this.total = total;
+        }
+
+        public int getPercent() {
+            return total == 0 ? 100 : (int) Math.min(100, processed * 100 / total);
+        }
+    }
+
+    private final WorkoutTypeService workoutTypeService;
+    private final int chunkSize;
+    private final long backgroundThreshold;
+    private final long pauseMillis;
+    // Один поток: крупные каскады выполняются по очереди и не конкурируют друг с другом за блокировки
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cascade-delete");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    public CascadeDeleteJobService(WorkoutTypeService workoutTypeService,
+                                   @Value("${fitness.cascade-delete.chunk-size:500}") int chunkSize,
+                                   @Value("${fitness.cascade-delete.background-threshold:2000}") long backgroundThreshold,
+                                   @Value("${fitness.cascade-delete.pause-ms:50}") long pauseMillis) {
+        this.workoutTypeService = workoutTypeService;
+        this.chunkSize = chunkSize;
+        this.backgroundThreshold = backgroundThreshold;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Удаляет тип тренировки со всеми занятиями.
+     * @return фоновая задача, если каскад слишком велик для одной транзакции; пустой Optional, если удаление уже выполнено
+     * @throws IllegalStateException если удаление этого типа уже выполняется
+     */
+    public Optional<Job> deleteWorkoutType(Long workoutTypeId) {
+        WorkoutType workoutType = workoutTypeService.findById(workoutTypeId);
+        long total = workoutTypeService.countSchedules(workoutTypeId);
+        if (total <= backgroundThreshold) {
+            workoutTypeService.deleteWorkoutType(workoutTypeId, chunkSize);
+            return Optional.empty();
+        }
+
+        Job job = new Job(workoutTypeId, workoutType.getTitle(), total);
+        Job existing = jobs.compute(workoutTypeId, (id, current) ->
+                current != null && current.getStatus() == Status.RUNNING ? current : job);
+        if (existing != job) {
+            throw new IllegalStateException("Удаление типа тренировки \"" + workoutType.getTitle() + "\" уже выполняется.");
+        }
+        pruneJobs();
+        executor.execute(() -> run(job));
+        log.info("IN deleteWorkoutType - запущено фоновое удаление типа {} ({} занятий)", workoutTypeId, total);
+        return Optional.of(job);
+    }
+
+    /**
+     * Задачи для отображения прогресса в админке, свежие сверху.
+     */
+    public List<Job> findJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(Job::getStartedAt).reversed())
+                .toList();
+    }
+
+    /**
+     * Завершённые задачи нужны только для отображения итога: хранятся последние {@link #MAX_KEPT_JOBS}.
+     */
+    private void pruneJobs() {
+        List<Job> finished = jobs.values().stream()
+                .filter(job -> job.getStatus() != Status.RUNNING)
+                .sorted(Comparator.comparing(Job::getStartedAt).reversed())
+                .toList();
+        finished.stream().skip(MAX_KEPT_JOBS).forEach(job -> jobs.remove(job.getWorkoutTypeId(), job));
+    }
+
+    private void run(Job job) {
+        try {
+            int deleted;
+            while ((deleted = workoutTypeService.deleteScheduleChunk(job.getWorkoutTypeId(), chunkSize)) > 0) {
+                job.processed += deleted;
+                if (pauseMillis > 0) {
+                    // Пауза между порциями даёт пройти обычным запросам к тем же таблицам
+                    TimeUnit.MILLISECONDS.sleep(pauseMillis);
+                }
+            }
+            workoutTypeService.deleteWorkoutType(job.getWorkoutTypeId(), chunkSize);
+            job.status = Status.DONE;
+            log.info("IN deleteWorkoutType - тип {} удалён, занятий удалено: {}", job.getWorkoutTypeId(), job.getProcessed());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.error = "Удаление прервано остановкой сервиса.";
+            job.status = Status.FAILED;
+        } catch (Exception e) {
+            log.error("Ошибка фонового удаления типа тренировки {}", job.getWorkoutTypeId(), e);
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
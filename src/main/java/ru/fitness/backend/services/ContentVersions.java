@@ -0,0 +1,173 @@
+package ru.fitness.backend.services;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import ru.fitness.backend.events.NewsChangedEvent;
+import ru.fitness.backend.events.ScheduleChangedEvent;
+import ru.fitness.backend.events.SubscriptionChangedEvent;
+import ru.fitness.backend.events.UserChangedEvent;
+import ru.fitness.backend.events.WaitlistChangedEvent;
+import ru.fitness.backend.events.WorkoutTypeChangedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики версий агрегатов (расписание, типы тренировок, новости, тренеры) и версий данных отдельных
+ * пользователей для условных GET-запросов. Счётчики увеличиваются после фиксации изменений, поэтому ETag,
+ * вычисленный до чтения данных из базы, никогда не помечает новые данные старой версией надолго.
+ * Данные, которые страница читает из структур в памяти с собственным потоком обновления (снимок расписания,
+ * тепловая карта), применяют изменение позже фиксации; такая страница передаёт в ETag версию опубликованной
+ * структуры, иначе запрос в этом промежутке получил бы новый ETag со старыми данными.
+ * Страница отвечает 304 без обращения к базе, если ни одна из её зависимостей не изменилась.
+ */
+@Component
+public class ContentVersions {
+
+    public enum Aggregate {
+        SCHEDULES, WORKOUT_TYPES, NEWS, TRAINERS
+    }
+
+    // Начальное значение - время запуска: после перезапуска старые ETag не совпадут
+    private final long epoch = System.currentTimeMillis();
+    private final Map<Aggregate, AtomicLong> versions = new EnumMap<>(Aggregate.class);
+    private final Map<Aggregate, AtomicLong> modifiedAt = new EnumMap<>(Aggregate.class);
+    private final Map<Long, Long> userVersions = new ConcurrentHashMap<>();
+    private final AtomicLong userSequence = new AtomicLong();
+    private final UserService userService;
+    private final long timeBucketMillis;
+
+    public ContentVersions(UserService userService,
+                           @Value("${fitness.conditional-get.time-bucket-seconds:60}") long timeBucketSeconds) {
+        this.userService = userService;
+        this.timeBucketMillis = Math.max(1, timeBucketSeconds) * 1000;
+        for (Aggregate aggregate : Aggregate.values()) {
+            versions.put(aggregate, new AtomicLong(epoch));
+            modifiedAt.put(aggregate, new AtomicLong(epoch));
+        }
+    }
+
+    public long version(Aggregate aggregate) {
+        return versions.get(aggregate).get();
+    }
+
+    /**
+     * Проверяет If-None-Match и выставляет ETag страницы.
+     * @param timeSensitive страница зависит от текущего времени (прошедшие/предстоящие занятия, окно записи),
+     *                      тогда ETag меняется и по истечении временного интервала
+     * @param aggregates агрегаты, данные которых выводит страница
+     * @return true, если клиенту отправлен 304 и контроллеру ничего не нужно делать
+     */
+    public boolean checkNotModified(WebRequest webRequest, boolean timeSensitive, Aggregate... aggregates) {
+        return checkNotModified(webRequest, timeSensitive, 0, aggregates);
+    }
+
+    /**
+     * То же, что {@link #checkNotModified(WebRequest, boolean, Aggregate...)}, для страницы, которая читает данные
+     * из структуры в памяти.
+     * @param dataVersion версия опубликованной структуры, из которой страница берёт данные
+     */
+    public boolean checkNotModified(WebRequest webRequest, boolean timeSensitive, long dataVersion, Aggregate... aggregates) {
+        ServletWebRequest servletRequest = (ServletWebRequest) webRequest;
+        HttpServletRequest request = servletRequest.getRequest();
+        // После redirect страница показывает flash-сообщение - её нельзя заменить закэшированной
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(request);
+        if (flash != null && !flash.isEmpty()) {
+            return false;
+        }
+        if (servletRequest.getResponse() != null) {
+            // Браузер хранит страницу, но перед каждым показом сверяет ETag
+            servletRequest.getResponse().setHeader("Cache-Control", "private, no-cache");
+        }
+        return webRequest.checkNotModified(etag(request, timeSensitive, dataVersion, aggregates));
+    }
+
+    /**
+     * Проверяет If-None-Match и If-Modified-Since для общедоступного ресурса, не зависящего от пользователя
+     * и сессии (лента новостей): ETag строится только по версиям агрегатов, ответ можно кэшировать в прокси.
+     * @return true, если клиенту отправлен 304 и контроллеру ничего не нужно делать
+     */
+    public boolean checkSharedNotModified(WebRequest webRequest, Aggregate... aggregates) {
+        ServletWebRequest servletRequest = (ServletWebRequest) webRequest;
+        if (servletRequest.getResponse() != null) {
+            servletRequest.getResponse().setHeader("Cache-Control", "public, no-cache");
+        }
+        StringBuilder key = new StringBuilder("shared;");
+        long lastModified = 0;
+        for (Aggregate aggregate : aggregates) {
+            key.append(aggregate.ordinal()).append(':').append(version(aggregate)).append(';');
+            lastModified = Math.max(lastModified, modifiedAt.get(aggregate).get());
+        }
+        String etag = "W/\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+        return webRequest.checkNotModified(etag, lastModified);
+    }
+
+    private String etag(HttpServletRequest request, boolean timeSensitive, long dataVersion, Aggregate... aggregates) {
+        StringBuilder key = new StringBuilder();
+        for (Aggregate aggregate : aggregates) {
+            key.append(aggregate.ordinal()).append(':').append(version(aggregate)).append(';');
+        }
+        key.append("d:").append(dataVersion).append(';');
+        Long userId = userService.getCurrentUserId().orElse(null);
+        key.append("u:").append(userId).append(':').append(userId == null ? 0 : userVersions.getOrDefault(userId, 0L)).append(';');
+        // Формы страницы содержат CSRF-токен сессии
+        key.append("s:").append(request.getSession(false) == null ? "" : request.getSession(false).getId()).append(';');
+        if (timeSensitive) {
+            key.append("t:").append(System.currentTimeMillis() / timeBucketMillis);
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    @TransactionalEventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        bump(Aggregate.SCHEDULES);
+    }
+
+    @TransactionalEventListener
+    public void onWaitlistChanged(WaitlistChangedEvent event) {
+        bump(Aggregate.SCHEDULES);
+    }
+
+    @TransactionalEventListener
+    public void onWorkoutTypeChanged(WorkoutTypeChangedEvent event) {
+        bump(Aggregate.WORKOUT_TYPES);
+        if (event.deleted()) {
+            bump(Aggregate.SCHEDULES);
+        }
+    }
+
+    @TransactionalEventListener
+    public void onNewsChanged(NewsChangedEvent event) {
+        bump(Aggregate.NEWS);
+    }
+
+    @TransactionalEventListener
+    public void onUserChanged(UserChangedEvent event) {
+        // Имя или роли могли поменяться у тренера, который выводится на страницах расписания и тренеров
+        bump(Aggregate.TRAINERS);
+        bumpUser(event.userId());
+    }
+
+    @TransactionalEventListener
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        bumpUser(event.userId());
+    }
+
+    private void bump(Aggregate aggregate) {
+        versions.get(aggregate).incrementAndGet();
+        modifiedAt.get(aggregate).set(System.currentTimeMillis());
+    }
+
+    private void bumpUser(Long userId) {
+        userVersions.put(userId, userSequence.incrementAndGet());
+    }
+}
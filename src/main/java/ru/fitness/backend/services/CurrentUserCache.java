@@ -0,0 +1,74 @@
+package ru.fitness.backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.fitness.backend.dto.CurrentUser;
+import ru.fitness.backend.events.UserChangedEvent;
+import ru.fitness.backend.repositories.UserRepository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш снимков вошедших пользователей по email (имени в контексте безопасности), чтобы страницы не искали
+ * пользователя в базе на каждом запросе. Снимок сбрасывается при изменении ролей, статуса или профиля:
+ * сразу в транзакции изменения и ещё раз после её фиксации.
+ */
+@Component
+public class CurrentUserCache {
+
+    private final UserRepository userRepository;
+    private final Map<String, CurrentUser> entries;
+    // Счётчик сбросов: снимок, прочитанный до сброса, не должен попасть в кэш после него
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    public CurrentUserCache(UserRepository userRepository,
+                            @Value("${fitness.principal-cache.max-users:10000}") int maxUsers) {
+        this.userRepository = userRepository;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CurrentUser> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /**
+     * @return снимок пользователя или пустой Optional, если пользователя с таким email нет
+     */
+    public Optional<CurrentUser> get(String email) {
+        synchronized (entries) {
+            CurrentUser cached = entries.get(email);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        long generation = invalidations.get();
+        Optional<CurrentUser> loaded = userRepository.findByEmail(email)
+                .map(user -> CurrentUser.of(user, loads.incrementAndGet()));
+        loaded.ifPresent(snapshot -> {
+            synchronized (entries) {
+                if (invalidations.get() == generation) {
+                    entries.put(email, snapshot);
+                }
+            }
+        });
+        return loaded;
+    }
+
+    public void invalidate(Long userId) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.values().removeIf(snapshot -> snapshot.getId().equals(userId));
+        }
+    }
+
+    @TransactionalEventListener
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.userId());
+    }
+}
@@ -1,41 +1,318 @@
 package ru.fitness.backend.services;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.fitness.backend.dto.DashboardStatsDto;
+import ru.fitness.backend.dto.ScheduleView;
+import ru.fitness.backend.dto.WorkoutPopularityDto;
+import ru.fitness.backend.events.ScheduleChangedEvent;
+import ru.fitness.backend.events.SubscriptionChangedEvent;
+import ru.fitness.backend.events.SubscriptionsDeletedEvent;
+import ru.fitness.backend.events.UserChangedEvent;
+import ru.fitness.backend.events.WorkoutTypeChangedEvent;
+import ru.fitness.backend.models.User;
 import ru.fitness.backend.models.WorkoutType;
+import ru.fitness.backend.repositories.ScheduleRepository;
 import ru.fitness.backend.repositories.UserRepository;
 import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
 import ru.fitness.backend.repositories.WorkoutTypeRepository;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * Счётчики дашборда администратора в памяти: пользователи, регистрации за 7 дней, предстоящие тренировки
+ * (всего и по тренерам), записи по типам тренировок и средняя продолжительность. Счётчики обновляются
+ * событиями после фиксации транзакций, поэтому дашборд не выполняет ни одного запроса к базе.
+ * Полная сверка с базой выполняется при старте и по расписанию: новое состояние читается без блокировки
+ * и подменяет текущее целиком. Сверка исправляет расхождения, например от событий, пришедших во время
+ * предыдущей сверки. Слушатели событий читают базу (если нужно) до входа в монитор и под ним только
+ * применяют изменение.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class DashboardService {
 
+    private static final int NEW_USERS_DAYS = 7;
+
+    private record Upcoming(Long scheduleId, LocalDateTime startTime, Long trainerId, Long workoutTypeId) {
+    }
+
+    private static final Comparator<Upcoming> BY_START_TIME =
+            Comparator.comparing(Upcoming::startTime).thenComparing(Upcoming::scheduleId);
+
+    /**
+     * Все счётчики; экземпляр строится сверкой и затем меняется событиями под монитором сервиса.
+     */
+    private static final class State {
+        private long totalUsers;
+        // Пользователи с ID больше этого созданы после сверки; каждый из них учитывается один раз
+        private long reconciledMaxUserId;
+        private final Set<Long> registeredSinceReconcile = new HashSet<>();
+        private final Set<Long> deletedSinceReconcile = new HashSet<>();
+        // Время регистрации за последние 7 дней по ID пользователя, от старых к новым
+        private final Map<Long, LocalDateTime> recentRegistrations = new LinkedHashMap<>();
+        private final Map<Long, Upcoming> upcoming = new HashMap<>();
+        private final NavigableSet<Upcoming> upcomingByStart = new TreeSet<>(BY_START_TIME);
+        private final Map<Long, Long> upcomingByTrainer = new HashMap<>();
+        private final Map<Long, String> trainerNames = new HashMap<>();
+        private final Map<Long, WorkoutType> workoutTypes = new HashMap<>();
+        private final Map<Long, Long> subscriptionsByType = new HashMap<>();
+
+        private void putUpcoming(ScheduleView view) {
+            Upcoming entry = new Upcoming(view.getId(), view.getStartTime(), view.getTrainer().getId(),
+                    view.getWorkoutType().getId());
+            upcoming.put(entry.scheduleId(), entry);
+            upcomingByStart.add(entry);
+            upcomingByTrainer.merge(entry.trainerId(), 1L, Long::sum);
+            trainerNames.put(entry.trainerId(), view.getTrainer().getFullName());
+        }
+
+        private void removeUpcoming(Long scheduleId) {
+            Upcoming entry = upcoming.remove(scheduleId);
+            if (entry == null) {
+                return;
+            }
+            upcomingByStart.remove(entry);
+            Long left = upcomingByTrainer.merge(entry.trainerId(), -1L, Long::sum);
+            if (left != null && left <= 0) {
+                upcomingByTrainer.remove(entry.trainerId());
+                trainerNames.remove(entry.trainerId());
+            }
+        }
+
+        /**
+         * Убирает начавшиеся тренировки и регистрации старше 7 дней; каждая запись убирается один раз.
+         */
+        private void expire(LocalDateTime now) {
+            while (!upcomingByStart.isEmpty() && !upcomingByStart.first().startTime().isAfter(now)) {
+                removeUpcoming(upcomingByStart.first().scheduleId());
+            }
+            LocalDateTime since = now.minusDays(NEW_USERS_DAYS);
+            Iterator<LocalDateTime> registrations = recentRegistrations.values().iterator();
+            while (registrations.hasNext() && !registrations.next().isAfter(since)) {
+                registrations.remove();
+            }
+        }
+    }
+
     private final UserRepository userRepository;
+    private final ScheduleRepository scheduleRepository;
     private final WorkoutSubscriptionRepository workoutSubscriptionRepository;
     private final WorkoutTypeRepository workoutTypeRepository;
+    private final TransactionTemplate readTransaction;
+    // Защищено монитором this; сверка подменяет ссылку целиком
+    private State state = new State();
+
+    public DashboardService(UserRepository userRepository,
+                            ScheduleRepository scheduleRepository,
+                            WorkoutSubscriptionRepository workoutSubscriptionRepository,
+                            WorkoutTypeRepository workoutTypeRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.scheduleRepository = scheduleRepository;
+        this.workoutSubscriptionRepository = workoutSubscriptionRepository;
+        this.workoutTypeRepository = workoutTypeRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reconcile();
+    }
 
-    public DashboardStatsDto getDashboardStatistics() {
-        long totalUsers = userRepository.count();
-        long newUsers = userRepository.countByDateOfCreatedAfter(LocalDateTime.now().minusDays(7));
+    /**
+     * Пересчитывает все счётчики по базе. Запросы выполняются без блокировки, результат подменяет
+     * текущее состояние одной операцией.
+     */
+    @Scheduled(fixedDelayString = "${fitness.dashboard.reconcile-interval-ms:600000}",
+            initialDelayString = "${fitness.dashboard.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        State fresh = readTransaction.execute(status -> {
+            State loaded = new State();
+            loaded.totalUsers = userRepository.count();
+            loaded.reconciledMaxUserId = userRepository.findMaxId();
+            userRepository.findRegistrationsAfter(now.minusDays(NEW_USERS_DAYS))
+                    .forEach(row -> loaded.recentRegistrations.put((Long) row[0], (LocalDateTime) row[1]));
+            scheduleRepository.findTimetableViews(now).forEach(loaded::putUpcoming);
+            workoutTypeRepository.findAll().forEach(type -> loaded.workoutTypes.put(type.getId(), type));
+            workoutSubscriptionRepository.countByWorkoutTypes()
+                    .forEach(row -> loaded.subscriptionsByType.put((Long) row[0], (Long) row[1]));
+            return loaded;
+        });
+        synchronized (this) {
+            state = fresh;
+        }
+        log.info("Счётчики дашборда сверены: {} пользователей, {} предстоящих тренировок, {} типов",
+                fresh.totalUsers, fresh.upcoming.size(), fresh.workoutTypes.size());
+    }
 
-        var workoutPopularity = workoutSubscriptionRepository.findWorkoutPopularity();
+    public synchronized DashboardStatsDto getDashboardStatistics() {
+        LocalDateTime now = LocalDateTime.now();
+        state.expire(now);
 
-        List<WorkoutType> allTypes = workoutTypeRepository.findAll();
-        double avgDuration = allTypes.stream()
+        double avgDuration = state.workoutTypes.values().stream()
                 .mapToInt(WorkoutType::getDurationMinutes)
                 .average()
                 .orElse(0.0);
 
+        List<WorkoutPopularityDto> workoutPopularity = state.subscriptionsByType.entrySet().stream()
+                .filter(entry -> state.workoutTypes.containsKey(entry.getKey()) && entry.getValue() > 0)
+                .map(entry -> new WorkoutPopularityDto(state.workoutTypes.get(entry.getKey()), entry.getValue()))
+                .sorted(Comparator.comparingLong(WorkoutPopularityDto::getSubscriptionCount).reversed())
+                .toList();
+
+        // Тренеры с одинаковыми именами складываются в одну строку
+        Map<String, Long> trainerCounts = new HashMap<>();
+        state.upcomingByTrainer.forEach((trainerId, count) ->
+                trainerCounts.merge(state.trainerNames.getOrDefault(trainerId, "—"), count, Long::sum));
+        Map<String, Long> trainerWorkoutCounts = new LinkedHashMap<>();
+        trainerCounts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> trainerWorkoutCounts.put(entry.getKey(), entry.getValue()));
+
         return DashboardStatsDto.builder()
-                .totalUsers(totalUsers)
-                .newUsersLast7Days(newUsers)
+                .totalUsers(state.totalUsers)
+                .newUsersLast7Days(state.recentRegistrations.size())
+                .upcomingWorkouts(state.upcoming.size())
                 .averageWorkoutDuration(Math.round(avgDuration * 10.0) / 10.0) // Round to 1 decimal place
                 .workoutPopularity(workoutPopularity)
+                .trainerWorkoutCounts(trainerWorkoutCounts)
                 .build();
     }
+
+    @TransactionalEventListener
+    public void onUserChanged(UserChangedEvent event) {
+        Long userId = event.userId();
+        switch (event.kind()) {
+            case REGISTERED -> registered(userId);
+            case DELETED -> deleted(userId);
+            case UPDATED -> {
+                boolean trainer;
+                synchronized (this) {
+                    trainer = state.trainerNames.containsKey(userId);
+                }
+                if (trainer) {
+                    Optional<String> name = readTransaction.execute(status -> userRepository.findById(userId).map(User::getFullName));
+                    synchronized (this) {
+                        if (state.trainerNames.containsKey(userId)) {
+                            name.ifPresent(fullName -> state.trainerNames.put(userId, fullName));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        switch (event.kind()) {
+            case CREATED, UPDATED -> {
+                List<ScheduleView> views = readTransaction.execute(status ->
+                        scheduleRepository.findTimetableViewsByIds(List.of(event.scheduleId())));
+                LocalDateTime now = LocalDateTime.now();
+                synchronized (this) {
+                    state.removeUpcoming(event.scheduleId());
+                    views.stream()
+                            .filter(view -> view.getStartTime().isAfter(now))
+                            .forEach(state::putUpcoming);
+                }
+            }
+            case DELETED -> {
+                // Записи удалённой тренировки вычитаются по SubscriptionsDeletedEvent
+                synchronized (this) {
+                    state.removeUpcoming(event.scheduleId());
+                }
+            }
+            case SLOTS_CHANGED -> {
+                // Записи учитываются по SubscriptionChangedEvent
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        Long workoutTypeId = workoutTypeOf(event.scheduleId());
+        if (workoutTypeId != null) {
+            synchronized (this) {
+                state.subscriptionsByType.merge(workoutTypeId, event.booked() ? 1L : -1L, Long::sum);
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public synchronized void onSubscriptionsDeleted(SubscriptionsDeletedEvent event) {
+        state.subscriptionsByType.computeIfPresent(event.workoutTypeId(), (id, count) -> count - event.count());
+    }
+
+    @TransactionalEventListener
+    public void onWorkoutTypeChanged(WorkoutTypeChangedEvent event) {
+        if (event.deleted()) {
+            synchronized (this) {
+                state.workoutTypes.remove(event.workoutTypeId());
+                state.subscriptionsByType.remove(event.workoutTypeId());
+                // Мелкий каскад удаляет тренировки типа без отдельных событий
+                state.upcoming.values().stream()
+                        .filter(entry -> entry.workoutTypeId().equals(event.workoutTypeId()))
+                        .map(Upcoming::scheduleId)
+                        .toList()
+                        .forEach(state::removeUpcoming);
+            }
+            return;
+        }
+        Optional<WorkoutType> type = readTransaction.execute(status -> workoutTypeRepository.findById(event.workoutTypeId()));
+        synchronized (this) {
+            type.ifPresent(workoutType -> state.workoutTypes.put(workoutType.getId(), workoutType));
+        }
+    }
+
+    private synchronized void registered(Long userId) {
+        // Регистрация, уже учтённая сверкой, не считается повторно
+        if (userId > state.reconciledMaxUserId && state.registeredSinceReconcile.add(userId)) {
+            state.totalUsers++;
+            state.recentRegistrations.put(userId, LocalDateTime.now());
+        }
+    }
+
+    private synchronized void deleted(Long userId) {
+        boolean counted = userId <= state.reconciledMaxUserId || state.registeredSinceReconcile.contains(userId);
+        if (counted && state.deletedSinceReconcile.add(userId)) {
+            state.totalUsers--;
+            state.recentRegistrations.remove(userId);
+        }
+    }
+
+    /**
+     * Тип тренировки берётся из памяти для предстоящих тренировок и запросом по ключу для прошедших
+     * (администратор может отменить запись на прошедшую тренировку). Запрос выполняется вне монитора.
+     */
+    private Long workoutTypeOf(Long scheduleId) {
+        synchronized (this) {
+            Upcoming known = state.upcoming.get(scheduleId);
+            if (known != null) {
+                return known.workoutTypeId();
+            }
+        }
+        return readTransaction.execute(status -> scheduleRepository.findWorkoutTypeIdById(scheduleId)).orElse(null);
+    }
 }
@@ -0,0 +1,80 @@
+package ru.fitness.backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.fitness.backend.events.NewsChangedEvent;
+import ru.fitness.backend.events.WorkoutTypeChangedEvent;
+import ru.fitness.backend.models.News;
+import ru.fitness.backend.models.WorkoutType;
+import ru.fitness.backend.repositories.WorkoutTypeRepository;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общая для всех пользователей часть главной страницы (последние новости и избранные типы тренировок)
+ * с коротким временем жизни. Сбрасывается после фиксации изменений новостей и типов тренировок,
+ * поэтому TTL лишь страхует от изменений в обход сервисов.
+ */
+@Component
+public class HomeContentCache {
+
+    public record HomeContent(List<News> latestNews, List<WorkoutType> featuredWorkouts) {
+    }
+
+    private record Entry(HomeContent content, long expiresAt) {
+    }
+
+    private static final int LATEST_NEWS = 3;
+    private static final int FEATURED_WORKOUTS = 3;
+
+    private final NewsService newsService;
+    private final WorkoutTypeRepository workoutTypeRepository;
+    private final long ttlMillis;
+    // Счётчик сбросов: содержимое, прочитанное до сброса, не должно попасть в кэш после него
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile Entry entry;
+
+    public HomeContentCache(NewsService newsService,
+                            WorkoutTypeRepository workoutTypeRepository,
+                            @Value("${fitness.home-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.newsService = newsService;
+        this.workoutTypeRepository = workoutTypeRepository;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    public HomeContent get() {
+        Entry current = entry;
+        long now = System.currentTimeMillis();
+        if (current != null && current.expiresAt() > now) {
+            return current.content();
+        }
+        long generation = invalidations.get();
+        HomeContent loaded = new HomeContent(
+                newsService.getLatestNews(LATEST_NEWS),
+                workoutTypeRepository.findByOrderByIdAsc(Limit.of(FEATURED_WORKOUTS)));
+        synchronized (this) {
+            if (invalidations.get() == generation) {
+                entry = new Entry(loaded, now + ttlMillis);
+            }
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener
+    public void onNewsChanged(NewsChangedEvent event) {
+        invalidate();
+    }
+
+    @TransactionalEventListener
+    public void onWorkoutTypeChanged(WorkoutTypeChangedEvent event) {
+        invalidate();
+    }
+
+    private synchronized void invalidate() {
+        invalidations.incrementAndGet();
+        entry = null;
+    }
+}
@@ -0,0 +1,137 @@
+package ru.fitness.backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный по размеру и времени жизни кэш результатов недавних запросов с ключом идемпотентности.
+ * Повторный запрос с тем же ключом (двойное нажатие, повтор от прокси) получает исходный результат
+ * без обращения к базе. Если исходный запрос ещё выполняется, повтор дожидается его результата;
+ * если исходный запрос завершился ошибкой или временным отказом ({@link Outcome#retryLater}), повтор выполняется заново.
+ */
+@Component
+public class IdempotencyCache {
+
+    /**
+     * Результат операции, который показывается пользователю. Для заявки, поставленной в очередь допуска,
+     * вместо сообщения - ID билета, по которому пользователь следит за заявкой.
+     * Временный отказ ({@code retryable}) не запоминается: повтор с тем же ключом выполняет действие заново.
+     */
+    public record Outcome(boolean success, String message, String ticketId, boolean retryable) {
+        public static Outcome success(String message) {
+            return new Outcome(true, message, null, false);
+        }
+
+        public static Outcome failure(String message) {
+            return new Outcome(false, message, null, false);
+        }
+
+        /**
+         * Отказ из-за временной причины (сбой базы, перегрузка), после которой повтор может пройти.
+         */
+        public static Outcome retryLater(String message) {
+            return new Outcome(false, message, null, true);
+        }
+
+        public static Outcome queued(String ticketId) {
+            return new Outcome(true, null, ticketId, false);
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    // Порядок вставки совпадает с порядком истечения срока, поэтому просроченные записи всегда в начале
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyCache(@Value("${fitness.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${fitness.idempotency.ttl-seconds:600}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Выполняет действие один раз для данного ключа; повторные вызовы в пределах TTL возвращают сохранённый результат.
+     * Ключ привязан к отпечатку запроса (например, ID тренировки): тот же ключ с другим отпечатком отклоняется,
+     * а не получает чужой результат. Если ключ не передан, действие выполняется без дедупликации.
+     */
+    public Outcome execute(String key, Object fingerprint, Supplier<Outcome> action) {
+        if (key == null) {
+            return action.get();
+        }
+
+        while (true) {
+            long now = System.currentTimeMillis();
+            CompletableFuture<Outcome> own = new CompletableFuture<>();
+            Entry ownEntry = new Entry(own, fingerprint, now + ttlMillis);
+            Entry existing;
+
+            synchronized (entries) {
+                evictExpired(now);
+                existing = entries.get(key);
+                if (existing == null) {
+                    entries.put(key, ownEntry);
+                    if (entries.size() > maxEntries) {
+                        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                    }
+                }
+            }
+
+            if (existing == null) {
+                return run(key, ownEntry, action);
+            }
+            if (!Objects.equals(existing.fingerprint(), fingerprint)) {
+                return Outcome.failure("Ключ запроса уже использован для другого действия. Обновите страницу и повторите.");
+            }
+            try {
+                return existing.result().join();
+            } catch (CompletionException | CancellationException e) {
+                // Исходный запрос упал и уже убрал свою запись: повтор выполняет действие заново
+            }
+        }
+    }
+
+    private Outcome run(String key, Entry ownEntry, Supplier<Outcome> action) {
+        try {
+            Outcome outcome = action.get();
+            if (outcome.retryable()) {
+                // Одновременные повторы получают этот же отказ, последующие выполняют действие заново
+                synchronized (entries) {
+                    entries.remove(key, ownEntry);
+                }
+            }
+            ownEntry.result().complete(outcome);
+            return outcome;
+        } catch (RuntimeException e) {
+            // Неожиданную ошибку не запоминаем: повтор запроса должен выполниться заново
+            synchronized (entries) {
+                entries.remove(key, ownEntry);
+            }
+            ownEntry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt() > now) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    private record Entry(CompletableFuture<Outcome> result, Object fingerprint, long expiresAt) {
+    }
+}
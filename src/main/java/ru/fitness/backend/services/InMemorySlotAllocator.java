@@ -0,0 +1,397 @@
+package ru.fitness.backend.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.fitness.backend.events.ScheduleChangedEvent;
+import ru.fitness.backend.events.SubscriptionChangedEvent;
+import ru.fitness.backend.exceptions.AlreadySignedUpException;
+import ru.fitness.backend.exceptions.NoAvailableSlotsException;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Необязательный движок бронирования для "горячих" открытий записи.
+ * <p>
+ * Счётчики свободных мест хранятся в памяти (CAS по {@link AtomicInteger}, шардирование по ID тренировки),
+ * поэтому решение "записать / отказать" принимается без блокировки строки schedule в базе.
+ * Записи {@code WorkoutSubscription} и итоговое значение available_slots сохраняются пачками
+ * через очередь отложенной записи (write-behind) собственным потоком, не занимая общий планировщик.
+ * При старте счётчики восстанавливаются из базы.
+ * <p>
+ * Включается свойством {@code fitness.booking.in-memory.enabled=true}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "fitness.booking.in-memory.enabled", havingValue = "true")
+public class InMemorySlotAllocator {
+
+    private static final String INSERT_SUBSCRIPTION_SQL =
+            "INSERT INTO workout_subscription (user_id, schedule_id, subscription_date, schedule_start_time) " +
+            "SELECT ?, s.id, ?, s.start_time FROM schedule s WHERE s.id = ? AND EXISTS (SELECT 1 FROM users u WHERE u.id = ?) " +
+            "ON CONFLICT (user_id, schedule_id) DO NOTHING";
+
+    private static final String SUBSCRIPTION_EXISTS_SQL =
+            "SELECT EXISTS (SELECT 1 FROM workout_subscription WHERE user_id = ? AND schedule_id = ?)";
+
+    private static final String DECREMENT_SLOTS_SQL =
+            "UPDATE schedule SET available_slots = GREATEST(available_slots - ?, 0) WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookingWindowPolicy bookingWindowPolicy;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "booking-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Long, SlotCounter>[] shards;
+    private final ConcurrentLinkedQueue<PendingBooking> writeBehindQueue = new ConcurrentLinkedQueue<>();
+    // Количество принятых, но ещё не записанных в базу бронирований по каждой тренировке
+    private final Map<Long, AtomicInteger> unflushed = new ConcurrentHashMap<>();
+    // Те же бронирования по пользователям (ID пользователя -> ID тренировок) для кэшей "Вы записаны"
+    private final Map<Long, Set<Long>> unflushedByUser = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public InMemorySlotAllocator(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 BookingWindowPolicy bookingWindowPolicy,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${fitness.booking.in-memory.shards:16}") int shardCount,
+                                 @Value("${fitness.booking.in-memory.batch-size:500}") int batchSize,
+                                 @Value("${fitness.booking.in-memory.flush-interval-ms:200}") long flushIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookingWindowPolicy = bookingWindowPolicy;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.shards = new Map[Integer.highestOneBit(Math.max(1, shardCount))];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Восстанавливает счётчики всех предстоящих тренировок из базы.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        for (Map<Long, SlotCounter> shard : shards) {
+            shard.clear();
+        }
+
+        Map<Long, SlotCounter> loaded = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, available_slots, trainer_id, start_time FROM schedule WHERE start_time > ?",
+                rs -> {
+                    long id = rs.getLong("id");
+                    loaded.put(id, new SlotCounter(rs.getInt("available_slots") - unflushedCount(id),
+                            rs.getLong("trainer_id"), rs.getTimestamp("start_time").toLocalDateTime()));
+                },
+                Timestamp.valueOf(LocalDateTime.now()));
+
+        jdbcTemplate.query(
+                "SELECT ws.schedule_id, ws.user_id FROM workout_subscription ws " +
+                "JOIN schedule s ON s.id = ws.schedule_id WHERE s.start_time > ?",
+                rs -> {
+                    SlotCounter counter = loaded.get(rs.getLong("schedule_id"));
+                    if (counter != null) {
+                        counter.bookedUsers.add(rs.getLong("user_id"));
+                    }
+                },
+                Timestamp.valueOf(LocalDateTime.now()));
+
+        loaded.forEach((id, counter) -> shardFor(id).put(id, counter));
+        log.info("Счётчики мест восстановлены из базы: {} тренировок", loaded.size());
+    }
+
+    /**
+     * Принимает или отклоняет бронирование без обращения к базе (кроме первой загрузки счётчика).
+     * Сама запись попадает в очередь отложенной записи.
+     */
+    public void book(Long scheduleId, Long userId) throws NoAvailableSlotsException, AlreadySignedUpException {
+        SlotCounter counter = counterFor(scheduleId);
+
+        if (counter.trainerId == userId) {
+            throw new IllegalArgumentException("Вы не можете записаться на собственную тренировку.");
+        }
+        if (!counter.startTime.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Нельзя записаться на тренировку, которая уже прошла.");
+        }
+        if (!bookingWindowPolicy.isOpen(counter.startTime)) {
+            throw new IllegalArgumentException(bookingWindowPolicy.closedMessage(counter.startTime));
+        }
+        if (!counter.bookedUsers.add(userId)) {
+            throw new AlreadySignedUpException("Вы уже записаны на эту тренировку.");
+        }
+
+        // Учитываем бронирование до CAS, чтобы перечитанный из базы счётчик не выдал это место повторно
+        AtomicInteger pending = unflushed.computeIfAbsent(scheduleId, id -> new AtomicInteger());
+        pending.incrementAndGet();
+
+        int current;
+        do {
+            current = counter.available.get();
+            if (current <= 0) {
+                pending.decrementAndGet();
+                counter.bookedUsers.remove(userId);
+                throw new NoAvailableSlotsException("На эту тренировку нет свободных мест.");
+            }
+        } while (!counter.available.compareAndSet(current, current - 1));
+
+        unflushedByUser.compute(userId, (id, scheduleIds) -> {
+            Set<Long> ids = scheduleIds != null ? scheduleIds : ConcurrentHashMap.newKeySet();
+            ids.add(scheduleId);
+            return ids;
+        });
+        writeBehindQueue.add(new PendingBooking(scheduleId, userId, LocalDateTime.now()));
+    }
+
+    /**
+     * Возвращает место в пул после отмены записи. Вызывается после фиксации транзакции отмены.
+     */
+    public void releaseAfterCommit(Long scheduleId, Long userId) {
+        afterCommit(() -> {
+            SlotCounter counter = shardFor(scheduleId).get(scheduleId);
+            if (counter != null && counter.bookedUsers.remove(userId)) {
+                counter.available.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Передаёт место от отменившего запись пользователя ожидающему из листа ожидания.
+     * Количество свободных мест при этом не меняется.
+     */
+    public void transferAfterCommit(Long scheduleId, Long fromUserId, Long toUserId) {
+        afterCommit(() -> {
+            SlotCounter counter = shardFor(scheduleId).get(scheduleId);
+            if (counter != null) {
+                counter.bookedUsers.remove(fromUserId);
+                counter.bookedUsers.add(toUserId);
+            }
+        });
+    }
+
+    public int availableSlots(Long scheduleId) {
+        return counterFor(scheduleId).available.get();
+    }
+
+    /**
+     * Сбрасывает счётчик тренировки (изменение вместимости, удаление); при следующем обращении
+     * он будет перечитан из базы с учётом ещё не записанных бронирований.
+     */
+    public void evictAfterCommit(Long scheduleId) {
+        afterCommit(() -> shardFor(scheduleId).remove(scheduleId));
+    }
+
+    /**
+     * Записывает накопленные бронирования в базу одной транзакцией с пакетными INSERT и UPDATE.
+     * Вызывается потоком отложенной записи по расписанию и при остановке.
+     */
+    public synchronized void flush() {
+        List<PendingBooking> batch = new ArrayList<>(Math.min(batchSize, 64));
+        PendingBooking next;
+        while (batch.size() < batchSize && (next = writeBehindQueue.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать {} бронирований, повторим позже: {}", batch.size(), e.getMessage(), e);
+            writeBehindQueue.addAll(batch);
+            return;
+        }
+
+        for (PendingBooking booking : batch) {
+            AtomicInteger pending = unflushed.get(booking.scheduleId());
+            if (pending != null) {
+                pending.decrementAndGet();
+            }
+            forgetUnflushed(booking);
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        flusher.shutdown();
+        while (!writeBehindQueue.isEmpty()) {
+            int before = writeBehindQueue.size();
+            flush();
+            if (writeBehindQueue.size() >= before) {
+                log.error("Остановка с {} незаписанными бронированиями", writeBehindQueue.size());
+                return;
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Исключение отменило бы все следующие запуски потока записи
+            log.error("Ошибка отложенной записи бронирований", e);
+        }
+    }
+
+    private void writeBatch(List<PendingBooking> batch) {
+        int[][] inserted = jdbcTemplate.batchUpdate(INSERT_SUBSCRIPTION_SQL, batch, batch.size(), (ps, booking) -> {
+            ps.setLong(1, booking.userId());
+            ps.setTimestamp(2, Timestamp.valueOf(booking.bookedAt()));
+            ps.setLong(3, booking.scheduleId());
+            ps.setLong(4, booking.userId());
+        });
+
+        Map<Long, Integer> decrements = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingBooking booking = batch.get(i);
+            if (inserted[0][i] > 0) {
+                decrements.merge(booking.scheduleId(), 1, Integer::sum);
+            } else if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(SUBSCRIPTION_EXISTS_SQL, Boolean.class,
+                    booking.userId(), booking.scheduleId()))) {
+                // Запись уже есть (например, из листа ожидания) - её место уже списано в базе, лишнее возвращаем
+                afterCommit(() -> returnSlot(booking, false));
+            } else {
+                rejectLost(booking);
+            }
+        }
+
+        List<Object[]> updates = new ArrayList<>(decrements.size());
+        decrements.forEach((scheduleId, count) -> updates.add(new Object[]{count, scheduleId}));
+        jdbcTemplate.batchUpdate(DECREMENT_SLOTS_SQL, updates);
+    }
+
+    /**
+     * Бронирование, принятое в памяти, не удалось записать: тренировка или пользователь удалены.
+     * Место и пользователь возвращаются в счётчик, а события отмены после фиксации пакета
+     * убирают её из кэшей и счётчиков, которые уже учли её при приёме.
+     */
+    private void rejectLost(PendingBooking booking) {
+        log.warn("Бронирование пользователя {} на тренировку {} от {} не записано: тренировка или пользователь удалены",
+                booking.userId(), booking.scheduleId(), booking.bookedAt());
+        afterCommit(() -> returnSlot(booking, true));
+        eventPublisher.publishEvent(ScheduleChangedEvent.slotsChanged(booking.scheduleId()));
+        eventPublisher.publishEvent(SubscriptionChangedEvent.cancelled(booking.userId(), booking.scheduleId()));
+    }
+
+    private void returnSlot(PendingBooking booking, boolean removeUser) {
+        if (removeUser) {
+            // До событий отмены: кэш, перечитанный по ним, уже не должен увидеть это бронирование
+            forgetUnflushed(booking);
+        }
+        SlotCounter counter = shardFor(booking.scheduleId()).get(booking.scheduleId());
+        if (counter != null) {
+            if (removeUser) {
+                counter.bookedUsers.remove(booking.userId());
+            }
+            counter.available.incrementAndGet();
+        }
+    }
+
+    private void forgetUnflushed(PendingBooking booking) {
+        unflushedByUser.computeIfPresent(booking.userId(), (id, scheduleIds) -> {
+            scheduleIds.remove(booking.scheduleId());
+            return scheduleIds.isEmpty() ? null : scheduleIds;
+        });
+    }
+
+    private SlotCounter counterFor(Long scheduleId) {
+        return shardFor(scheduleId).computeIfAbsent(scheduleId, this::loadCounter);
+    }
+
+    private SlotCounter loadCounter(Long scheduleId) {
+        List<SlotCounter> rows = jdbcTemplate.query(
+                "SELECT available_slots, trainer_id, start_time FROM schedule WHERE id = ?",
+                (rs, rowNum) -> new SlotCounter(rs.getInt("available_slots") - unflushedCount(scheduleId),
+                        rs.getLong("trainer_id"), rs.getTimestamp("start_time").toLocalDateTime()),
+                scheduleId);
+        if (rows.isEmpty()) {
+            throw new NoSuchElementException("Тренировка с ID " + scheduleId + " не найдена");
+        }
+        SlotCounter counter = rows.get(0);
+        counter.bookedUsers.addAll(jdbcTemplate.queryForList(
+                "SELECT user_id FROM workout_subscription WHERE schedule_id = ?", Long.class, scheduleId));
+        return counter;
+    }
+
+    /**
+     * ID тренировок, бронирования пользователя на которые приняты, но ещё не записаны в базу.
+     * Бронирование остаётся здесь до фиксации пакета, поэтому чтение этого набора и затем базы его не теряет.
+     */
+    public Set<Long> unflushedScheduleIds(Long userId) {
+        Set<Long> scheduleIds = unflushedByUser.get(userId);
+        return scheduleIds == null ? Set.of() : Set.copyOf(scheduleIds);
+    }
+
+    /**
+     * Бронирования тренировки, принятые, но ещё не записанные в базу.
+     */
+    public int unflushedCount(Long scheduleId) {
+        AtomicInteger pending = unflushed.get(scheduleId);
+        return pending == null ? 0 : pending.get();
+    }
+
+    private Map<Long, SlotCounter> shardFor(Long scheduleId) {
+        return shards[Long.hashCode(scheduleId) & (shards.length - 1)];
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static final class SlotCounter {
+        private final AtomicInteger available;
+        private final long trainerId;
+        private final LocalDateTime startTime;
+        private final Set<Long> bookedUsers = ConcurrentHashMap.newKeySet();
+
+        private SlotCounter(int available, long trainerId, LocalDateTime startTime) {
+            this.available = new AtomicInteger(Math.max(available, 0));
+            this.trainerId = trainerId;
+            this.startTime = startTime;
+        }
+    }
+
+    private record PendingBooking(Long scheduleId, Long userId, LocalDateTime bookedAt) {
+    }
+}
@@ -0,0 +1,111 @@
+package ru.fitness.backend.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограничение неудачных попыток входа по IP-адресу и по учётной записи в окне заданной длины (отсчёт от первой неудачи).
+ * Заблокированная попытка отклоняется до проверки пароля, поэтому перебор паролей не тратит CPU на BCrypt.
+ * Успешный вход сбрасывает счётчик учётной записи.
+ */
+@Slf4j
+@Component
+public class LoginThrottle {
+
+    private static final class Window {
+        private long startedAt;
+        private int failures;
+    }
+
+    private final Map<String, Window> accounts = new ConcurrentHashMap<>();
+    private final Map<String, Window> addresses = new ConcurrentHashMap<>();
+    private final int maxAccountFailures;
+    private final int maxAddressFailures;
+    private final long windowMillis;
+
+    public LoginThrottle(@Value("${fitness.login-throttle.max-account-failures:5}") int maxAccountFailures,
+                         @Value("${fitness.login-throttle.max-ip-failures:30}") int maxAddressFailures,
+                         @Value("${fitness.login-throttle.window-seconds:900}") long windowSeconds) {
+        this.maxAccountFailures = maxAccountFailures;
+        this.maxAddressFailures = maxAddressFailures;
+        this.windowMillis = windowSeconds * 1000;
+    }
+
+    /**
+     * @return true, если с этого адреса или для этой учётной записи попыток в текущем окне уже слишком много
+     */
+    public boolean isBlocked(String address, String username) {
+        long now = System.currentTimeMillis();
+        return exceeded(addresses, address, maxAddressFailures, now)
+                || exceeded(accounts, normalize(username), maxAccountFailures, now);
+    }
+
+    public void recordFailure(String address, String username) {
+        long now = System.currentTimeMillis();
+        increment(addresses, address, now);
+        if (username != null && !username.isBlank()) {
+            int failures = increment(accounts, normalize(username), now);
+            if (failures == maxAccountFailures) {
+                log.warn("Вход для {} временно заблокирован после {} неудачных попыток", normalize(username), failures);
+            }
+        }
+    }
+
+    @EventListener
+    public void onAuthenticationSuccess(AuthenticationSuccessEvent event) {
+        accounts.remove(normalize(event.getAuthentication().getName()));
+    }
+
+    /**
+     * Удаляет истёкшие окна, чтобы перебор несуществующих учётных записей не накапливал счётчики.
+     */
+    @Scheduled(fixedDelayString = "${fitness.login-throttle.purge-interval-ms:60000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        accounts.values().removeIf(window -> expired(window, now));
+        addresses.values().removeIf(window -> expired(window, now));
+    }
+
+    private boolean exceeded(Map<String, Window> windows, String key, int limit, long now) {
+        if (key == null) {
+            return false;
+        }
+        Window window = windows.get(key);
+        if (window == null) {
+            return false;
+        }
+        synchronized (window) {
+            return !expired(window, now) && window.failures >= limit;
+        }
+    }
+
+    private int increment(Map<String, Window> windows, String key, long now) {
+        if (key == null) {
+            return 0;
+        }
+        Window window = windows.computeIfAbsent(key, k -> new Window());
+        synchronized (window) {
+            if (window.failures == 0 || expired(window, now)) {
+                window.startedAt = now;
+                window.failures = 0;
+            }
+            return ++window.failures;
+        }
+    }
+
+    private boolean expired(Window window, long now) {
+        return now - window.startedAt >= windowMillis;
+    }
+
+    private static String normalize(String username) {
+        return username == null ? null : username.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,114 @@
+package ru.fitness.backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.fitness.backend.dto.NewsFeedEntry;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Лента новостей в формате Atom. Записи пишутся в ответ по мере чтения из курсора базы,
+ * поэтому ни список новостей, ни весь документ целиком в памяти не собираются.
+ * Дата обновления ленты - дата первой (самой новой) записи, поэтому заголовок ленты пишется вместе с ней.
+ */
+@Component
+public class NewsFeedWriter {
+
+    private static final String ATOM_NAMESPACE = "http://www.w3.org/2005/Atom";
+
+    private final NewsService newsService;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+    private final int maxEntries;
+
+    public NewsFeedWriter(NewsService newsService,
+                          @Value("${fitness.news-feed.max-entries:50}") int maxEntries) {
+        this.newsService = newsService;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param baseUrl адрес приложения без завершающего слэша, из него строятся ссылки ленты
+     */
+    public void write(OutputStream out, String baseUrl) throws IOException {
+        try {
+            XMLStreamWriter xml = outputFactory.createXMLStreamWriter(out, "UTF-8");
+            boolean[] started = {false};
+            newsService.forEachFeedEntry(maxEntries, entry -> {
+                try {
+                    if (!started[0]) {
+                        startFeed(xml, baseUrl, entry.publishDate());
+                        started[0] = true;
+                    }
+                    writeEntry(xml, baseUrl, entry);
+                    // Запись уходит клиенту, не дожидаясь конца ленты
+                    xml.flush();
+                } catch (XMLStreamException e) {
+                    throw new UncheckedIOException(new IOException(e));
+                }
+            });
+            if (!started[0]) {
+                startFeed(xml, baseUrl, LocalDateTime.now());
+            }
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void startFeed(XMLStreamWriter xml, String baseUrl, LocalDateTime updated) throws XMLStreamException {
+        xml.writeStartDocument("UTF-8", "1.0");
+        xml.writeStartElement("feed");
+        xml.writeDefaultNamespace(ATOM_NAMESPACE);
+        element(xml, "id", baseUrl + "/news/feed.atom");
+        element(xml, "title", "Новости фитнес-клуба");
+        element(xml, "updated", format(updated));
+        link(xml, "self", baseUrl + "/news/feed.atom");
+        link(xml, "alternate", baseUrl + "/home");
+    }
+
+    private static void writeEntry(XMLStreamWriter xml, String baseUrl, NewsFeedEntry entry) throws XMLStreamException {
+        xml.writeStartElement("entry");
+        element(xml, "id", baseUrl + "/news/" + entry.id());
+        element(xml, "title", entry.title());
+        element(xml, "updated", format(entry.publishDate()));
+        element(xml, "published", format(entry.publishDate()));
+        xml.writeStartElement("author");
+        element(xml, "name", "Фитнес-клуб");
+        xml.writeEndElement();
+        link(xml, "alternate", baseUrl + "/home");
+        xml.writeStartElement("content");
+        xml.writeAttribute("type", "text");
+        xml.writeCharacters(entry.content());
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private static void element(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeCharacters(text);
+        xml.writeEndElement();
+    }
+
+    private static void link(XMLStreamWriter xml, String rel, String href) throws XMLStreamException {
+        xml.writeEmptyElement("link");
+        xml.writeAttribute("rel", rel);
+        xml.writeAttribute("href", href);
+    }
+
+    private static String format(LocalDateTime dateTime) {
+        LocalDateTime value = dateTime != null ? dateTime : LocalDateTime.now();
+        return value.atZone(ZoneId.systemDefault()).toOffsetDateTime().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+}
@@ -1,26 +1,60 @@
 package ru.fitness.backend.services;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.fitness.backend.dto.CursorPageDto;
+import ru.fitness.backend.dto.NewsCursor;
+import ru.fitness.backend.dto.NewsFeedEntry;
+import ru.fitness.backend.dto.NewsSummaryView;
+import ru.fitness.backend.events.NewsChangedEvent;
 import ru.fitness.backend.models.News;
 import ru.fitness.backend.repositories.NewsRepository;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class NewsService {
 
     private final NewsRepository newsRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public List<News> getAllNews() {
-        return newsRepository.findAllByOrderByPublishDateDesc();
+    /**
+     * Страница архива новостей от новых к старым: заголовок и начало текста без полного содержимого.
+     * @param after курсор из предыдущей страницы или null для первой страницы
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<NewsSummaryView> findArchivePage(String after, int size) {
+        NewsCursor cursor = NewsCursor.decode(after);
+        List<NewsSummaryView> rows = cursor == null
+                ? newsRepository.findSummaries(Limit.of(size + 1))
+                : newsRepository.findSummariesAfter(cursor.getPublishDate(), cursor.getId(), Limit.of(size + 1));
+        if (rows.size() <= size) {
+            return new CursorPageDto<>(rows, null);
+        }
+        List<NewsSummaryView> items = rows.subList(0, size);
+        NewsSummaryView last = items.get(size - 1);
+        return new CursorPageDto<>(items, new NewsCursor(last.getPublishDate(), last.getId()).encode());
+    }
+
+    /**
+     * Передаёт последние новости по одной прямо из курсора базы: в памяти одновременно находится
+     * только порция строк, а не вся лента. Ограничение передаётся в SQL, база не выбирает лишние строки.
+     */
+    @Transactional(readOnly = true)
+    public void forEachFeedEntry(int limit, Consumer<NewsFeedEntry> consumer) {
+        try (Stream<NewsFeedEntry> entries = newsRepository.streamFeed(Limit.of(limit))) {
+            entries.forEach(consumer);
+        }
     }
 
     public List<News> getLatestNews(int limit) {
-        List<News> allNews = getAllNews();
-        return allNews.stream().limit(limit).toList();
+        return newsRepository.findByOrderByPublishDateDescIdDesc(Limit.of(limit));
     }
 
     @Transactional
@@ -29,6 +63,7 @@ public class NewsService {
         news.setTitle(title);
         news.setContent(content);
         newsRepository.save(news);
+        eventPublisher.publishEvent(new NewsChangedEvent(news.getId()));
     }
 
     public News findById(Long id) {
@@ -42,10 +77,12 @@ public class NewsService {
         news.setTitle(title);
         news.setContent(content);
         newsRepository.save(news);
+        eventPublisher.publishEvent(new NewsChangedEvent(news.getId()));
     }
 
     @Transactional
     public void deleteNews(Long id) {
         newsRepository.deleteById(id);
+        eventPublisher.publishEvent(new NewsChangedEvent(id));
     }
 }
@@ -0,0 +1,139 @@
+package ru.fitness.backend.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.fitness.backend.exceptions.PasswordHashingBusyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Отдельный ограниченный пул для хеширования и проверки паролей (BCrypt).
+ * Число потоков равно числу процессоров: больше одновременных хешей ядра всё равно не посчитают,
+ * а наплыв входов не занимает CPU, нужный остальным страницам. Очередь ограничена: при её переполнении
+ * или слишком долгом ожидании запрос отклоняется сразу с {@link PasswordHashingBusyException}.
+ */
+@Slf4j
+@Component
+public class PasswordHashingPool {
+
+    private static final long RETRY_PAUSE_MILLIS = 20;
+
+    private final ThreadPoolExecutor executor;
+    private final long waitMillis;
+
+    public PasswordHashingPool(@Value("${fitness.password-hashing.threads:0}") int threads,
+                               @Value("${fitness.password-hashing.queue-capacity:64}") int queueCapacity,
+                               @Value("${fitness.password-hashing.wait-ms:3000}") long waitMillis) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hash-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.waitMillis = waitMillis;
+        log.info("Пул хеширования паролей: {} потоков, очередь {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Выполняет хеширование в пуле и ждёт результата.
+     * @throws PasswordHashingBusyException если очередь заполнена или результат не получен за отведённое время
+     */
+    public <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Очередь хеширования паролей заполнена ({}), запрос отклонён", executor.getQueue().size());
+            throw new PasswordHashingBusyException("Сервер перегружен, попробуйте войти через несколько секунд.");
+        }
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new PasswordHashingBusyException("Сервер перегружен, попробуйте войти через несколько секунд.");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Проверка пароля прервана.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Хеширует пачку для фоновых задач (импорт пользователей). В пуле одновременно не больше
+     * {@code parallelism} задач пачки (0 - половина потоков пула), остальные потоки и очередь остаются входу
+     * пользователей. Переполненная очередь не отклоняет пачку, а только задерживает её.
+     * @return результаты в порядке задач
+     */
+    public <T> List<T> executeAll(List<Callable<T>> tasks, int parallelism) throws InterruptedException {
+        int limit = parallelism > 0 ? parallelism : Math.max(1, executor.getMaximumPoolSize() / 2);
+        Semaphore permits = new Semaphore(limit);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        boolean completed = false;
+        try {
+            for (Callable<T> task : tasks) {
+                permits.acquire();
+                futures.add(submitWhenAccepted(() -> {
+                    try {
+                        return task.call();
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            completed = true;
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (!completed) {
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+    }
+
+    private <T> Future<T> submitWhenAccepted(Callable<T> task) throws InterruptedException {
+        while (true) {
+            try {
+                return executor.submit(task);
+            } catch (RejectedExecutionException e) {
+                if (executor.isShutdown()) {
+                    throw e;
+                }
+                // Очередь занята входами пользователей: фоновая пачка подождёт
+                TimeUnit.MILLISECONDS.sleep(RETRY_PAUSE_MILLIS);
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.fitness.backend.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.fitness.backend.dto.RosterEntryView;
+import ru.fitness.backend.dto.CursorPageDto;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.repositories.ScheduleRepository;
+import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Списки записавшихся и число записей на тренировку.
+ * Число записей считается агрегатным запросом, список участников выбирается проекцией с соединением
+ * пользователей и выдаётся постранично, поэтому число запросов не зависит от размера группы.
+ * В списке занятий тренера число записей отдельным сгруппированным запросом не считается: его заменяет
+ * коррелированный подзапрос COUNT для каждой строки страницы в {@code ScheduleRepositoryCustomImpl#findTrainerPage}.
+ */
+@Service
+@RequiredArgsConstructor
+public class RosterService {
+
+    private final ScheduleRepository scheduleRepository;
+    private final WorkoutSubscriptionRepository workoutSubscriptionRepository;
+
+    /**
+     * Тренировка вместе с типом для заголовка страницы списка записавшихся.
+     */
+    @Transactional(readOnly = true)
+    public Schedule findSchedule(Long scheduleId) {
+        return scheduleRepository.findWithWorkoutTypeById(scheduleId)
+                .orElseThrow(() -> new NoSuchElementException("Тренировка с ID " + scheduleId + " не найдена"));
+    }
+
+    /**
+     * Тренировка тренера для страницы списка записавшихся.
+     * @throws IllegalArgumentException если тренировку ведёт другой тренер
+     */
+    @Transactional(readOnly = true)
+    public Schedule findScheduleOfTrainer(Long scheduleId, Long trainerId) {
+        Schedule schedule = findSchedule(scheduleId);
+        // ID тренера берётся из внешнего ключа, прокси не инициализируется
+        if (schedule.getTrainer() == null || !schedule.getTrainer().getId().equals(trainerId)) {
+            throw new IllegalArgumentException("Тренировка с ID " + scheduleId + " не принадлежит текущему тренеру.");
+        }
+        return schedule;
+    }
+
+    /**
+     * Страница записавшихся в порядке записи.
+     * @param after курсор из предыдущей страницы или null для первой страницы
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<RosterEntryView> findRoster(Long scheduleId, String after, int size) {
+        List<RosterEntryView> rows = workoutSubscriptionRepository.findRosterPage(scheduleId, decode(after), Limit.of(size + 1));
+        if (rows.size() <= size) {
+            return new CursorPageDto<>(rows, null);
+        }
+        List<RosterEntryView> items = rows.subList(0, size);
+        return new CursorPageDto<>(items, String.valueOf(items.get(size - 1).getSubscriptionId()));
+    }
+
+    @Transactional(readOnly = true)
+    public long countBooked(Long scheduleId) {
+        return workoutSubscriptionRepository.countByScheduleId(scheduleId);
+    }
+
+    private static long decode(String after) {
+        if (after == null || after.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(after);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
@@ -2,36 +2,72 @@ package ru.fitness.backend.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Sort;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.fitness.backend.dto.ScheduleCursor;
 import ru.fitness.backend.dto.ScheduleDto;
+import ru.fitness.backend.dto.SchedulePageDto;
+import ru.fitness.backend.dto.ScheduleView;
+import ru.fitness.backend.dto.SeriesBookingResultDto;
+import ru.fitness.backend.dto.TrainerScheduleView;
+import ru.fitness.backend.events.ScheduleChangedEvent;
+import ru.fitness.backend.events.SubscriptionChangedEvent;
+import ru.fitness.backend.events.SubscriptionsDeletedEvent;
 import ru.fitness.backend.exceptions.AlreadySignedUpException;
 import ru.fitness.backend.exceptions.NoAvailableSlotsException;
+import ru.fitness.backend.exceptions.WorkoutSubscriptionException;
 import ru.fitness.backend.models.*;
+import ru.fitness.backend.repositories.BookingJdbcRepository;
 import ru.fitness.backend.repositories.ScheduleRepository;
+import ru.fitness.backend.repositories.SubscriptionCancellationRepository;
 import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.repositories.WaitlistEntryRepository;
 import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
 import ru.fitness.backend.repositories.WorkoutTypeRepository;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ScheduleService {
 
+    private static final Set<String> PAGE_SORT_FIELDS =
+            Set.of("startTime", "availableSlots", "workoutType.title", "workoutType.durationMinutes");
+
     private final ScheduleRepository scheduleRepository;
     private final WorkoutSubscriptionRepository workoutSubscriptionRepository;
     private final UserService userService;
     private final UserRepository userRepository;
     private final WorkoutTypeRepository workoutTypeRepository;
+    private final WaitlistService waitlistService;
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final SubscriptionCancellationRepository subscriptionCancellationRepository;
+    private final BookingJdbcRepository bookingJdbcRepository;
+    private final BookingWindowPolicy bookingWindowPolicy;
+    private final ObjectProvider<InMemorySlotAllocator> slotAllocator;
+    private final TimetableSnapshot timetableSnapshot;
+    private final SearchIndex searchIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public void createSchedule(ScheduleDto scheduleDto) {
@@ -53,24 +89,78 @@ public class ScheduleService {
         schedule.setTotalSlots(scheduleDto.getAvailableSlots()); // Set initial capacity
 
         scheduleRepository.save(schedule);
+        eventPublisher.publishEvent(ScheduleChangedEvent.created(schedule.getId()));
     }
     
     public List<Schedule> findAllSchedules() {
         return scheduleRepository.findAllWithDetails();
     }
 
-    public List<Schedule> findSchedules(String keyword, LocalDate date, Long workoutTypeId, String sortField, String sortDir) {
-        Sort sort = Sort.by(sortField != null && !sortField.isEmpty() ? sortField : "startTime");
-        if (sortDir != null && sortDir.equals("desc")) {
-            sort = sort.descending();
-        } else {
-            sort = sort.ascending();
+    /**
+     * Страница предстоящих тренировок (keyset-пагинация). При сортировке по времени сначала идут
+     * тренировки со свободными местами. Страница строится по снимку расписания в памяти;
+     * пока снимок не готов (холодный старт), порядок и отсечение по курсору выполняются в базе.
+     * @param after курсор из предыдущей страницы или null для первой страницы
+     */
+    public SchedulePageDto<ScheduleView> findUpcomingPage(String keyword, LocalDate date, Long workoutTypeId,
+                                                          String sortField, String sortDir, String after, int size) {
+        String field = PAGE_SORT_FIELDS.contains(sortField) ? sortField : "startTime";
+        // Для сортировки по времени основной ключ - наличие мест, и тренировки с местами идут первыми
+        boolean descending = "startTime".equals(field) || "desc".equals(sortDir);
+        ScheduleCursor cursor = validCursor(ScheduleCursor.decode(after), field);
+        Optional<SearchIndex.KeywordMatch> match = searchIndex.match(keyword);
+
+        List<ScheduleView> rows = timetableSnapshot.isReady() && match.isPresent()
+                ? timetableSnapshot.findUpcoming(match.get(), date, workoutTypeId, field, descending, cursor, size + 1)
+                : scheduleRepository.findUpcomingPage(filterSpec(keyword, match, date, workoutTypeId),
+                        field, descending, cursor, LocalDateTime.now(), size + 1).stream().map(ScheduleView::from).toList();
+        return toPage(rows, size, view -> String.valueOf(view.sortKey(field)), ScheduleView::getStartTime, ScheduleView::getId);
+    }
+
+    /**
+     * Страница прошедших тренировок, самые свежие сверху.
+     * @param after курсор из предыдущей страницы или null для первой страницы
+     */
+    public SchedulePageDto<Schedule> findPastPage(String keyword, LocalDate date, Long workoutTypeId, String after, int size) {
+        List<Schedule> rows = scheduleRepository.findPastPage(filterSpec(keyword, searchIndex.match(keyword), date, workoutTypeId),
+                ScheduleCursor.decode(after), LocalDateTime.now(), size + 1);
+        return toPage(rows, size, schedule -> "", Schedule::getStartTime, Schedule::getId);
+    }
+
+    private static <T> SchedulePageDto<T> toPage(List<T> rows, int size, Function<T, String> sortValue,
+                                                 Function<T, LocalDateTime> startTime, Function<T, Long> id) {
+        if (rows.size() <= size) {
+            return new SchedulePageDto<>(rows, null);
         }
+        List<T> items = rows.subList(0, size);
+        T last = items.get(size - 1);
+        return new SchedulePageDto<>(items, new ScheduleCursor(sortValue.apply(last), startTime.apply(last), id.apply(last)).encode());
+    }
 
-        Specification<Schedule> spec = (root, query, criteriaBuilder) -> {
+    /**
+     * Курсор от другой сортировки (пользователь сменил сортировку) не разбирается - такая страница начинается с начала.
+     */
+    private static ScheduleCursor validCursor(ScheduleCursor cursor, String sortField) {
+        return cursor != null && cursor.sortKey(sortField) != null ? cursor : null;
+    }
+
+    /**
+     * Ключевое слово разрешается поисковым индексом в ID типов тренировок и тренеров и фильтрует по внешним ключам;
+     * поиск LIKE по соединению таблиц остаётся только на время, пока индекс не построен.
+     */
+    private static Specification<Schedule> filterSpec(String keyword, Optional<SearchIndex.KeywordMatch> match,
+                                                      LocalDate date, Long workoutTypeId) {
+        return (root, query, criteriaBuilder) -> {
             Predicate predicate = criteriaBuilder.conjunction();
 
-            if (keyword != null && !keyword.trim().isEmpty()) {
+            if (match.isPresent()) {
+                if (!match.get().isAny()) {
+                    predicate = criteriaBuilder.and(predicate, criteriaBuilder.or(
+                            in(criteriaBuilder, root.get("workoutType").get("id"), match.get().workoutTypeIds()),
+                            in(criteriaBuilder, root.get("trainer").get("id"), match.get().trainerIds())
+                    ));
+                }
+            } else if (keyword != null && !keyword.trim().isEmpty()) {
                 String likeKeyword = "%" + keyword.trim().toLowerCase() + "%";
                 predicate = criteriaBuilder.and(predicate, criteriaBuilder.or(
                         criteriaBuilder.like(criteriaBuilder.lower(root.join("workoutType").get("title")), likeKeyword),
@@ -90,66 +180,36 @@ public class ScheduleService {
 
             return predicate;
         };
-
-        return scheduleRepository.findAll(spec, sort);
     }
 
-    public List<Schedule> findSchedulesByTrainer(User trainer) {
-        return scheduleRepository.findByTrainer(trainer);
+    private static Predicate in(CriteriaBuilder criteriaBuilder, Path<Long> path, Set<Long> ids) {
+        return ids.isEmpty() ? criteriaBuilder.disjunction() : path.in(ids);
     }
-    
+
     /**
-     * Находит расписания тренера с фильтрацией по дате и типу тренировки
+     * Страница занятий тренера с фильтрацией по дате и типу тренировки и числом записавшихся.
+     * Предстоящие занятия идут по возрастанию времени, история - по убыванию.
+     * @param after курсор из предыдущей страницы или null для первой страницы
      */
-    public List<Schedule> findSchedulesByTrainer(User trainer, LocalDate date, Long workoutTypeId) {
-        List<Schedule> allSchedules = scheduleRepository.findByTrainer(trainer);
-        
-        return allSchedules.stream()
-                .filter(schedule -> {
-                    if (date != null) {
-                        LocalDate scheduleDate = schedule.getStartTime().toLocalDate();
-                        if (!scheduleDate.equals(date)) {
-                            return false;
-                        }
-                    }
-                    if (workoutTypeId != null) {
-                        if (!schedule.getWorkoutType().getId().equals(workoutTypeId)) {
-                            return false;
-                        }
-                    }
-                    return true;
-                })
-                .sorted((a, b) -> b.getStartTime().compareTo(a.getStartTime())) // По убыванию времени
-                .toList();
+    public SchedulePageDto<TrainerScheduleView> findTrainerSchedulePage(Long trainerId, LocalDate date, Long workoutTypeId,
+                                                                        boolean upcoming, String after, int size) {
+        List<TrainerScheduleView> rows = scheduleRepository.findTrainerPage(trainerId, date, workoutTypeId, upcoming,
+                ScheduleCursor.decode(after), LocalDateTime.now(), size + 1);
+        return toPage(rows, size, view -> "", TrainerScheduleView::getStartTime, TrainerScheduleView::getId);
     }
 
-    public List<User> findSubscribersForSchedule(Long scheduleId, User trainer) {
-        Schedule schedule = findById(scheduleId);
-        if (!schedule.getTrainer().equals(trainer)) {
-            throw new IllegalArgumentException("Тренировка с ID " + scheduleId + " не принадлежит текущему тренеру.");
-        }
-        return workoutSubscriptionRepository.findAllBySchedule(schedule).stream()
-                .map(WorkoutSubscription::getUser)
-                .collect(java.util.stream.Collectors.toList());
+    public Schedule findById(Long id) {
+        return scheduleRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Тренировка с ID " + id + " не найдена"));
     }
 
-    public List<User> findSubscribersForScheduleAdmin(Long scheduleId) {
-        Schedule schedule = findById(scheduleId);
-        return workoutSubscriptionRepository.findAllBySchedule(schedule).stream()
-                .map(WorkoutSubscription::getUser)
-                .collect(java.util.stream.Collectors.toList());
-    }
-    
     /**
-     * Получает количество записанных участников на тренировку
+     * Время начала тренировки. Предстоящие тренировки берутся из снимка расписания без обращения к базе,
+     * остальные (прошедшие, ещё не попавшие в снимок) - одним запросом.
      */
-    public int getSubscribersCount(Long scheduleId) {
-        Schedule schedule = findById(scheduleId);
-        return workoutSubscriptionRepository.findAllBySchedule(schedule).size();
-    }
-
-    public Schedule findById(Long id) {
-        return scheduleRepository.findById(id)
+    public LocalDateTime findStartTime(Long id) {
+        return timetableSnapshot.find(id).map(ScheduleView::getStartTime)
+                .or(() -> scheduleRepository.findStartTimeById(id))
                 .orElseThrow(() -> new NoSuchElementException("Тренировка с ID " + id + " не найдена"));
     }
     
@@ -163,54 +223,53 @@ public class ScheduleService {
         return schedule;
     }
 
-    @Transactional
+    @Transactional(rollbackFor = WorkoutSubscriptionException.class)
     public void signUpForWorkout(Long scheduleId) throws NoAvailableSlotsException, AlreadySignedUpException {
+        Long currentUserId = userService.getCurrentUserId()
+                .orElseThrow(() -> new NoSuchElementException("Не удалось определить текущего пользователя."));
+        signUpForWorkout(scheduleId, currentUserId);
+    }
+
+    /**
+     * Записывает пользователя на тренировку за две инструкции: условный UPDATE резервирует место
+     * (available_slots > 0 проверяется самой базой), затем INSERT ... ON CONFLICT DO NOTHING создаёт запись.
+     * Успех или отказ определяется по количеству изменённых строк; причина отказа выясняется
+     * дополнительным чтением только на неуспешном пути.
+     */
+    @Transactional(rollbackFor = WorkoutSubscriptionException.class)
+    public void signUpForWorkout(Long scheduleId, Long userId) throws NoAvailableSlotsException, AlreadySignedUpException {
         try {
-            User currentUser = userService.getCurrentUser()
-                    .orElseThrow(() -> new NoSuchElementException("Не удалось определить текущего пользователя."));
-            
-            log.debug("Попытка записи пользователя {} на тренировку {}", currentUser.getId(), scheduleId);
-            
-            Schedule schedule = findByIdWithTrainer(scheduleId);
-            
-            // Проверяем по ID, чтобы избежать проблем с lazy loading и сравнением объектов
-            if (schedule.getTrainer() != null && schedule.getTrainer().getId() != null) {
-                if (schedule.getTrainer().getId().equals(currentUser.getId())) {
-                    log.warn("Попытка тренера {} записаться на свою тренировку {}", currentUser.getId(), scheduleId);
-                    throw new IllegalArgumentException("Вы не можете записаться на собственную тренировку.");
-                }
+            log.debug("Попытка записи пользователя {} на тренировку {}", userId, scheduleId);
+
+            InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+            if (allocator != null) {
+                // Место выдаётся счётчиком в памяти, запись в базу произойдёт пакетом позже
+                allocator.book(scheduleId, userId);
+                eventPublisher.publishEvent(ScheduleChangedEvent.slotsChanged(scheduleId));
+                eventPublisher.publishEvent(SubscriptionChangedEvent.booked(userId, scheduleId));
+                log.info("Пользователь {} записан на тренировку {} (in-memory)", userId, scheduleId);
+                return;
             }
 
-            // Проверяем, не прошла ли уже тренировка
             LocalDateTime now = LocalDateTime.now();
-            if (schedule.getStartTime().isBefore(now)) {
-                log.warn("Попытка записи на прошедшую тренировку {} (время начала: {})", scheduleId, schedule.getStartTime());
-                throw new IllegalArgumentException("Нельзя записаться на тренировку, которая уже прошла.");
+            if (scheduleRepository.reserveSlot(scheduleId, userId, now, bookingWindowPolicy.bookableBefore(now)) == 0) {
+                rejectReservation(scheduleId, userId, now);
             }
 
-            // Проверяем, не записан ли уже пользователь
-            if (isUserSubscribed(currentUser, schedule)) {
-                log.warn("Пользователь {} уже записан на тренировку {}", currentUser.getId(), scheduleId);
+            if (workoutSubscriptionRepository.insertIfAbsent(userId, scheduleId, now) == 0) {
+                // Место уже списано в этой транзакции - откатываем его вместе с исключением
+                log.warn("Пользователь {} уже записан на тренировку {}", userId, scheduleId);
                 throw new AlreadySignedUpException("Вы уже записаны на эту тренировку.");
             }
 
-            if (schedule.getAvailableSlots() <= 0) {
-                log.warn("Нет свободных мест на тренировку {}", scheduleId);
-                throw new NoAvailableSlotsException("На эту тренировку нет свободных мест.");
-            }
-
-            // Обновляем количество мест (используем нативный запрос, чтобы избежать валидации @Future при обновлении)
-            scheduleRepository.decrementAvailableSlots(scheduleId);
-
-            WorkoutSubscription subscription = new WorkoutSubscription(currentUser, schedule);
-            workoutSubscriptionRepository.save(subscription);
-            
-            log.info("Пользователь {} успешно записан на тренировку {}", currentUser.getId(), scheduleId);
-        } catch (org.springframework.dao.DataIntegrityViolationException e) {
+            eventPublisher.publishEvent(ScheduleChangedEvent.slotsChanged(scheduleId));
+            eventPublisher.publishEvent(SubscriptionChangedEvent.booked(userId, scheduleId));
+            log.info("Пользователь {} успешно записан на тренировку {}", userId, scheduleId);
+        } catch (DataIntegrityViolationException e) {
             log.error("Ошибка целостности данных при записи на тренировку {}: {}", scheduleId, e.getMessage());
             // Если возникла ошибка уникальности, значит пользователь уже записан
             throw new AlreadySignedUpException("Вы уже записаны на эту тренировку.");
-        } catch (NoAvailableSlotsException | AlreadySignedUpException | IllegalArgumentException e) {
+        } catch (NoAvailableSlotsException | AlreadySignedUpException | IllegalArgumentException | NoSuchElementException e) {
             // Пробрасываем известные исключения дальше
             throw e;
         } catch (Exception e) {
@@ -219,58 +278,161 @@ public class ScheduleService {
         }
     }
 
-    public List<WorkoutSubscription> findSubscriptionsForCurrentUser() {
-        return userService.getCurrentUser()
-                .map(workoutSubscriptionRepository::findByUser)
-                .orElse(List.of());
+    /**
+     * Записывает текущего пользователя на серию занятий (например, "йога по вторникам на 3 месяца")
+     * одной транзакцией: занятия серии выбираются одним запросом, места резервируются одним UPDATE
+     * по множеству тренировок, записи вставляются пакетом JDBC.
+     * @param days дни недели, по которым проходят занятия серии
+     * @return результат по каждому занятию серии в порядке времени начала
+     */
+    @Transactional
+    public List<SeriesBookingResultDto> bookSeries(Long workoutTypeId, Long trainerId, Set<DayOfWeek> days,
+                                                   LocalDate from, LocalDate to) {
+        Long userId = userService.getCurrentUserId()
+                .orElseThrow(() -> new NoSuchElementException("Не удалось определить текущего пользователя."));
+        if (userId.equals(trainerId)) {
+            throw new IllegalArgumentException("Вы не можете записаться на собственную тренировку.");
+        }
+        if (days == null || days.isEmpty()) {
+            throw new IllegalArgumentException("Не выбраны дни недели для серии.");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime seriesStart = from.atStartOfDay().isAfter(now) ? from.atStartOfDay() : now;
+        List<Schedule> occurrences = scheduleRepository.findSeries(workoutTypeId, trainerId,
+                days.stream().map(DayOfWeek::getValue).toList(), seriesStart, to.plusDays(1).atStartOfDay());
+        if (occurrences.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> scheduleIds = occurrences.stream().map(Schedule::getId).toList();
+        Map<Long, LocalDateTime> startTimes = new HashMap<>();
+        occurrences.forEach(schedule -> startTimes.put(schedule.getId(), schedule.getStartTime()));
+        Map<Long, SeriesBookingResultDto.Status> statuses = new HashMap<>();
+
+        InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+        if (allocator != null) {
+            // Счётчики в памяти авторитетны, поэтому занятия серии проходят через них по одному
+            for (Long scheduleId : scheduleIds) {
+                statuses.put(scheduleId, bookingWindowPolicy.isOpen(startTimes.get(scheduleId))
+                        ? bookThroughAllocator(allocator, scheduleId, userId)
+                        : SeriesBookingResultDto.Status.NOT_YET_OPEN);
+            }
+        } else {
+            Set<Long> alreadyBooked = new HashSet<>(workoutSubscriptionRepository.findBookedScheduleIds(userId, scheduleIds));
+            List<Long> candidates = scheduleIds.stream().filter(id -> !alreadyBooked.contains(id)).toList();
+
+            List<Long> reserved = bookingJdbcRepository.reserveSlots(candidates, now, bookingWindowPolicy.bookableBefore(now));
+            List<Long> conflicts = bookingJdbcRepository.insertSubscriptions(userId, reserved, now);
+            // Запись могла появиться параллельно - возвращаем места, зарезервированные под дубликаты
+            bookingJdbcRepository.releaseSlots(conflicts);
+            alreadyBooked.addAll(conflicts);
+
+            Set<Long> reservedIds = new HashSet<>(reserved);
+            for (Long scheduleId : scheduleIds) {
+                if (alreadyBooked.contains(scheduleId)) {
+                    statuses.put(scheduleId, SeriesBookingResultDto.Status.ALREADY_BOOKED);
+                } else if (reservedIds.contains(scheduleId)) {
+                    statuses.put(scheduleId, SeriesBookingResultDto.Status.BOOKED);
+                } else if (!bookingWindowPolicy.isOpen(startTimes.get(scheduleId))) {
+                    statuses.put(scheduleId, SeriesBookingResultDto.Status.NOT_YET_OPEN);
+                } else {
+                    statuses.put(scheduleId, SeriesBookingResultDto.Status.FULL);
+                }
+            }
+        }
+
+        statuses.forEach((scheduleId, status) -> {
+            if (status == SeriesBookingResultDto.Status.BOOKED) {
+                eventPublisher.publishEvent(ScheduleChangedEvent.slotsChanged(scheduleId));
+                eventPublisher.publishEvent(SubscriptionChangedEvent.booked(userId, scheduleId));
+            }
+        });
+        log.info("Пользователь {} записан на серию: {} занятий, результат {}", userId, occurrences.size(), statuses.values());
+        return occurrences.stream()
+                .map(schedule -> new SeriesBookingResultDto(schedule.getId(), schedule.getStartTime(), statuses.get(schedule.getId())))
+                .toList();
+    }
+
+    private SeriesBookingResultDto.Status bookThroughAllocator(InMemorySlotAllocator allocator, Long scheduleId, Long userId) {
+        try {
+            allocator.book(scheduleId, userId);
+            return SeriesBookingResultDto.Status.BOOKED;
+        } catch (AlreadySignedUpException e) {
+            return SeriesBookingResultDto.Status.ALREADY_BOOKED;
+        } catch (NoAvailableSlotsException | IllegalArgumentException e) {
+            return SeriesBookingResultDto.Status.FULL;
+        }
+    }
+
+    /**
+     * Выясняет, почему условный UPDATE не зарезервировал место, и выбрасывает соответствующее исключение.
+     * Вызывается только при отказе, поэтому успешная запись обходится без этих чтений.
+     */
+    private void rejectReservation(Long scheduleId, Long userId, LocalDateTime now) throws NoAvailableSlotsException, AlreadySignedUpException {
+        Schedule schedule = findById(scheduleId);
+
+        if (schedule.getTrainer() != null && userId.equals(schedule.getTrainer().getId())) {
+            log.warn("Попытка тренера {} записаться на свою тренировку {}", userId, scheduleId);
+            throw new IllegalArgumentException("Вы не можете записаться на собственную тренировку.");
+        }
+
+        if (!schedule.getStartTime().isAfter(now)) {
+            log.warn("Попытка записи на прошедшую тренировку {} (время начала: {})", scheduleId, schedule.getStartTime());
+            throw new IllegalArgumentException("Нельзя записаться на тренировку, которая уже прошла.");
+        }
+
+        if (!bookingWindowPolicy.isOpen(schedule.getStartTime())) {
+            throw new IllegalArgumentException(bookingWindowPolicy.closedMessage(schedule.getStartTime()));
+        }
+
+        if (workoutSubscriptionRepository.existsByUserIdAndScheduleId(userId, scheduleId)) {
+            log.warn("Пользователь {} уже записан на тренировку {}", userId, scheduleId);
+            throw new AlreadySignedUpException("Вы уже записаны на эту тренировку.");
+        }
+
+        log.warn("Нет свободных мест на тренировку {}", scheduleId);
+        throw new NoAvailableSlotsException("На эту тренировку нет свободных мест.");
     }
 
-    public List<WorkoutSubscription> findSubscriptionsForCurrentUser(LocalDate date, Long workoutTypeId) {
-        return userService.getCurrentUser()
-                .map(user -> {
-                    List<WorkoutSubscription> all = workoutSubscriptionRepository.findByUser(user);
-                    
-                    return all.stream()
-                            .filter(sub -> {
-                                if (date != null) {
-                                    LocalDate subDate = sub.getSchedule().getStartTime().toLocalDate();
-                                    if (!subDate.equals(date)) {
-                                        return false;
-                                    }
-                                }
-                                if (workoutTypeId != null) {
-                                    if (!sub.getSchedule().getWorkoutType().getId().equals(workoutTypeId)) {
-                                        return false;
-                                    }
-                                }
-                                return true;
-                            })
-                            .toList();
-                })
-                .orElse(List.of());
+    /**
+     * Страница записей пользователя с фильтрацией по дате и типу тренировки.
+     * Предстоящие записи идут по возрастанию времени тренировки, история - по убыванию.
+     * @param after курсор из предыдущей страницы или null для первой страницы
+     */
+    public SchedulePageDto<WorkoutSubscription> findUserSubscriptionPage(Long userId, LocalDate date, Long workoutTypeId,
+                                                                         boolean upcoming, String after, int size) {
+        List<WorkoutSubscription> rows = workoutSubscriptionRepository.findUserPage(userId, date, workoutTypeId, upcoming,
+                ScheduleCursor.decode(after), LocalDateTime.now(), size + 1);
+        return toPage(rows, size, subscription -> "", WorkoutSubscription::getScheduleStartTime,
+                WorkoutSubscription::getId);
     }
 
     @Transactional
     public void cancelSubscription(Long subscriptionId) {
-        User currentUser = userService.getCurrentUser()
+        Long currentUserId = userService.getCurrentUserId()
                 .orElseThrow(() -> new NoSuchElementException("Не удалось определить текущего пользователя."));
 
         WorkoutSubscription subscription = workoutSubscriptionRepository.findById(subscriptionId)
                 .orElseThrow(() -> new NoSuchElementException("Запись с ID " + subscriptionId + " не найдена."));
 
-        if (!subscription.getUser().equals(currentUser)) {
+        // ID пользователя берётся из внешнего ключа, прокси не инициализируется
+        if (!subscription.getUser().getId().equals(currentUserId)) {
             throw new IllegalStateException("Вы не можете отменить чужую запись.");
         }
 
-        Schedule schedule = subscription.getSchedule();
-        schedule.setAvailableSlots(schedule.getAvailableSlots() + 1);
-        scheduleRepository.save(schedule);
-
-        workoutSubscriptionRepository.delete(subscription);
+        releaseSubscription(subscription);
     }
 
+    /**
+     * Обновляет тренировку. Если вместимость увеличена, добавленные места в той же транзакции
+     * получают ожидающие из листа ожидания.
+     */
     @Transactional
     public void updateSchedule(Long scheduleId, ScheduleDto scheduleDto) {
+        // Блокировка строки упорядочивает изменение вместимости с записями и листом ожидания
+        scheduleRepository.lockById(scheduleId)
+                .orElseThrow(() -> new NoSuchElementException("Тренировка с ID " + scheduleId + " не найдена"));
         Schedule schedule = findById(scheduleId);
 
         WorkoutType workoutType = workoutTypeRepository.findById(scheduleDto.getWorkoutTypeId())
@@ -288,6 +450,7 @@ public class ScheduleService {
              bookedSlots = schedule.getTotalSlots() - schedule.getAvailableSlots();
         }
 
+        boolean moved = !scheduleDto.getStartTime().equals(schedule.getStartTime());
         schedule.setWorkoutType(workoutType);
         schedule.setTrainer(trainer);
         schedule.setStartTime(scheduleDto.getStartTime());
@@ -297,14 +460,60 @@ public class ScheduleService {
         schedule.setTotalSlots(newTotal);
         schedule.setAvailableSlots(Math.max(0, newTotal - bookedSlots)); // Recalculate available
 
+        List<Long> promotedUserIds = promoteWaitlist(schedule);
+
         scheduleRepository.save(schedule);
+        if (moved) {
+            // После переводов из листа ожидания, чтобы перенос затронул и их записи
+            workoutSubscriptionRepository.updateScheduleStartTime(scheduleId, schedule.getStartTime());
+        }
+        slotAllocator.ifAvailable(allocator -> allocator.evictAfterCommit(scheduleId));
+        eventPublisher.publishEvent(ScheduleChangedEvent.updated(scheduleId));
+        promotedUserIds.forEach(userId -> eventPublisher.publishEvent(SubscriptionChangedEvent.booked(userId, scheduleId)));
+    }
+
+    /**
+     * Отдаёт свободные места ожидающим по порядку очереди. Бронирования, ещё не записанные
+     * распределителем мест в базу, тоже занимают места.
+     * @return ID переведённых из листа ожидания пользователей
+     */
+    private List<Long> promoteWaitlist(Schedule schedule) {
+        if (isPastSchedule(schedule)) {
+            return List.of();
+        }
+        InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+        int unflushed = allocator != null ? allocator.unflushedCount(schedule.getId()) : 0;
+
+        List<Long> promoted = new ArrayList<>();
+        Optional<Long> next;
+        while (schedule.getAvailableSlots() - unflushed > 0
+                && (next = waitlistService.promoteNext(schedule.getId())).isPresent()) {
+            promoted.add(next.get());
+            schedule.setAvailableSlots(schedule.getAvailableSlots() - 1);
+        }
+        if (!promoted.isEmpty()) {
+            log.info("На добавленные места тренировки {} переведено из листа ожидания: {}",
+                    schedule.getId(), promoted.size());
+        }
+        return promoted;
     }
 
     @Transactional
     public void deleteSchedule(Long scheduleId) {
-        Schedule schedule = findById(scheduleId);
-        workoutSubscriptionRepository.deleteAllBySchedule(schedule);
-        scheduleRepository.delete(schedule);
+        // Блокировка строки не даёт параллельной записи вставить подписку между удалениями
+        scheduleRepository.lockById(scheduleId)
+                .orElseThrow(() -> new NoSuchElementException("Тренировка с ID " + scheduleId + " не найдена"));
+        Long workoutTypeId = scheduleRepository.findWorkoutTypeIdById(scheduleId).orElseThrow();
+        List<Long> ids = List.of(scheduleId);
+        waitlistEntryRepository.deleteAllByScheduleIds(ids);
+        subscriptionCancellationRepository.journalAllByScheduleIds(ids, LocalDateTime.now());
+        int subscriptions = workoutSubscriptionRepository.deleteAllByScheduleIds(ids);
+        scheduleRepository.deleteAllByIds(ids);
+        slotAllocator.ifAvailable(allocator -> allocator.evictAfterCommit(scheduleId));
+        eventPublisher.publishEvent(ScheduleChangedEvent.deleted(scheduleId));
+        if (subscriptions > 0) {
+            eventPublisher.publishEvent(new SubscriptionsDeletedEvent(workoutTypeId, subscriptions));
+        }
     }
     
     @Transactional
@@ -312,20 +521,50 @@ public class ScheduleService {
         WorkoutSubscription subscription = workoutSubscriptionRepository.findById(subscriptionId)
                 .orElseThrow(() -> new NoSuchElementException("Запись с ID " + subscriptionId + " не найдена."));
 
+        releaseSubscription(subscription);
+    }
+
+    /**
+     * Удаляет запись и освобождает место. Если на тренировку есть лист ожидания, место в той же
+     * транзакции передаётся первому ожидающему; иначе возвращается относительным UPDATE,
+     * чтобы не затереть параллельные бронирования.
+     */
+    private void releaseSubscription(WorkoutSubscription subscription) {
         Schedule schedule = subscription.getSchedule();
-        schedule.setAvailableSlots(schedule.getAvailableSlots() + 1);
-        scheduleRepository.save(schedule);
+        Long scheduleId = schedule.getId();
+        Long userId = subscription.getUser().getId();
 
+        // Блокировка строки тренировки упорядочивает освобождение места с постановкой в лист ожидания
+        scheduleRepository.lockById(scheduleId);
         workoutSubscriptionRepository.delete(subscription);
+        workoutSubscriptionRepository.flush();
+        // Удалённая запись остаётся в журнале отмен для статистики записей и отмен
+        subscriptionCancellationRepository.save(new SubscriptionCancellation(null, userId, scheduleId,
+                schedule.getWorkoutType().getId(), schedule.getTrainer().getId(),
+                subscription.getSubscriptionDate(), LocalDateTime.now(), SubscriptionCancellation.Reason.CANCELLED));
+
+        Optional<Long> promotedUserId = isPastSchedule(schedule)
+                ? Optional.empty()
+                : waitlistService.promoteNext(scheduleId);
+
+        eventPublisher.publishEvent(SubscriptionChangedEvent.cancelled(userId, scheduleId));
+        if (promotedUserId.isPresent()) {
+            slotAllocator.ifAvailable(allocator -> allocator.transferAfterCommit(scheduleId, userId, promotedUserId.get()));
+            eventPublisher.publishEvent(SubscriptionChangedEvent.booked(promotedUserId.get(), scheduleId));
+        } else {
+            scheduleRepository.releaseSlot(scheduleId);
+            slotAllocator.ifAvailable(allocator -> allocator.releaseAfterCommit(scheduleId, userId));
+            eventPublisher.publishEvent(ScheduleChangedEvent.slotsChanged(scheduleId));
+        }
     }
 
     public List<WorkoutSubscription> findSubscriptionsForUser(User user) {
         return workoutSubscriptionRepository.findByUser(user);
     }
 
-    public java.util.Optional<WorkoutSubscription> findNextUpcomingSubscription() {
-        return userService.getCurrentUser()
-                .flatMap(user -> workoutSubscriptionRepository.findFirstByUserAndScheduleStartTimeAfterOrderByScheduleStartTimeAsc(user, java.time.LocalDateTime.now()));
+    public Optional<WorkoutSubscription> findNextUpcomingSubscription() {
+        return userService.getCurrentUserId()
+                .flatMap(userId -> workoutSubscriptionRepository.findFirstByUserIdAndScheduleStartTimeAfterOrderByScheduleStartTimeAsc(userId, LocalDateTime.now()));
     }
 
     public boolean isUserSubscribed(User user, Schedule schedule) {
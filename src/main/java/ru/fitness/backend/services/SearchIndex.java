@@ -0,0 +1,213 @@
+package ru.fitness.backend.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.fitness.backend.dto.SearchSuggestionDto;
+import ru.fitness.backend.events.UserChangedEvent;
+import ru.fitness.backend.events.WorkoutTypeChangedEvent;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.User;
+import ru.fitness.backend.models.WorkoutType;
+import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.repositories.WorkoutTypeRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Поисковый индекс по названиям и описаниям типов тренировок и по именам и email пользователей (тренеров).
+ * Фильтр по ключевому слову разрешается здесь в множества ID, а в базу уходит условие
+ * {@code workout_id IN (...) OR trainer_id IN (...)} по индексируемым внешним ключам вместо
+ * {@code lower(...) LIKE '%x%'} по соединению таблиц. Индекс строится при старте и обновляется
+ * после фиксации изменений типов тренировок и пользователей. Полная пересборка строит новый индекс
+ * в стороне и публикует его одной записью volatile-ссылки, поэтому поиск никогда не видит частичный индекс.
+ */
+@Slf4j
+@Component
+public class SearchIndex {
+
+    /**
+     * ID, подходящие под ключевое слово: типы тренировок и только тренеры, а не все пользователи,
+     * поэтому размер условия IN ограничен числом тренеров. {@link #ANY} - фильтра нет.
+     */
+    public record KeywordMatch(Set<Long> workoutTypeIds, Set<Long> trainerIds) {
+
+        public static final KeywordMatch ANY = new KeywordMatch(null, null);
+
+        public boolean isAny() {
+            return workoutTypeIds == null;
+        }
+
+        public boolean matches(Long workoutTypeId, Long trainerId) {
+            return isAny() || workoutTypeIds.contains(workoutTypeId) || trainerIds.contains(trainerId);
+        }
+    }
+
+    /**
+     * Один построенный индекс; после публикации меняется только слушателями событий.
+     */
+    private record Indexes(TrigramIndex workoutTypes, TrigramIndex users,
+                           Map<Long, String> workoutTypeTitles, Map<Long, String> trainerNames) {
+
+        private Indexes() {
+            // Поля типа тренировки: название, описание; поля пользователя: ФИО, email
+            this(new TrigramIndex(1.0, 0.6), new TrigramIndex(1.0, 0.8), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+
+        private void putWorkoutType(WorkoutType workoutType) {
+            workoutTypes.put(workoutType.getId(), workoutType.getTitle(), workoutType.getDescription());
+            workoutTypeTitles.put(workoutType.getId(), workoutType.getTitle());
+        }
+    }
+
+    private final WorkoutTypeRepository workoutTypeRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readTransaction;
+    // null, пока индекс не построен; записи (пересборка и события) выполняются под монитором this
+    private volatile Indexes current;
+
+    public SearchIndex(WorkoutTypeRepository workoutTypeRepository,
+                       UserRepository userRepository,
+                       PlatformTransactionManager transactionManager) {
+        this.workoutTypeRepository = workoutTypeRepository;
+        this.userRepository = userRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Полная пересборка индекса из базы: новый индекс строится целиком и только затем подменяет текущий.
+     */
+    public synchronized void rebuild() {
+        Indexes fresh = new Indexes();
+        readTransaction.executeWithoutResult(status -> {
+            workoutTypeRepository.findAll().forEach(fresh::putWorkoutType);
+            userRepository.findSearchRows().forEach(row -> fresh.users().put((Long) row[0], (String) row[1], (String) row[2]));
+            userRepository.findAllByRolesContaining(Role.ROLE_TRAINER)
+                    .forEach(trainer -> fresh.trainerNames().put(trainer.getId(), displayName(trainer)));
+        });
+        current = fresh;
+        log.info("Поисковый индекс построен: {} типов тренировок, {} пользователей",
+                fresh.workoutTypes().size(), fresh.users().size());
+    }
+
+    @TransactionalEventListener
+    public synchronized void onWorkoutTypeChanged(WorkoutTypeChangedEvent event) {
+        Indexes indexes = current;
+        if (indexes == null) {
+            return;
+        }
+        if (event.deleted()) {
+            indexes.workoutTypes().remove(event.workoutTypeId());
+            indexes.workoutTypeTitles().remove(event.workoutTypeId());
+            return;
+        }
+        readTransaction.executeWithoutResult(status ->
+                workoutTypeRepository.findById(event.workoutTypeId()).ifPresent(indexes::putWorkoutType));
+    }
+
+    @TransactionalEventListener
+    public synchronized void onUserChanged(UserChangedEvent event) {
+        Indexes indexes = current;
+        if (indexes == null) {
+            return;
+        }
+        Optional<User> user = readTransaction.execute(status -> userRepository.findById(event.userId()));
+        if (user.isEmpty()) {
+            indexes.users().remove(event.userId());
+            indexes.trainerNames().remove(event.userId());
+            return;
+        }
+        indexes.users().put(event.userId(), user.get().getFullName(), user.get().getEmail());
+        if (user.get().getRoles().contains(Role.ROLE_TRAINER)) {
+            indexes.trainerNames().put(event.userId(), displayName(user.get()));
+        } else {
+            indexes.trainerNames().remove(event.userId());
+        }
+    }
+
+    /**
+     * Разрешает ключевое слово фильтра расписания в ID типов тренировок и тренеров.
+     * @return {@link KeywordMatch#ANY} для пустого слова или пустой Optional, пока индекс не построен
+     */
+    public Optional<KeywordMatch> match(String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return Optional.of(KeywordMatch.ANY);
+        }
+        Indexes indexes = current;
+        if (indexes == null) {
+            return Optional.empty();
+        }
+        Set<Long> trainerIds = indexes.users().search(keyword, 0).stream()
+                .map(TrigramIndex.Match::id)
+                .filter(indexes.trainerNames()::containsKey)
+                .collect(Collectors.toUnmodifiableSet());
+        return Optional.of(new KeywordMatch(ids(indexes.workoutTypes().search(keyword, 0)), trainerIds));
+    }
+
+    /**
+     * ID пользователей, подходящих под ключевое слово, по убыванию релевантности.
+     * @param limit максимальное число ID: короткое слово подходит почти всем пользователям
+     * @return пустой Optional для пустого слова или пока индекс не построен
+     */
+    public Optional<List<Long>> matchUsers(String keyword, int limit) {
+        Indexes indexes = current;
+        if (keyword == null || keyword.trim().isEmpty() || indexes == null) {
+            return Optional.empty();
+        }
+        return Optional.of(indexes.users().search(keyword, limit).stream().map(TrigramIndex.Match::id).toList());
+    }
+
+    /**
+     * Подсказки для строки поиска расписания: типы тренировок и тренеры, самые релевантные первыми.
+     */
+    public List<SearchSuggestionDto> suggest(String query, int limit) {
+        Indexes indexes = current;
+        if (indexes == null) {
+            return List.of();
+        }
+        List<SearchSuggestionDto> suggestions = new ArrayList<>();
+        indexes.workoutTypes().search(query, limit).forEach(match -> suggestions.add(new SearchSuggestionDto(
+                SearchSuggestionDto.Kind.WORKOUT_TYPE, match.id(), indexes.workoutTypeTitles().get(match.id()), match.score())));
+        indexes.users().search(query, 0).stream()
+                .filter(match -> indexes.trainerNames().containsKey(match.id()))
+                .limit(limit)
+                .forEach(match -> suggestions.add(new SearchSuggestionDto(
+                        SearchSuggestionDto.Kind.TRAINER, match.id(), indexes.trainerNames().get(match.id()), match.score())));
+        return suggestions.stream()
+                .filter(suggestion -> suggestion.getLabel() != null)
+                .sorted(Comparator.comparingDouble(SearchSuggestionDto::getScore).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private static String displayName(User user) {
+        return user.getFullName() != null ? user.getFullName() : user.getEmail();
+    }
+
+    private static Set<Long> ids(List<TrigramIndex.Match> matches) {
+        return matches.stream().map(TrigramIndex.Match::id).collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,287 @@
+package ru.fitness.backend.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.fitness.backend.dto.ScheduleView;
+import ru.fitness.backend.dto.SlotAvailabilityDto;
+import ru.fitness.backend.events.ScheduleChangedEvent;
+import ru.fitness.backend.repositories.ScheduleRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поток изменений свободных мест (Server-Sent Events) для открытой страницы расписания вместо её перезагрузки.
+ * Запись, отмена и отмена администратором помечают тренировку изменённой после фиксации транзакции;
+ * раз в интервал все изменения собираются (несколько изменений одной тренировки дают одно сообщение),
+ * читаются одним запросом и раздаются подписчикам, следящим за этими тренировками.
+ * Простаивающее соединение не занимает поток (асинхронный ответ сервлета); отправка идёт на виртуальных
+ * потоках, по одной цепочке на подписчика, поэтому медленный клиент не задерживает остальных.
+ */
+@Slf4j
+@Component
+public class SlotAvailabilityBroadcaster {
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Long> scheduleIds;
+        // Ещё не отправленные изменения: новое значение тренировки заменяет неотправленное старое
+        private final Map<Long, SlotAvailabilityDto> pending = new LinkedHashMap<>();
+        private boolean pingDue;
+        private boolean sending;
+
+        private Subscriber(SseEmitter emitter, Set<Long> scheduleIds) {
+            this.emitter = emitter;
+            this.scheduleIds = scheduleIds;
+        }
+    }
+
+    private final ScheduleRepository scheduleRepository;
+    private final TimetableSnapshot timetableSnapshot;
+    private final ObjectProvider<InMemorySlotAllocator> slotAllocator;
+    private final Map<Long, Set<Subscriber>> watchers = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Место занимается до регистрации подписчика, поэтому одновременные подключения не превышают предел
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Long> deleted = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final long timeoutMillis;
+    private final int maxConnections;
+    private final int maxWatched;
+
+    public SlotAvailabilityBroadcaster(ScheduleRepository scheduleRepository,
+                                       TimetableSnapshot timetableSnapshot,
+                                       ObjectProvider<InMemorySlotAllocator> slotAllocator,
+                                       @Value("${fitness.slots-stream.timeout-ms:1800000}") long timeoutMillis,
+                                       @Value("${fitness.slots-stream.max-connections:20000}") int maxConnections,
+                                       @Value("${fitness.slots-stream.max-watched:200}") int maxWatched) {
+        this.scheduleRepository = scheduleRepository;
+        this.timetableSnapshot = timetableSnapshot;
+        this.slotAllocator = slotAllocator;
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnections = maxConnections;
+        this.maxWatched = maxWatched;
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdown();
+        senders.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Открывает поток для набора тренировок и сразу отправляет их текущее состояние.
+     * При превышении числа соединений поток закрывается с указанием клиенту переподключиться позже.
+     */
+    public SseEmitter subscribe(Collection<Long> scheduleIds) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            SseEmitter rejected = new SseEmitter(0L);
+            try {
+                rejected.send(SseEmitter.event().reconnectTime(60_000).comment("busy"));
+            } catch (IOException ignored) {
+                // клиент уже отключился
+            }
+            rejected.complete();
+            return rejected;
+        }
+
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Long id : scheduleIds) {
+            if (id != null && ids.size() < maxWatched) {
+                ids.add(id);
+            }
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, ids);
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(error -> unregister(subscriber));
+
+        subscribers.add(subscriber);
+        // Добавление внутри compute: параллельный unregister не может удалить множество из карты между поиском и добавлением
+        ids.forEach(id -> watchers.compute(id, (key, audience) -> {
+            Set<Subscriber> watching = audience != null ? audience : ConcurrentHashMap.newKeySet();
+            watching.add(subscriber);
+            return watching;
+        }));
+        currentState(ids).forEach(dto -> enqueue(subscriber, dto));
+        return emitter;
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    @TransactionalEventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        if (!watchers.containsKey(event.scheduleId())) {
+            return;
+        }
+        if (event.kind() == ScheduleChangedEvent.Kind.DELETED) {
+            deleted.add(event.scheduleId());
+        } else {
+            changed.add(event.scheduleId());
+        }
+    }
+
+    /**
+     * Раздаёт накопленные за интервал изменения.
+     */
+    @Scheduled(fixedDelayString = "${fitness.slots-stream.flush-interval-ms:500}")
+    public void flush() {
+        List<Long> changedIds = drain(changed);
+        List<Long> deletedIds = drain(deleted);
+        if (changedIds.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+        if (!changedIds.isEmpty()) {
+            // Событие пришло после фиксации, поэтому база уже содержит новое значение
+            scheduleRepository.findTimetableViewsByIds(changedIds).stream()
+                    .map(this::withAllocatorSlots)
+                    .map(SlotAvailabilityDto::of)
+                    .forEach(this::publish);
+        }
+        deletedIds.forEach(id -> publish(SlotAvailabilityDto.deleted(id)));
+        log.debug("Поток мест: {} изменений, {} удалений, {} подключений", changedIds.size(), deletedIds.size(), subscribers.size());
+    }
+
+    /**
+     * Комментарий раз в интервал не даёт прокси закрыть простаивающее соединение и выявляет отключившихся клиентов.
+     * Отправляется через ту же цепочку подписчика, что и изменения, поэтому не пишет в соединение одновременно с ней.
+     */
+    @Scheduled(fixedDelayString = "${fitness.slots-stream.heartbeat-ms:30000}",
+            initialDelayString = "${fitness.slots-stream.heartbeat-ms:30000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            synchronized (subscriber) {
+                subscriber.pingDue = true;
+                if (subscriber.sending) {
+                    continue;
+                }
+                subscriber.sending = true;
+            }
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    private List<SlotAvailabilityDto> currentState(Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        if (timetableSnapshot.isReady()) {
+            // Снимок обслуживает массовые переподключения без обращений к базе
+            List<SlotAvailabilityDto> state = new ArrayList<>();
+            ids.forEach(id -> timetableSnapshot.find(id).map(SlotAvailabilityDto::of).ifPresent(state::add));
+            return state;
+        }
+        return scheduleRepository.findTimetableViewsByIds(ids).stream()
+                .map(this::withAllocatorSlots)
+                .map(SlotAvailabilityDto::of)
+                .toList();
+    }
+
+    private void publish(SlotAvailabilityDto dto) {
+        Set<Subscriber> audience = watchers.get(dto.getScheduleId());
+        if (audience != null) {
+            audience.forEach(subscriber -> enqueue(subscriber, dto));
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, SlotAvailabilityDto dto) {
+        synchronized (subscriber) {
+            subscriber.pending.put(dto.getScheduleId(), dto);
+            if (subscriber.sending) {
+                return;
+            }
+            subscriber.sending = true;
+        }
+        senders.execute(() -> send(subscriber));
+    }
+
+    /**
+     * Отправляет подписчику всё накопленное, пока очередь не опустеет; одновременно работает не больше одной
+     * такой цепочки на подписчика, поэтому сообщения не обгоняют друг друга.
+     */
+    private void send(Subscriber subscriber) {
+        while (true) {
+            List<SlotAvailabilityDto> batch;
+            boolean ping;
+            synchronized (subscriber) {
+                if (subscriber.pending.isEmpty() && !subscriber.pingDue) {
+                    subscriber.sending = false;
+                    return;
+                }
+                batch = new ArrayList<>(subscriber.pending.values());
+                ping = subscriber.pingDue;
+                subscriber.pending.clear();
+                subscriber.pingDue = false;
+            }
+            try {
+                if (!batch.isEmpty()) {
+                    // Сообщение с данными само поддерживает соединение, отдельный комментарий не нужен
+                    subscriber.emitter.send(SseEmitter.event().name("slots").data(batch, MediaType.APPLICATION_JSON));
+                } else if (ping) {
+                    subscriber.emitter.send(SseEmitter.event().comment("ping"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                synchronized (subscriber) {
+                    subscriber.pending.clear();
+                    subscriber.pingDue = false;
+                    subscriber.sending = false;
+                }
+                unregister(subscriber);
+                subscriber.emitter.completeWithError(e);
+                return;
+            }
+        }
+    }
+
+    private void unregister(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        connections.decrementAndGet();
+        for (Long id : subscriber.scheduleIds) {
+            watchers.computeIfPresent(id, (key, audience) -> {
+                audience.remove(subscriber);
+                return audience.isEmpty() ? null : audience;
+            });
+        }
+    }
+
+    private ScheduleView withAllocatorSlots(ScheduleView view) {
+        InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+        return allocator == null ? view : view.withAvailableSlots(allocator.availableSlots(view.getId()));
+    }
+
+    private static List<Long> drain(Set<Long> ids) {
+        List<Long> drained = new ArrayList<>();
+        for (Long id : ids) {
+            if (ids.remove(id)) {
+                drained.add(id);
+            }
+        }
+        return drained;
+    }
+}
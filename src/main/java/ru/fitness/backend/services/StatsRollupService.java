@@ -0,0 +1,316 @@
+package ru.fitness.backend.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.fitness.backend.dto.StatsBreakdownRowDto;
+import ru.fitness.backend.dto.StatsTimelineDto;
+import ru.fitness.backend.models.StatsRollup;
+import ru.fitness.backend.models.StatsRollupState;
+import ru.fitness.backend.models.User;
+import ru.fitness.backend.models.WorkoutType;
+import ru.fitness.backend.repositories.StatsRollupJdbcRepository;
+import ru.fitness.backend.repositories.StatsRollupStateRepository;
+import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.repositories.WorkoutTypeRepository;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Статистика клуба по часовым и дневным агрегатам (таблица stats_rollup).
+ * Задание свёртки по расписанию пересчитывает интервал от предыдущей отметки (с запасом на транзакции,
+ * зафиксированные позже своего времени) до текущего момента и сдвигает отметку; первый запуск и
+ * перестроение по команде администратора свёртывают историю помесячными транзакциями как фоновая задача
+ * с прогрессом. Всё выполняется собственным потоком по очереди, не занимая общий планировщик и поток запроса.
+ * Часовые агрегаты хранятся ограниченное время, дневные - всю историю. Графики и таблицы читают только агрегаты.
+ */
+@Slf4j
+@Service
+public class StatsRollupService {
+
+    public enum Status {
+        RUNNING, DONE, FAILED
+    }
+
+    /**
+     * Свёртка длинного интервала (первый запуск или перестроение); прогресс считается в днях.
+     */
+    @Getter
+    public static class Job {
+        private final String title;
+        private final long total;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile long processed;
+        private volatile Status status = Status.RUNNING;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        private Job(String title, long total) {
+            this.title = title;
+            this.total = total;
+        }
+
+        public int getPercent() {
+            return total == 0 ? 100 : (int) Math.min(100, processed * 100 / total);
+        }
+    }
+
+    private static final String STATE_NAME = "rollup";
+    private static final int HOURLY_TIMELINE_MAX_DAYS = 7;
+    private static final int BACKFILL_CHUNK_DAYS = 31;
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("dd.MM.yy");
+    private static final DateTimeFormatter HOUR_LABEL = DateTimeFormatter.ofPattern("dd.MM HH:00");
+
+    private final StatsRollupJdbcRepository statsRollupJdbcRepository;
+    private final StatsRollupStateRepository statsRollupStateRepository;
+    private final WorkoutTypeRepository workoutTypeRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long overlapMinutes;
+    private final int initialBackfillDays;
+    private final int hourlyRetentionDays;
+    // Один поток: плановая свёртка и перестроения не пересекаются
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stats-rollup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Плановая свёртка уже стоит в очереди или выполняется
+    private final AtomicBoolean rollUpQueued = new AtomicBoolean();
+    // Текущая или последняя длинная свёртка, для прогресса в админке
+    private volatile Job job;
+
+    public StatsRollupService(StatsRollupJdbcRepository statsRollupJdbcRepository,
+                              StatsRollupStateRepository statsRollupStateRepository,
+                              WorkoutTypeRepository workoutTypeRepository,
+                              UserRepository userRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${fitness.stats-rollup.overlap-minutes:120}") long overlapMinutes,
+                              @Value("${fitness.stats-rollup.initial-backfill-days:730}") int initialBackfillDays,
+                              @Value("${fitness.stats-rollup.hourly-retention-days:35}") int hourlyRetentionDays) {
+        this.statsRollupJdbcRepository = statsRollupJdbcRepository;
+        this.statsRollupStateRepository = statsRollupStateRepository;
+        this.workoutTypeRepository = workoutTypeRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.overlapMinutes = overlapMinutes;
+        this.initialBackfillDays = initialBackfillDays;
+        this.hourlyRetentionDays = hourlyRetentionDays;
+    }
+
+    /**
+     * Ставит в очередь свёртку новых данных от предыдущей отметки до текущего момента.
+     * Если предыдущая ещё не выполнена, новая не добавляется.
+     */
+    @Scheduled(fixedDelayString = "${fitness.stats-rollup.interval-ms:300000}", initialDelay = 60_000)
+    public void rollUp() {
+        if (rollUpQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                rollUpQueued.set(false);
+                rollUpNow();
+            });
+        }
+    }
+
+    /**
+     * Запускает фоновое перестроение агрегатов за последние дни, например после исправления данных задним числом.
+     * Отметка свёртки не меняется.
+     * @throws IllegalStateException если длинная свёртка уже выполняется
+     */
+    public synchronized Job startBackfill(int days) {
+        if (job != null && job.getStatus() == Status.RUNNING) {
+            throw new IllegalStateException("Пересчёт статистики уже выполняется.");
+        }
+        Job backfill = new Job("Пересчёт за " + days + " дн.", days);
+        job = backfill;
+        LocalDateTime now = LocalDateTime.now();
+        executor.execute(() -> run(backfill, now.minusDays(days), now));
+        log.info("IN startBackfill - запущен пересчёт статистики за {} дн.", days);
+        return backfill;
+    }
+
+    /**
+     * Текущая или последняя длинная свёртка; пустой Optional, если их не было с момента старта.
+     */
+    public Optional<Job> findJob() {
+        return Optional.ofNullable(job);
+    }
+
+    /**
+     * Ряды регистраций, записей, отмен и заполненности за последние дни: до недели - по часам, дальше - по дням.
+     */
+    public StatsTimelineDto getTimeline(int days) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean hourly = days <= HOURLY_TIMELINE_MAX_DAYS;
+        StatsRollup.Granularity granularity = hourly ? StatsRollup.Granularity.HOUR : StatsRollup.Granularity.DAY;
+        ChronoUnit unit = hourly ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+        LocalDateTime from = hourly
+                ? now.minusDays(days).truncatedTo(ChronoUnit.HOURS)
+                : now.toLocalDate().minusDays(days - 1L).atStartOfDay();
+
+        Map<StatsRollup.Metric, Map<LocalDateTime, Long>> values = new EnumMap<>(StatsRollup.Metric.class);
+        for (StatsRollupJdbcRepository.Point point : statsRollupJdbcRepository.findSeries(granularity,
+                StatsRollup.Dimension.ALL, 0, List.of(StatsRollup.Metric.values()), from, now.plusNanos(1))) {
+            values.computeIfAbsent(point.metric(), metric -> new HashMap<>()).put(point.bucketStart(), point.value());
+        }
+
+        List<String> labels = new ArrayList<>();
+        List<Long> registrations = new ArrayList<>();
+        List<Long> bookings = new ArrayList<>();
+        List<Long> cancellations = new ArrayList<>();
+        List<Double> fillPercent = new ArrayList<>();
+        for (LocalDateTime bucket = from; !bucket.isAfter(now); bucket = bucket.plus(1, unit)) {
+            labels.add(bucket.format(hourly ? HOUR_LABEL : DAY_LABEL));
+            registrations.add(value(values, StatsRollup.Metric.REGISTRATIONS, bucket));
+            bookings.add(value(values, StatsRollup.Metric.BOOKINGS, bucket));
+            cancellations.add(value(values, StatsRollup.Metric.CANCELLATIONS, bucket));
+            long capacity = value(values, StatsRollup.Metric.CAPACITY, bucket);
+            long occupied = value(values, StatsRollup.Metric.OCCUPIED, bucket);
+            fillPercent.add(capacity == 0 ? null : Math.round(occupied * 1000.0 / capacity) / 10.0);
+        }
+        return new StatsTimelineDto(granularity.name(), labels, registrations, bookings, cancellations, fillPercent);
+    }
+
+    /**
+     * Итоги за последние дни по типам тренировок или тренерам, по убыванию числа записей.
+     */
+    public List<StatsBreakdownRowDto> getBreakdown(StatsRollup.Dimension dimension, int days) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime from = now.toLocalDate().minusDays(days - 1L).atStartOfDay();
+        Map<Long, Map<StatsRollup.Metric, Long>> totals = new HashMap<>();
+        statsRollupJdbcRepository.findTotals(StatsRollup.Granularity.DAY, dimension, from, now.plusNanos(1))
+                .forEach(total -> totals.computeIfAbsent(total.dimensionId(), id -> new EnumMap<>(StatsRollup.Metric.class))
+                        .put(total.metric(), total.value()));
+        Map<Long, String> names = names(dimension, totals.keySet());
+
+        return totals.entrySet().stream()
+                .map(entry -> new StatsBreakdownRowDto(entry.getKey(),
+                        names.getOrDefault(entry.getKey(), "#" + entry.getKey() + " (удалён)"),
+                        entry.getValue().getOrDefault(StatsRollup.Metric.BOOKINGS, 0L),
+                        entry.getValue().getOrDefault(StatsRollup.Metric.CANCELLATIONS, 0L),
+                        entry.getValue().getOrDefault(StatsRollup.Metric.CAPACITY, 0L),
+                        entry.getValue().getOrDefault(StatsRollup.Metric.OCCUPIED, 0L)))
+                .sorted(Comparator.comparingLong(StatsBreakdownRowDto::getBookings).reversed()
+                        .thenComparing(StatsBreakdownRowDto::getName))
+                .toList();
+    }
+
+    /**
+     * Момент, до которого данные уже свёрнуты, или null, если свёртка ещё не выполнялась.
+     */
+    public LocalDateTime getProcessedUntil() {
+        return statsRollupStateRepository.findById(STATE_NAME).map(StatsRollupState::getProcessedUntil).orElse(null);
+    }
+
+    private void rollUpNow() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Optional<LocalDateTime> processedUntil = statsRollupStateRepository.findById(STATE_NAME)
+                    .map(StatsRollupState::getProcessedUntil);
+            if (processedUntil.isPresent()) {
+                roll(processedUntil.get().minusMinutes(overlapMinutes), now, null);
+            } else {
+                // Первый запуск сворачивает историю; прогресс виден в админке
+                Job initial = new Job("Первичная свёртка за " + initialBackfillDays + " дн.", initialBackfillDays);
+                job = initial;
+                if (!run(initial, now.minusDays(initialBackfillDays), now)) {
+                    return;
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                statsRollupStateRepository.save(new StatsRollupState(STATE_NAME, now));
+                statsRollupJdbcRepository.deleteBefore(StatsRollup.Granularity.HOUR, hourlyCutoff(now));
+            });
+        } catch (RuntimeException e) {
+            log.error("Ошибка плановой свёртки статистики", e);
+        }
+    }
+
+    /**
+     * @return true, если свёртка завершилась успешно
+     */
+    private boolean run(Job job, LocalDateTime from, LocalDateTime to) {
+        try {
+            roll(from, to, job);
+            job.status = Status.DONE;
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Ошибка свёртки статистики с {} по {}", from, to, e);
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+            return false;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Пересчитывает дневные агрегаты с начала дня {@code from} и часовые в пределах срока хранения.
+     * Каждый кусок не длиннее месяца выполняется в своей транзакции.
+     * @param job задача, в которой отмечается прогресс, или null
+     */
+    private void roll(LocalDateTime from, LocalDateTime to, Job job) {
+        long started = System.currentTimeMillis();
+        LocalDateTime hourlyFrom = hourlyCutoff(to);
+        int written = 0;
+        for (LocalDateTime chunkFrom = from.truncatedTo(ChronoUnit.DAYS); chunkFrom.isBefore(to); ) {
+            LocalDateTime chunkStart = chunkFrom;
+            LocalDateTime chunkEnd = chunkFrom.plusDays(BACKFILL_CHUNK_DAYS).isBefore(to) ? chunkFrom.plusDays(BACKFILL_CHUNK_DAYS) : to;
+            written += transactionTemplate.execute(status -> {
+                int rows = statsRollupJdbcRepository.rollUp(StatsRollup.Granularity.DAY, chunkStart, chunkEnd);
+                if (chunkEnd.isAfter(hourlyFrom)) {
+                    LocalDateTime hourStart = chunkStart.isAfter(hourlyFrom) ? chunkStart : hourlyFrom;
+                    rows += statsRollupJdbcRepository.rollUp(StatsRollup.Granularity.HOUR, hourStart, chunkEnd);
+                }
+                return rows;
+            });
+            if (job != null) {
+                job.processed = Math.min(job.getTotal(), job.processed + ChronoUnit.DAYS.between(chunkStart, chunkEnd));
+            }
+            chunkFrom = chunkEnd;
+        }
+        log.info("Свёртка статистики с {} по {}: {} строк агрегатов, {} мс", from, to, written, System.currentTimeMillis() - started);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private LocalDateTime hourlyCutoff(LocalDateTime now) {
+        return now.minusDays(hourlyRetentionDays).truncatedTo(ChronoUnit.DAYS);
+    }
+
+    private Map<Long, String> names(StatsRollup.Dimension dimension, Collection<Long> ids) {
+        if (dimension == StatsRollup.Dimension.WORKOUT_TYPE) {
+            return workoutTypeRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(WorkoutType::getId, WorkoutType::getTitle));
+        }
+        return userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, user -> user.getFullName() != null ? user.getFullName() : user.getEmail()));
+    }
+
+    private static long value(Map<StatsRollup.Metric, Map<LocalDateTime, Long>> values, StatsRollup.Metric metric,
+                              LocalDateTime bucket) {
+        return values.getOrDefault(metric, Map.of()).getOrDefault(bucket, 0L);
+    }
+}
@@ -0,0 +1,318 @@
+package ru.fitness.backend.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.fitness.backend.dto.ScheduleCursor;
+import ru.fitness.backend.dto.ScheduleView;
+import ru.fitness.backend.events.ScheduleChangedEvent;
+import ru.fitness.backend.events.WorkoutTypeChangedEvent;
+import ru.fitness.backend.repositories.ScheduleRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Снимок предстоящих тренировок в памяти, общий для всех читателей страницы расписания.
+ * Снимок неизменяем и подменяется одной записью volatile-ссылки. Слушатели событий только ставят
+ * ID изменённых тренировок в очередь; отдельный поток забирает накопившиеся ID пачкой, перечитывает их
+ * одним запросом (или берёт число мест из распределителя, если изменились только места) и публикует
+ * новый снимок. Поток один, поэтому изменения применяются по порядку без блокировок, а запрос
+ * к базе не выполняется ни в потоке запроса, ни под монитором.
+ */
+@Slf4j
+@Component
+public class TimetableSnapshot {
+
+    /**
+     * Версия снимка растёт при каждой подмене; {@code schedules} упорядочены по времени начала и ID.
+     * Порядки страницы расписания строятся один раз на снимок при первом обращении.
+     */
+    public record Snapshot(long version, List<ScheduleView> schedules, Map<Long, ScheduleView> byId,
+                           Map<String, List<ScheduleView>> orders) {
+
+        private List<ScheduleView> ordered(String sortField, boolean descending) {
+            return orders.computeIfAbsent(sortField + (descending ? ":desc" : ":asc"), key -> {
+                List<ScheduleView> sorted = new ArrayList<>(schedules);
+                sorted.sort(order(sortField, descending));
+                return Collections.unmodifiableList(sorted);
+            });
+        }
+    }
+
+    private static final Comparator<ScheduleView> BY_START_TIME =
+            Comparator.comparing(ScheduleView::getStartTime).thenComparing(ScheduleView::getId);
+
+    private final ScheduleRepository scheduleRepository;
+    private final ObjectProvider<InMemorySlotAllocator> slotAllocator;
+    private final TransactionTemplate readTransaction;
+    // null, пока снимок не построен: до этого читатели идут в базу
+    private volatile Snapshot current;
+    // ID тренировок, ждущих применения: true - перечитать из базы, false - изменились только места
+    private final Map<Long, Boolean> pending = new ConcurrentHashMap<>();
+    private final Set<Long> pendingWorkoutTypes = ConcurrentHashMap.newKeySet();
+    // Единственный писатель снимка
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "timetable-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TimetableSnapshot(ScheduleRepository scheduleRepository,
+                             ObjectProvider<InMemorySlotAllocator> slotAllocator,
+                             PlatformTransactionManager transactionManager) {
+        this.scheduleRepository = scheduleRepository;
+        this.slotAllocator = slotAllocator;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public long getVersion() {
+        Snapshot snapshot = current;
+        return snapshot == null ? 0 : snapshot.version();
+    }
+
+    /**
+     * @return предстоящая тренировка из снимка или пустой Optional, если снимок не построен, тренировка началась или удалена
+     */
+    public Optional<ScheduleView> find(Long scheduleId) {
+        Snapshot snapshot = current;
+        return snapshot == null ? Optional.empty() : Optional.ofNullable(snapshot.byId().get(scheduleId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Полная пересборка снимка из базы. Выполняется потоком снимка; метод возвращается после публикации.
+     */
+    @Scheduled(fixedDelayString = "${fitness.timetable.rebuild-interval-ms:600000}",
+            initialDelayString = "${fitness.timetable.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        try {
+            refresher.submit(this::reload).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Ошибка пересборки снимка расписания", e.getCause());
+        }
+    }
+
+    @TransactionalEventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        if (!isReady()) {
+            return;
+        }
+        boolean reload = event.kind() != ScheduleChangedEvent.Kind.SLOTS_CHANGED || slotAllocator.getIfAvailable() == null;
+        pending.merge(event.scheduleId(), reload, Boolean::logicalOr);
+        refresher.execute(this::applyPending);
+    }
+
+    @TransactionalEventListener
+    public void onWorkoutTypeChanged(WorkoutTypeChangedEvent event) {
+        if (!isReady()) {
+            return;
+        }
+        pendingWorkoutTypes.add(event.workoutTypeId());
+        refresher.execute(this::applyPending);
+    }
+
+    /**
+     * Предстоящие тренировки снимка с фильтрами страницы расписания (ключевое слово уже разрешено
+     * {@link SearchIndex}), в порядке и с курсором keyset-пагинации
+     * (см. {@link ru.fitness.backend.repositories.ScheduleRepositoryCustom#findUpcomingPage}).
+     * Порядок уже построен в снимке, поэтому страница - бинарный поиск курсора и проход до {@code limit} строк.
+     */
+    public List<ScheduleView> findUpcoming(SearchIndex.KeywordMatch keyword, LocalDate date, Long workoutTypeId, String sortField,
+                                           boolean descending, ScheduleCursor after, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ScheduleView> ordered = current.ordered(sortField, descending);
+        Predicate<ScheduleView> filter = matches(keyword, date, workoutTypeId);
+
+        List<ScheduleView> page = new ArrayList<>(limit);
+        for (int i = after == null ? 0 : firstAfter(ordered, after, sortField, descending);
+             i < ordered.size() && page.size() < limit; i++) {
+            ScheduleView view = ordered.get(i);
+            if (view.getStartTime().isAfter(now) && filter.test(view)) {
+                page.add(view);
+            }
+        }
+        return page;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<ScheduleView> order(String sortField, boolean descending) {
+        Comparator<ScheduleView> byKey = Comparator.comparing(view -> (Comparable) view.sortKey(sortField));
+        return (descending ? byKey.reversed() : byKey).thenComparing(BY_START_TIME);
+    }
+
+    private static Predicate<ScheduleView> matches(SearchIndex.KeywordMatch keyword, LocalDate date, Long workoutTypeId) {
+        return view -> keyword.matches(view.getWorkoutType().getId(), view.getTrainer().getId())
+                && (date == null || view.getStartTime().toLocalDate().equals(date))
+                && (workoutTypeId == null || view.getWorkoutType().getId().equals(workoutTypeId));
+    }
+
+    /**
+     * Индекс первой тренировки строго после курсора: список упорядочен так же, как сравнивает курсор.
+     */
+    private static int firstAfter(List<ScheduleView> ordered, ScheduleCursor after, String sortField, boolean descending) {
+        int low = 0;
+        int high = ordered.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (isAfterCursor(ordered.get(middle), after, sortField, descending)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static boolean isAfterCursor(ScheduleView view, ScheduleCursor after, String sortField, boolean descending) {
+        int result = ((Comparable) view.sortKey(sortField)).compareTo(after.sortKey(sortField));
+        if (result == 0) {
+            result = view.getStartTime().compareTo(after.getStartTime());
+            return result > 0 || (result == 0 && view.getId() > after.getId());
+        }
+        return descending ? result < 0 : result > 0;
+    }
+
+    private void reload() {
+        pending.clear();
+        pendingWorkoutTypes.clear();
+        List<ScheduleView> views = readTransaction.execute(status -> scheduleRepository.findTimetableViews(LocalDateTime.now()));
+        List<ScheduleView> schedules = new ArrayList<>(views.size());
+        views.forEach(view -> schedules.add(withAllocatorSlots(view)));
+        schedules.sort(BY_START_TIME);
+        publish(schedules);
+        log.info("Снимок расписания пересобран: {} предстоящих тренировок, версия {}", schedules.size(), getVersion());
+    }
+
+    /**
+     * Применяет накопившиеся изменения одной подменой снимка. Вызывается только потоком снимка.
+     */
+    private void applyPending() {
+        if (pending.isEmpty() && pendingWorkoutTypes.isEmpty()) {
+            return;
+        }
+        Map<Long, Boolean> changed = new HashMap<>();
+        for (Long id : List.copyOf(pending.keySet())) {
+            Boolean reload = pending.remove(id);
+            if (reload != null) {
+                changed.put(id, reload);
+            }
+        }
+        Set<Long> workoutTypeIds = new HashSet<>();
+        for (Long id : List.copyOf(pendingWorkoutTypes)) {
+            if (pendingWorkoutTypes.remove(id)) {
+                workoutTypeIds.add(id);
+            }
+        }
+
+        try {
+            Snapshot snapshot = current;
+            Set<Long> removed = new HashSet<>();
+            List<ScheduleView> added = new ArrayList<>();
+            List<Long> reloadIds = new ArrayList<>();
+            changed.forEach((id, reload) -> {
+                ScheduleView known = snapshot.byId().get(id);
+                if (reload || known == null) {
+                    reloadIds.add(id);
+                } else {
+                    removed.add(id);
+                    added.add(known);
+                }
+            });
+            removed.addAll(reloadIds);
+            if (!reloadIds.isEmpty()) {
+                // Удалённые тренировки запрос не вернёт - они просто уходят из снимка
+                added.addAll(readTransaction.execute(status -> scheduleRepository.findTimetableViewsByIds(reloadIds)));
+            }
+            for (Long workoutTypeId : workoutTypeIds) {
+                snapshot.schedules().stream()
+                        .filter(view -> view.getWorkoutType().getId().equals(workoutTypeId))
+                        .forEach(view -> removed.add(view.getId()));
+                added.addAll(readTransaction.execute(status ->
+                        scheduleRepository.findTimetableViewsByWorkoutTypeId(workoutTypeId, LocalDateTime.now())));
+            }
+            publish(merge(snapshot.schedules(), removed, added));
+        } catch (RuntimeException e) {
+            // Не применённые изменения подберёт плановая пересборка
+            log.error("Ошибка обновления снимка расписания для тренировок {} и типов {}", changed.keySet(), workoutTypeIds, e);
+        }
+    }
+
+    /**
+     * Новый упорядоченный список: прежний без удалённых, с добавленными на своих местах.
+     */
+    private List<ScheduleView> merge(List<ScheduleView> schedules, Collection<Long> removed, List<ScheduleView> added) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ScheduleView> merged = new ArrayList<>(schedules.size() + added.size());
+        for (ScheduleView view : schedules) {
+            if (!removed.contains(view.getId())) {
+                merged.add(view);
+            }
+        }
+        Set<Long> seen = new HashSet<>();
+        for (ScheduleView view : added) {
+            if (view.getStartTime().isAfter(now) && seen.add(view.getId())) {
+                ScheduleView withSlots = withAllocatorSlots(view);
+                int position = Collections.binarySearch(merged, withSlots, BY_START_TIME);
+                merged.add(position < 0 ? -position - 1 : position, withSlots);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * При включённом распределителе мест в памяти база отстаёт от счётчиков, поэтому показываем счётчик.
+     */
+    private ScheduleView withAllocatorSlots(ScheduleView view) {
+        InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+        return allocator == null ? view : view.withAvailableSlots(allocator.availableSlots(view.getId()));
+    }
+
+    private void publish(List<ScheduleView> schedules) {
+        Map<Long, ScheduleView> byId = new HashMap<>(schedules.size() * 2);
+        schedules.forEach(view -> byId.put(view.getId(), view));
+        current = new Snapshot(getVersion() + 1, Collections.unmodifiableList(schedules), Collections.unmodifiableMap(byId),
+                new ConcurrentHashMap<>());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+}
@@ -0,0 +1,212 @@
+package ru.fitness.backend.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс триграмм по текстовым полям документов (в духе pg_trgm).
+ * Каждое слово дополняется пробелами ("  слово "), поэтому триграммы начала слова дают ранжирование по префиксу,
+ * а доля общих триграмм запроса и поля - нечёткое совпадение с опечатками.
+ * Поля документа имеют веса: совпадение в названии ценнее совпадения в описании.
+ */
+final class TrigramIndex {
+
+    record Match(long id, double score) {
+    }
+
+    /**
+     * Минимальная доля триграмм запроса, найденных в поле, чтобы считать поле нечётким совпадением.
+     */
+    private static final double FUZZY_THRESHOLD = 0.5;
+    private static final double SUBSTRING_SCORE = 1.0;
+    private static final double PREFIX_BONUS = 0.5;
+    // Нечёткое совпадение всегда ниже точного вхождения подстроки
+    private static final double FUZZY_SCALE = 0.9;
+
+    private record Document(String[] texts, Set<String>[] trigrams) {
+    }
+
+    private final double[] fieldWeights;
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    TrigramIndex(double... fieldWeights) {
+        this.fieldWeights = fieldWeights;
+    }
+
+    /**
+     * Добавляет документ или заменяет его поля; значения полей идут в порядке весов конструктора.
+     */
+    @SuppressWarnings("unchecked")
+    void put(long id, String... fields) {
+        String[] texts = new String[fieldWeights.length];
+        Set<String>[] trigrams = new Set[fieldWeights.length];
+        for (int i = 0; i < fieldWeights.length; i++) {
+            texts[i] = normalize(i < fields.length ? fields[i] : null);
+            trigrams[i] = trigrams(texts[i]);
+        }
+        Document document = new Document(texts, trigrams);
+
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+            documents.put(id, document);
+            for (Set<String> fieldTrigrams : trigrams) {
+                fieldTrigrams.forEach(trigram -> postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Документы, подходящие под запрос, по убыванию релевантности.
+     * Вхождение подстроки (как в прежнем LIKE '%x%') подходит всегда, начало слова поднимает документ выше,
+     * а без вхождения документ подходит, если в поле есть не меньше половины триграмм запроса.
+     * @param limit максимальное число результатов; 0 - без ограничения
+     */
+    List<Match> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        Set<String> queryTrigrams = trigrams(normalized);
+
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (long id : candidates(normalized, queryTrigrams)) {
+                Document document = documents.get(id);
+                double score = 0;
+                for (int i = 0; i < fieldWeights.length; i++) {
+                    score = Math.max(score, fieldWeights[i] * fieldScore(normalized, queryTrigrams, document.texts()[i], document.trigrams()[i]));
+                }
+                if (score > 0) {
+                    matches.add(new Match(id, score));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Comparator.comparingDouble(Match::score).reversed().thenComparingLong(Match::id));
+        return limit > 0 && matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    /**
+     * Запрос короче триграммы состоит только из триграмм границ слова и не найдёт вхождение в середине слова,
+     * поэтому такие запросы проверяют все документы (справочник невелик).
+     */
+    private Collection<Long> candidates(String normalized, Set<String> queryTrigrams) {
+        if (normalized.length() < 3) {
+            return documents.keySet();
+        }
+        Set<Long> candidates = new LinkedHashSet<>();
+        for (String trigram : queryTrigrams) {
+            Set<Long> ids = postings.get(trigram);
+            if (ids != null) {
+                candidates.addAll(ids);
+            }
+        }
+        return candidates;
+    }
+
+    private static double fieldScore(String query, Set<String> queryTrigrams, String text, Set<String> textTrigrams) {
+        if (text.isEmpty()) {
+            return 0;
+        }
+        int position = text.indexOf(query);
+        if (position >= 0) {
+            boolean wordStart = position == 0 || text.charAt(position - 1) == ' ';
+            return SUBSTRING_SCORE + (wordStart ? PREFIX_BONUS : 0);
+        }
+        int shared = 0;
+        for (String trigram : queryTrigrams) {
+            if (textTrigrams.contains(trigram)) {
+                shared++;
+            }
+        }
+        double similarity = (double) shared / queryTrigrams.size();
+        return similarity >= FUZZY_THRESHOLD ? similarity * FUZZY_SCALE : 0;
+    }
+
+    private void removeUnlocked(long id) {
+        Document previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (Set<String> fieldTrigrams : previous.trigrams()) {
+            for (String trigram : fieldTrigrams) {
+                Set<Long> ids = postings.get(trigram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Нижний регистр, "ё" как "е", всё, кроме букв и цифр, - разделители слов.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        boolean space = true;
+        for (char c : value.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                result.append(c == 'ё' ? 'е' : c);
+                space = false;
+            } else if (!space) {
+                result.append(' ');
+                space = true;
+            }
+        }
+        int length = result.length();
+        return length > 0 && result.charAt(length - 1) == ' ' ? result.substring(0, length - 1) : result.toString();
+    }
+
+    private static Set<String> trigrams(String normalized) {
+        Set<String> trigrams = new HashSet<>();
+        if (normalized.isEmpty()) {
+            return trigrams;
+        }
+        for (String word : normalized.split(" ")) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,428 @@
+package ru.fitness.backend.services;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.fitness.backend.dto.UserImportReportDto;
+import ru.fitness.backend.dto.UserImportRow;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.repositories.UserJdbcRepository;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт пользователей из CSV (колонки email, fullName, phoneNumber, password; разделитель
+ * запятая или точка с запятой). Загруженный файл сохраняется во временный файл и импортируется фоновой
+ * задачей с отображением прогресса. Файл читается построчно и обрабатывается пачками: занятые email
+ * проверяются одним запросом на пачку, пароли хешируются в общем пуле {@link PasswordHashingPool}
+ * с ограничением параллельности, пользователи и их роли вставляются пакетами JDBC, каждая пачка - в своей транзакции.
+ * Email сравниваются без учёта регистра и в файле, и с уже зарегистрированными.
+ * Поисковый индекс и счётчики дашборда пересобираются один раз в конце, а не по событию на каждого пользователя.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_KEPT_JOBS = 20;
+
+    public enum Status {
+        RUNNING, DONE, FAILED
+    }
+
+    @Getter
+    public static class Job {
+        private final long id;
+        private final String fileName;
+        private final long totalBytes;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile long bytesRead;
+        private volatile int totalRows;
+        private volatile int imported;
+        private volatile int failed;
+        private volatile Status status = Status.RUNNING;
+        private volatile String error;
+        private volatile UserImportReportDto report;
+        private volatile LocalDateTime finishedAt;
+
+        private Job(long id, String fileName, long totalBytes) {
+            this.id = id;
+            this.fileName = fileName;
+            this.totalBytes = totalBytes;
+        }
+
+        public int getPercent() {
+            if (status != Status.RUNNING) {
+                return 100;
+            }
+            return totalBytes == 0 ? 0 : (int) Math.min(99, bytesRead * 100 / totalBytes);
+        }
+    }
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final SearchIndex searchIndex;
+    private final DashboardService dashboardService;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingPool passwordHashingPool;
+    private final int hashThreads;
+    private final int chunkSize;
+    // Один поток: импорты выполняются по очереди и не делят между собой пул хеширования
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong jobIds = new AtomicLong();
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    private static final class Report {
+        private int totalRows;
+        private int imported;
+        private int failed;
+        private final List<UserImportReportDto.RowError> errors = new ArrayList<>();
+
+        private void error(int line, String email, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new UserImportReportDto.RowError(line, email, message));
+            }
+        }
+    }
+
+    public UserImportService(UserJdbcRepository userJdbcRepository,
+                             SearchIndex searchIndex,
+                             DashboardService dashboardService,
+                             Validator validator,
+                             PlatformTransactionManager transactionManager,
+                             PasswordHashingPool passwordHashingPool,
+                             @Value("${fitness.password-hashing.bcrypt-strength:10}") int strength,
+                             @Value("${fitness.user-import.hash-threads:0}") int hashThreads,
+                             @Value("${fitness.user-import.chunk-size:1000}") int chunkSize) {
+        this.userJdbcRepository = userJdbcRepository;
+        this.searchIndex = searchIndex;
+        this.dashboardService = dashboardService;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Сам кодировщик без пула: задачи пачки уже выполняются в потоках PasswordHashingPool
+        this.passwordEncoder = new BCryptPasswordEncoder(strength);
+        this.passwordHashingPool = passwordHashingPool;
+        this.hashThreads = hashThreads;
+        this.chunkSize = chunkSize;
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Сохраняет файл во временный и ставит его импорт в очередь фоновых задач.
+     * Пользователи создаются с ролью ROLE_USER.
+     */
+    public Job startImport(String fileName, InputStream input) throws IOException {
+        Path file = Files.createTempFile("user-import-", ".csv");
+        try {
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        Job job = new Job(jobIds.incrementAndGet(), fileName, Files.size(file));
+        jobs.put(job.getId(), job);
+        pruneJobs();
+        executor.execute(() -> run(job, file));
+        log.info("Импорт пользователей из {} поставлен в очередь ({} байт)", fileName, job.getTotalBytes());
+        return job;
+    }
+
+    /**
+     * Задачи для отображения прогресса в админке, свежие сверху.
+     */
+    public List<Job> findJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong(Job::getId).reversed())
+                .toList();
+    }
+
+    private void pruneJobs() {
+        List<Job> finished = jobs.values().stream()
+                .filter(job -> job.getStatus() != Status.RUNNING)
+                .sorted(Comparator.comparingLong(Job::getId).reversed())
+                .toList();
+        finished.stream().skip(MAX_KEPT_JOBS).forEach(job -> jobs.remove(job.getId()));
+    }
+
+    private void run(Job job, Path file) {
+        try (InputStream input = new CountingInputStream(Files.newInputStream(file), job)) {
+            job.report = importCsv(input, job);
+            job.status = Status.DONE;
+        } catch (IllegalArgumentException e) {
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+        } catch (Exception e) {
+            log.error("Ошибка импорта пользователей из {}", job.getFileName(), e);
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить временный файл импорта {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException если в заголовке файла нет колонок email или password
+     */
+    private UserImportReportDto importCsv(InputStream input, Job job) throws IOException, InterruptedException {
+        long started = System.currentTimeMillis();
+        Report report = new Report();
+        Set<String> seenEmails = new HashSet<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException("Файл пуст.");
+            }
+            header = header.replace("\uFEFF", "");
+            char delimiter = header.indexOf(';') >= 0 && header.indexOf(',') < 0 ? ';' : ',';
+            Map<String, Integer> columns = columns(parseLine(header, delimiter));
+            if (!columns.containsKey("email") || !columns.containsKey("password")) {
+                throw new IllegalArgumentException("В заголовке файла должны быть колонки email и password.");
+            }
+
+            List<UserImportRow> chunk = new ArrayList<>(chunkSize);
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                report.totalRows++;
+                UserImportRow row = toRow(parseLine(line, delimiter), columns, lineNumber);
+
+                Set<ConstraintViolation<UserImportRow>> violations = validator.validate(row);
+                if (!violations.isEmpty()) {
+                    report.error(lineNumber, row.getEmail(), violations.stream()
+                            .map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; ")));
+                } else if (!seenEmails.add(emailKey(row.getEmail()))) {
+                    report.error(lineNumber, row.getEmail(), "Email повторяется в файле");
+                } else {
+                    chunk.add(row);
+                    if (chunk.size() == chunkSize) {
+                        importChunk(chunk, report);
+                        chunk.clear();
+                        progress(job, report);
+                    }
+                }
+            }
+            importChunk(chunk, report);
+            progress(job, report);
+        } finally {
+            if (report.imported > 0) {
+                searchIndex.rebuild();
+                dashboardService.reconcile();
+            }
+        }
+
+        long duration = System.currentTimeMillis() - started;
+        log.info("Импорт пользователей: {} строк, импортировано {}, ошибок {}, {} мс",
+                report.totalRows, report.imported, report.failed, duration);
+        return new UserImportReportDto(report.totalRows, report.imported, report.failed,
+                report.errors, report.failed > report.errors.size(), duration);
+    }
+
+    private static void progress(Job job, Report report) {
+        job.totalRows = report.totalRows;
+        job.imported = report.imported;
+        job.failed = report.failed;
+    }
+
+    private void importChunk(List<UserImportRow> chunk, Report report) throws InterruptedException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> existing = userJdbcRepository.findExistingEmails(
+                chunk.stream().map(row -> emailKey(row.getEmail())).toList());
+        List<UserImportRow> fresh = new ArrayList<>(chunk.size());
+        for (UserImportRow row : chunk) {
+            if (existing.contains(emailKey(row.getEmail()))) {
+                report.error(row.getLine(), row.getEmail(), "Пользователь с таким email уже зарегистрирован");
+            } else {
+                fresh.add(row);
+            }
+        }
+
+        List<String> hashes = hashAll(fresh);
+        List<UserJdbcRepository.NewUser> users = new ArrayList<>(fresh.size());
+        for (int i = 0; i < fresh.size(); i++) {
+            UserImportRow row = fresh.get(i);
+            users.add(new UserJdbcRepository.NewUser(row.getEmail(), hashes.get(i), row.getFullName(), row.getPhoneNumber()));
+        }
+
+        List<String> inserted = transactionTemplate.execute(status -> {
+            List<String> emails = userJdbcRepository.insertUsers(users, LocalDateTime.now());
+            userJdbcRepository.insertRoles(userJdbcRepository.findIdsByEmails(emails).values(), Role.ROLE_USER);
+            return emails;
+        });
+
+        report.imported += inserted.size();
+        if (inserted.size() < fresh.size()) {
+            // Email занят между проверкой и вставкой (например, параллельной регистрацией)
+            Set<String> insertedEmails = new HashSet<>(inserted);
+            fresh.stream()
+                    .filter(row -> !insertedEmails.contains(row.getEmail()))
+                    .forEach(row -> report.error(row.getLine(), row.getEmail(), "Пользователь с таким email уже зарегистрирован"));
+        }
+    }
+
+    private List<String> hashAll(Collection<UserImportRow> rows) throws InterruptedException {
+        List<Callable<String>> tasks = rows.stream()
+                .<Callable<String>>map(row -> () -> passwordEncoder.encode(row.getPassword()))
+                .toList();
+        return passwordHashingPool.executeAll(tasks, hashThreads);
+    }
+
+    /**
+     * Ключ сравнения email: регистр не различается ни в файле, ни при проверке занятых адресов.
+     */
+    static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<String, Integer> columns(List<String> header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "");
+            switch (name) {
+                case "email" -> columns.put("email", i);
+                case "fullname", "name" -> columns.put("fullName", i);
+                case "phonenumber", "phone" -> columns.put("phoneNumber", i);
+                case "password" -> columns.put("password", i);
+                default -> {
+                    // лишние колонки игнорируются
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static UserImportRow toRow(List<String> values, Map<String, Integer> columns, int lineNumber) {
+        UserImportRow row = new UserImportRow();
+        row.setLine(lineNumber);
+        row.setEmail(value(values, columns.get("email")));
+        row.setFullName(value(values, columns.get("fullName")));
+        row.setPhoneNumber(value(values, columns.get("phoneNumber")));
+        row.setPassword(value(values, columns.get("password")));
+        return row;
+    }
+
+    private static String value(List<String> values, Integer index) {
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Разбор строки CSV: поля в двойных кавычках могут содержать разделитель, "" внутри кавычек - кавычка.
+     */
+    static List<String> parseLine(String line, char delimiter) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    /**
+     * Считает прочитанные байты файла для прогресса задачи.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final Job job;
+        private long count;
+
+        private CountingInputStream(InputStream in, Job job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                job.bytesRead = ++count;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+                job.bytesRead = count;
+            }
+            return n;
+        }
+    }
+}
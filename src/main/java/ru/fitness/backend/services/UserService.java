@@ -2,13 +2,18 @@ package ru.fitness.backend.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import ru.fitness.backend.dto.CurrentUser;
 import ru.fitness.backend.dto.UserRegistrationDto;
+import ru.fitness.backend.events.UserChangedEvent;
 import ru.fitness.backend.exceptions.UserAlreadyExistException;
 import ru.fitness.backend.models.Role;
 import ru.fitness.backend.models.User;
@@ -17,6 +22,10 @@ import ru.fitness.backend.repositories.UserRepository;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.List;
 import jakarta.persistence.criteria.Predicate;
@@ -26,11 +35,19 @@ import jakarta.persistence.criteria.Predicate;
 @Slf4j
 @RequiredArgsConstructor
 public class UserService {
+    private static final String CURRENT_USER_ATTRIBUTE = UserService.class.getName() + ".CURRENT_USER";
+    // Keeps the IN list of a keyword search well below the bind-parameter limit of the driver
+    private static final int MAX_KEYWORD_MATCHES = 500;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final SearchIndex searchIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CurrentUserCache currentUserCache;
 
     /**
-     * Retrieves the currently authenticated user from the security context.
+     * Retrieves the currently authenticated user entity from the database.
+     * Pages that only need the id, name or roles should use {@link #getCurrentPrincipal()} instead.
      * @return An Optional containing the current User, or empty if not found or not authenticated.
      */
     public Optional<User> getCurrentUser() {
@@ -42,6 +59,61 @@ public class UserService {
         return userRepository.findByEmail(userDetails.getUsername());
     }
 
+    /**
+     * Returns an immutable snapshot of the currently authenticated user.
+     * The snapshot is resolved once per request and cached across requests until the user's
+     * roles, status or profile change, so a typical page does not query the users table.
+     * @return An Optional containing the snapshot, or empty if not found or not authenticated.
+     */
+    public Optional<CurrentUser> getCurrentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication.getPrincipal() instanceof String) {
+            return Optional.empty();
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof CurrentUser resolved) {
+            return Optional.of(resolved);
+        }
+        Optional<CurrentUser> principal = currentUserCache.get(((UserDetails) authentication.getPrincipal()).getUsername());
+        if (request != null) {
+            principal.ifPresent(snapshot -> request.setAttribute(CURRENT_USER_ATTRIBUTE, snapshot, RequestAttributes.SCOPE_REQUEST));
+        }
+        return principal;
+    }
+
+    /**
+     * Returns the ID of the currently authenticated user.
+     * The principal stored by our authentication provider is the User entity itself,
+     * so in the normal case no database query is needed.
+     * @return An Optional containing the current user's ID, or empty if not authenticated.
+     */
+    public Optional<Long> getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication.getPrincipal() instanceof String) {
+            return Optional.empty();
+        }
+        if (authentication.getPrincipal() instanceof User user && user.getId() != null) {
+            return Optional.of(user.getId());
+        }
+        return getCurrentPrincipal().map(CurrentUser::getId);
+    }
+
+    /**
+     * Builds a per-user idempotency key for a client-supplied request key.
+     * Keys are scoped by user and operation so that different users or actions never share a cached result.
+     * @param operation The operation name, e.g. "signup".
+     * @param clientKey The key sent by the client (header or form field).
+     * @return The scoped key, or null if the client did not send one or the user is not authenticated.
+     */
+    public String idempotencyKey(String operation, String clientKey) {
+        if (clientKey == null || clientKey.isBlank()) {
+            return null;
+        }
+        return getCurrentUserId()
+                .map(userId -> userId + ":" + operation + ":" + clientKey.trim())
+                .orElse(null);
+    }
+
     /**
      * Registers a new user based on the data from the registration DTO.
      * @param registrationDto DTO containing user registration data.
@@ -61,6 +133,7 @@ public class UserService {
         user.setActive(true);
 
         userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.registered(user.getId()));
         log.info("IN registerNewUser - user: {} successfully registered", user.getEmail());
     }
 
@@ -104,6 +177,8 @@ public class UserService {
         user.getRoles().clear();
         user.getRoles().addAll(roles);
         userRepository.save(user);
+        currentUserCache.invalidate(userId);
+        eventPublisher.publishEvent(UserChangedEvent.updated(userId));
         log.info("IN updateUserRoles - user: {} roles updated", user.getEmail());
     }
 
@@ -117,6 +192,8 @@ public class UserService {
 
     /**
      * Finds users based on keyword, sort field, and sort direction.
+     * Keyword matches come back most relevant first, at most {@value #MAX_KEYWORD_MATCHES} of them,
+     * unless a sort field is given.
      * @param keyword Optional keyword for searching by email or full name.
      * @param sortField Optional field to sort by (e.g., "email", "fullName").
      * @param sortDir Optional sort direction ("asc" or "desc").
@@ -130,10 +207,24 @@ public class UserService {
             sort = sort.ascending();
         }
 
+        // The keyword is resolved to user IDs by the in-memory search index (prefix and fuzzy matches);
+        // the LIKE scan is only a fallback until the index is built
+        Optional<List<Long>> matchedIds = searchIndex.matchUsers(keyword, MAX_KEYWORD_MATCHES);
+        if (matchedIds.isPresent() && (sortField == null || sortField.isEmpty())) {
+            Map<Long, Integer> rank = new HashMap<>();
+            matchedIds.get().forEach(id -> rank.put(id, rank.size()));
+            List<User> users = new ArrayList<>(userRepository.findAllById(matchedIds.get()));
+            users.sort(Comparator.comparing(user -> rank.get(user.getId())));
+            return users;
+        }
         Specification<User> spec = (root, query, criteriaBuilder) -> {
             Predicate predicate = criteriaBuilder.conjunction(); // Always true predicate
 
-            if (keyword != null && !keyword.trim().isEmpty()) {
+            if (matchedIds.isPresent()) {
+                predicate = matchedIds.get().isEmpty()
+                        ? criteriaBuilder.disjunction()
+                        : criteriaBuilder.and(predicate, root.get("id").in(matchedIds.get()));
+            } else if (keyword != null && !keyword.trim().isEmpty()) {
                 String likeKeyword = "%" + keyword.trim().toLowerCase() + "%";
                 predicate = criteriaBuilder.and(predicate, criteriaBuilder.or(
                         criteriaBuilder.like(criteriaBuilder.lower(root.get("email")), likeKeyword),
@@ -158,6 +249,8 @@ public class UserService {
             User user = userOpt.get();
             user.setActive(!user.isActive());
             userRepository.save(user);
+            currentUserCache.invalidate(userId);
+            eventPublisher.publishEvent(UserChangedEvent.updated(userId));
             log.info("Статус пользователя {} изменен на {}", user.getEmail(), user.isActive() ? "активен" : "неактивен");
             return true;
         }
@@ -171,6 +264,8 @@ public class UserService {
         user.setPhoneNumber(phoneNumber);
         user.setBio(bio);
         userRepository.save(user);
+        currentUserCache.invalidate(userId);
+        eventPublisher.publishEvent(UserChangedEvent.updated(userId));
         log.info("User profile updated for user: {}", user.getEmail());
     }
 
@@ -0,0 +1,123 @@
+package ru.fitness.backend.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.fitness.backend.events.WaitlistChangedEvent;
+import ru.fitness.backend.exceptions.AlreadySignedUpException;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.WaitlistEntry;
+import ru.fitness.backend.repositories.ScheduleRepository;
+import ru.fitness.backend.repositories.WaitlistEntryRepository;
+import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Лист ожидания на заполненные тренировки. Очередь хранится в таблице waitlist_entry,
+ * при освобождении места первый ожидающий записывается автоматически в той же транзакции.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WaitlistService {
+
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final ScheduleRepository scheduleRepository;
+    private final WorkoutSubscriptionRepository workoutSubscriptionRepository;
+    private final UserService userService;
+    private final ObjectProvider<InMemorySlotAllocator> slotAllocator;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Ставит текущего пользователя в лист ожидания.
+     * @return позиция пользователя в очереди (с 1)
+     */
+    @Transactional
+    public long joinWaitlist(Long scheduleId) throws AlreadySignedUpException {
+        Long userId = userService.getCurrentUserId()
+                .orElseThrow(() -> new NoSuchElementException("Не удалось определить текущего пользователя."));
+
+        // Блокировка строки тренировки упорядочивает постановку в очередь с освобождением мест
+        scheduleRepository.lockById(scheduleId)
+                .orElseThrow(() -> new NoSuchElementException("Тренировка с ID " + scheduleId + " не найдена"));
+        Schedule schedule = scheduleRepository.findById(scheduleId).orElseThrow();
+
+        if (!schedule.getStartTime().isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Нельзя встать в лист ожидания на тренировку, которая уже прошла.");
+        }
+        if (userId.equals(schedule.getTrainer().getId())) {
+            throw new IllegalArgumentException("Вы не можете записаться на собственную тренировку.");
+        }
+        if (workoutSubscriptionRepository.existsByUserIdAndScheduleId(userId, scheduleId)) {
+            throw new AlreadySignedUpException("Вы уже записаны на эту тренировку.");
+        }
+        if (availableSlots(schedule) > 0) {
+            throw new IllegalArgumentException("На тренировке есть свободные места - запишитесь напрямую.");
+        }
+
+        if (waitlistEntryRepository.insertIfAbsent(userId, scheduleId, LocalDateTime.now()) > 0) {
+            log.info("Пользователь {} встал в лист ожидания на тренировку {}", userId, scheduleId);
+            eventPublisher.publishEvent(new WaitlistChangedEvent(scheduleId));
+        }
+        return waitlistEntryRepository.findPosition(userId, scheduleId);
+    }
+
+    @Transactional
+    public void leaveWaitlist(Long scheduleId) {
+        Long userId = userService.getCurrentUserId()
+                .orElseThrow(() -> new NoSuchElementException("Не удалось определить текущего пользователя."));
+        if (waitlistEntryRepository.deleteByUserAndSchedule(userId, scheduleId) == 0) {
+            throw new NoSuchElementException("Вы не состоите в листе ожидания на эту тренировку.");
+        }
+        log.info("Пользователь {} покинул лист ожидания на тренировку {}", userId, scheduleId);
+        eventPublisher.publishEvent(new WaitlistChangedEvent(scheduleId));
+    }
+
+    /**
+     * Позиции текущего пользователя во всех листах ожидания: ID тренировки -> позиция.
+     */
+    public Map<Long, Long> findPositionsForCurrentUser() {
+        Map<Long, Long> positions = new HashMap<>();
+        userService.getCurrentUserId().ifPresent(userId -> {
+            for (Object[] row : waitlistEntryRepository.findPositionsByUser(userId)) {
+                positions.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+            }
+        });
+        return positions;
+    }
+
+    /**
+     * Записывает на освободившееся место первого ожидающего. Должен вызываться в транзакции отмены
+     * или изменения вместимости после блокировки строки тренировки.
+     * @return ID записанного пользователя или пусто, если очередь пуста
+     */
+    @Transactional
+    public Optional<Long> promoteNext(Long scheduleId) {
+        Optional<WaitlistEntry> head;
+        while ((head = waitlistEntryRepository.lockHead(scheduleId)).isPresent()) {
+            WaitlistEntry entry = head.get();
+            Long userId = entry.getUser().getId();
+            waitlistEntryRepository.deleteEntry(entry.getId());
+            eventPublisher.publishEvent(new WaitlistChangedEvent(scheduleId));
+
+            if (workoutSubscriptionRepository.insertIfAbsent(userId, scheduleId, LocalDateTime.now()) > 0) {
+                log.info("Пользователь {} переведён из листа ожидания на тренировку {}", userId, scheduleId);
+                return Optional.of(userId);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private int availableSlots(Schedule schedule) {
+        InMemorySlotAllocator allocator = slotAllocator.getIfAvailable();
+        return allocator != null ? allocator.availableSlots(schedule.getId()) : schedule.getAvailableSlots();
+    }
+}
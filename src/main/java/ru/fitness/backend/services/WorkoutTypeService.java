@@ -1,11 +1,20 @@
 package ru.fitness.backend.services;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.fitness.backend.events.ScheduleChangedEvent;
+import ru.fitness.backend.events.SubscriptionsDeletedEvent;
+import ru.fitness.backend.events.WorkoutTypeChangedEvent;
 import ru.fitness.backend.models.WorkoutType;
+import ru.fitness.backend.repositories.SubscriptionCancellationRepository;
+import ru.fitness.backend.repositories.WaitlistEntryRepository;
 import ru.fitness.backend.repositories.WorkoutTypeRepository;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -16,6 +25,10 @@ public class WorkoutTypeService {
     private final WorkoutTypeRepository workoutTypeRepository;
     private final ru.fitness.backend.repositories.ScheduleRepository scheduleRepository;
     private final ru.fitness.backend.repositories.WorkoutSubscriptionRepository workoutSubscriptionRepository;
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final SubscriptionCancellationRepository subscriptionCancellationRepository;
+    private final ObjectProvider<InMemorySlotAllocator> slotAllocator;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<WorkoutType> findAll() {
         return workoutTypeRepository.findAll();
@@ -29,6 +42,7 @@ public class WorkoutTypeService {
     @Transactional
     public void createWorkoutType(WorkoutType workoutType) {
         workoutTypeRepository.save(workoutType);
+        eventPublisher.publishEvent(new WorkoutTypeChangedEvent(workoutType.getId(), false));
     }
 
     @Transactional
@@ -38,21 +52,65 @@ public class WorkoutTypeService {
         existing.setDescription(updatedWorkoutType.getDescription());
         existing.setDurationMinutes(updatedWorkoutType.getDurationMinutes());
         workoutTypeRepository.save(existing);
+        eventPublisher.publishEvent(new WorkoutTypeChangedEvent(id, false));
     }
 
+    /**
+     * Удаляет тип тренировки вместе со всеми занятиями, записями и листами ожидания
+     * несколькими set-based инструкциями вместо удаления каждой сущности по отдельности.
+     * Удаляемые записи сохраняются в журнале отмен, чтобы статистика записей не теряла историю.
+     * Для типов с большой историей используйте {@link CascadeDeleteJobService}.
+     * @param chunkSize сколько занятий блокируется одним запросом
+     */
     @Transactional
-    public void deleteWorkoutType(Long id) {
-        WorkoutType workoutType = findById(id);
-        
-        // Find all schedules with this workout type
-        List<ru.fitness.backend.models.Schedule> schedules = scheduleRepository.findByWorkoutType(workoutType);
-        
-        // Delete each schedule and its subscriptions
-        for (ru.fitness.backend.models.Schedule schedule : schedules) {
-            workoutSubscriptionRepository.deleteAllBySchedule(schedule);
-            scheduleRepository.delete(schedule);
+    public void deleteWorkoutType(Long id, int chunkSize) {
+        findById(id);
+
+        // Занятия блокируются порциями по ключу id, а не одним запросом без ограничения
+        List<Long> scheduleIds = new ArrayList<>();
+        List<Long> chunk;
+        long afterId = 0;
+        while (!(chunk = scheduleRepository.lockChunkByWorkoutTypeIdAfter(id, afterId, chunkSize)).isEmpty()) {
+            scheduleIds.addAll(chunk);
+            afterId = chunk.get(chunk.size() - 1);
         }
-        
+        waitlistEntryRepository.deleteAllByWorkoutTypeId(id);
+        subscriptionCancellationRepository.journalAllByWorkoutTypeId(id, LocalDateTime.now());
+        workoutSubscriptionRepository.deleteAllByWorkoutTypeId(id);
+        scheduleRepository.deleteAllByWorkoutTypeId(id);
+        evictAll(scheduleIds);
+
         workoutTypeRepository.deleteById(id);
+        eventPublisher.publishEvent(new WorkoutTypeChangedEvent(id, true));
+    }
+
+    public long countSchedules(Long workoutTypeId) {
+        return scheduleRepository.countByWorkoutTypeId(workoutTypeId);
+    }
+
+    /**
+     * Удаляет очередную порцию занятий типа (вместе с записями и листами ожидания) в отдельной короткой транзакции.
+     * @return число удалённых занятий; 0 означает, что занятий у типа больше нет
+     */
+    @Transactional
+    public int deleteScheduleChunk(Long workoutTypeId, int chunkSize) {
+        List<Long> scheduleIds = scheduleRepository.lockChunkByWorkoutTypeId(workoutTypeId, chunkSize);
+        if (scheduleIds.isEmpty()) {
+            return 0;
+        }
+        waitlistEntryRepository.deleteAllByScheduleIds(scheduleIds);
+        subscriptionCancellationRepository.journalAllByScheduleIds(scheduleIds, LocalDateTime.now());
+        int subscriptions = workoutSubscriptionRepository.deleteAllByScheduleIds(scheduleIds);
+        scheduleRepository.deleteAllByIds(scheduleIds);
+        evictAll(scheduleIds);
+        scheduleIds.forEach(scheduleId -> eventPublisher.publishEvent(ScheduleChangedEvent.deleted(scheduleId)));
+        if (subscriptions > 0) {
+            eventPublisher.publishEvent(new SubscriptionsDeletedEvent(workoutTypeId, subscriptions));
+        }
+        return scheduleIds.size();
+    }
+
+    private void evictAll(List<Long> scheduleIds) {
+        slotAllocator.ifAvailable(allocator -> scheduleIds.forEach(allocator::evictAfterCommit));
     }
 }
@@ -9,6 +9,22 @@ VALUES (1, 'admin@fitness.com', '$2a$10$8.UnVuG9HHgffUDAlk8qYOjzdV.PaEVOPgeGKCEn
        (3, 'user@fitness.com', '$2a$10$8.UnVuG9HHgffUDAlk8qYOjzdV.PaEVOPgeGKCEnmuh.ifMbX.7b6', 'User Userov', '+79995556677', 'Клиент клуба.', true, NOW())
 ON CONFLICT (email) DO UPDATE SET full_name = EXCLUDED.full_name, phone_number = EXCLUDED.phone_number, bio = EXCLUDED.bio;
 
+-- Case-insensitive email lookups (user import duplicate check); JPA index annotations cannot express lower(email)
+CREATE INDEX IF NOT EXISTS idx_users_email_lower ON users (lower(email));
+
+-- Waitlist order numbers for entries created before the seq column existed (no-op afterwards)
+UPDATE waitlist_entry w SET seq = r.rn
+FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY schedule_id ORDER BY id) AS rn FROM waitlist_entry) r
+WHERE w.id = r.id AND w.seq IS NULL;
+
+-- Journal rows written before the reason column existed are treated as cancellations (no-op afterwards)
+UPDATE subscription_cancellation SET reason = 'CANCELLED' WHERE reason IS NULL;
+
+-- Class start time copied into subscriptions created before the schedule_start_time column existed (no-op afterwards)
+UPDATE workout_subscription ws SET schedule_start_time = s.start_time
+FROM schedule s
+WHERE s.id = ws.schedule_id AND ws.schedule_start_time IS NULL;
+
 -- Assign Roles
 INSERT INTO user_role (user_id, roles)
 VALUES (1, 'ROLE_ADMIN'),
@@ -0,0 +1,119 @@
+package ru.fitness.backend;
+
+import org.springframework.boot.test.context.TestComponent;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.User;
+import ru.fitness.backend.models.WorkoutType;
+import ru.fitness.backend.repositories.ScheduleRepository;
+import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.repositories.WorkoutTypeRepository;
+import ru.fitness.backend.services.ScheduleService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Rows for tests that run against the real database: users, workout types and classes named after a
+ * per-test run ID, so repeated and concurrent runs never collide. Pull it in with
+ * {@code @Import(TestFixtures.class)}.
+ */
+@TestComponent
+public class TestFixtures {
+
+    public static final String EMAIL_DOMAIN = "@fixture.test";
+
+    /**
+     * A class together with the trainer and workout type created for it.
+     */
+    public record ClassFixture(User trainer, WorkoutType workoutType, Schedule schedule) {
+    }
+
+    private final UserRepository userRepository;
+    private final WorkoutTypeRepository workoutTypeRepository;
+    private final ScheduleRepository scheduleRepository;
+    private final ScheduleService scheduleService;
+
+    public TestFixtures(UserRepository userRepository,
+                        WorkoutTypeRepository workoutTypeRepository,
+                        ScheduleRepository scheduleRepository,
+                        ScheduleService scheduleService) {
+        this.userRepository = userRepository;
+        this.workoutTypeRepository = workoutTypeRepository;
+        this.scheduleRepository = scheduleRepository;
+        this.scheduleService = scheduleService;
+    }
+
+    public static String newRun() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public static String email(String name, String run) {
+        return name + "-" + run + EMAIL_DOMAIN;
+    }
+
+    public static User newUser(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("fixture-password");
+        user.setFullName(email);
+        user.setRoles(new HashSet<>(Set.of(role)));
+        return user;
+    }
+
+    public User saveUser(String email, Role role) {
+        return userRepository.save(newUser(email, role));
+    }
+
+    /**
+     * Saves {@code count} users named {@code name-run-i} in one batch.
+     */
+    public List<User> saveUsers(String name, String run, int count, Role role) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(newUser(email(name, run + "-" + i), role));
+        }
+        return userRepository.saveAll(users);
+    }
+
+    public WorkoutType saveWorkoutType(String title) {
+        WorkoutType workoutType = new WorkoutType();
+        workoutType.setTitle(title);
+        workoutType.setDurationMinutes(60);
+        return workoutTypeRepository.save(workoutType);
+    }
+
+    public Schedule saveSchedule(WorkoutType workoutType, User trainer, LocalDateTime startTime, int slots) {
+        Schedule schedule = new Schedule();
+        schedule.setWorkoutType(workoutType);
+        schedule.setTrainer(trainer);
+        schedule.setStartTime(startTime);
+        schedule.setAvailableSlots(slots);
+        schedule.setTotalSlots(slots);
+        return scheduleRepository.save(schedule);
+    }
+
+    /**
+     * Creates a trainer, a workout type titled {@code title run} and one class of that type.
+     */
+    public ClassFixture createClass(String title, String run, LocalDateTime startTime, int slots) {
+        User trainer = saveUser(email("trainer", run), Role.ROLE_TRAINER);
+        WorkoutType workoutType = saveWorkoutType(title + " " + run);
+        return new ClassFixture(trainer, workoutType, saveSchedule(workoutType, trainer, startTime, slots));
+    }
+
+    /**
+     * Deletes the class with its bookings and waitlist (unless the test already did), then its type and trainer.
+     */
+    public void deleteClass(ClassFixture fixture) {
+        if (scheduleRepository.existsById(fixture.schedule().getId())) {
+            scheduleService.deleteSchedule(fixture.schedule().getId());
+        }
+        workoutTypeRepository.delete(fixture.workoutType());
+        userRepository.delete(fixture.trainer());
+    }
+}
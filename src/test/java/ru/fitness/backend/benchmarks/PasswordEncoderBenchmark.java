@@ -0,0 +1,79 @@
+package ru.fitness.backend.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.fitness.backend.config.PooledPasswordEncoder;
+import ru.fitness.backend.services.PasswordHashingPool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login throughput (one password check per login) at each BCrypt cost, hashing either on the calling
+ * threads or on the bounded CPU-sized pool. 32 caller threads stand in for a burst of concurrent logins.
+ * Not part of the test suite; run {@link #main} from the IDE or with the test classpath:
+ * {@code java -cp target/test-classes:<test classpath> org.openjdk.jmh.Main PasswordEncoderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(32)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"8", "10", "12"})
+    private int strength;
+
+    @Param({"direct", "pooled"})
+    private String mode;
+
+    private PasswordHashingPool pool;
+    private PasswordEncoder encoder;
+    private String hash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        hash = bcrypt.encode(PASSWORD);
+        // The queue holds every caller thread, so the benchmark measures throughput rather than rejections
+        pool = new PasswordHashingPool(0, 64, TimeUnit.MINUTES.toMillis(1));
+        encoder = "pooled".equals(mode) ? new PooledPasswordEncoder(bcrypt, pool) : bcrypt;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public boolean login() {
+        return encoder.matches(PASSWORD, hash);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PasswordEncoderBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,162 @@
+package ru.fitness.backend.controllers;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.fitness.backend.TestFixtures;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.User;
+import ru.fitness.backend.models.WorkoutSubscription;
+import ru.fitness.backend.models.WorkoutType;
+import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
+import ru.fitness.backend.repositories.WorkoutTypeRepository;
+import ru.fitness.backend.services.CurrentUserCache;
+import ru.fitness.backend.services.ScheduleService;
+import ru.fitness.backend.services.SearchIndex;
+import ru.fitness.backend.services.TimetableSnapshot;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that listing pages load everything their templates need with a fixed number of statements:
+ * adding rows (each with its own trainer and workout type) must not add selects.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@Import(TestFixtures.class)
+class ScheduleQueryCountTest {
+
+    private static final String EMAIL = "query-count" + TestFixtures.EMAIL_DOMAIN;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ScheduleService scheduleService;
+    @Autowired
+    private TimetableSnapshot timetableSnapshot;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private CurrentUserCache currentUserCache;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private WorkoutTypeRepository workoutTypeRepository;
+    @Autowired
+    private WorkoutSubscriptionRepository workoutSubscriptionRepository;
+    @Autowired
+    private TestFixtures fixtures;
+
+    private final List<User> trainers = new ArrayList<>();
+    private final List<WorkoutType> workoutTypes = new ArrayList<>();
+    private final List<Schedule> schedules = new ArrayList<>();
+    private final List<User> attendees = new ArrayList<>();
+    private String run;
+    private User member;
+
+    @BeforeEach
+    void setUp() {
+        run = "querycount" + TestFixtures.newRun();
+        member = fixtures.saveUser(EMAIL, Role.ROLE_USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        schedules.forEach(schedule -> scheduleService.deleteSchedule(schedule.getId()));
+        workoutTypeRepository.deleteAll(workoutTypes);
+        userRepository.deleteAll(trainers);
+        userRepository.deleteAll(attendees);
+        userRepository.delete(member);
+        // The member is deleted directly through the repository, so its cached principal is dropped by hand
+        currentUserCache.invalidate(member.getId());
+    }
+
+    @Test
+    @WithMockUser(username = EMAIL, roles = "USER")
+    void schedulePageStatementCountDoesNotGrowWithRows() throws Exception {
+        addSchedules(2);
+        long few = countStatements("/schedule?keyword=" + run);
+
+        addSchedules(8);
+        long many = countStatements("/schedule?keyword=" + run);
+
+        assertThat(many).isEqualTo(few);
+    }
+
+    @Test
+    @WithMockUser(username = EMAIL, roles = "USER")
+    void myWorkoutsPageStatementCountDoesNotGrowWithRows() throws Exception {
+        addSchedules(2);
+        long few = countStatements("/my-workouts");
+
+        addSchedules(8);
+        long many = countStatements("/my-workouts");
+
+        assertThat(many).isEqualTo(few);
+    }
+
+    @Test
+    @WithMockUser(username = EMAIL, roles = "ADMIN")
+    void rosterPageStatementCountDoesNotGrowWithAttendees() throws Exception {
+        addSchedules(1);
+        Schedule schedule = schedules.get(0);
+        addAttendees(schedule, 2);
+        long few = countStatements("/admin/schedule/" + schedule.getId() + "/subscribers");
+
+        addAttendees(schedule, 8);
+        long many = countStatements("/admin/schedule/" + schedule.getId() + "/subscribers");
+
+        assertThat(many).isEqualTo(few);
+    }
+
+    private long countStatements(String url) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void addSchedules(int count) {
+        for (int i = 0; i < count; i++) {
+            int n = schedules.size();
+            User trainer = fixtures.saveUser(TestFixtures.email("trainer", run + "-" + n), Role.ROLE_TRAINER);
+            trainers.add(trainer);
+            WorkoutType workoutType = fixtures.saveWorkoutType(run + " " + n);
+            workoutTypes.add(workoutType);
+            Schedule schedule = fixtures.saveSchedule(workoutType, trainer, LocalDateTime.now().plusDays(1).plusMinutes(n), 10);
+            schedules.add(schedule);
+
+            workoutSubscriptionRepository.save(new WorkoutSubscription(member, schedule));
+        }
+        // Rows are inserted directly through repositories, so the timetable snapshot and search index are rebuilt by hand
+        timetableSnapshot.rebuild();
+        searchIndex.rebuild();
+    }
+
+    private void addAttendees(Schedule schedule, int count) {
+        for (int i = 0; i < count; i++) {
+            User attendee = fixtures.saveUser(TestFixtures.email("attendee", run + "-" + attendees.size()), Role.ROLE_USER);
+            attendees.add(attendee);
+            workoutSubscriptionRepository.save(new WorkoutSubscription(attendee, schedule));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.fitness.backend.repositories;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import ru.fitness.backend.TestFixtures;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.StatsRollup;
+import ru.fitness.backend.models.User;
+import ru.fitness.backend.models.WorkoutSubscription;
+import ru.fitness.backend.services.ScheduleService;
+import ru.fitness.backend.services.StatsRollupService;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rollup SQL against a workout type and trainer created for the test, so the per-type and per-trainer
+ * totals are exact regardless of other rows in the database.
+ */
+@SpringBootTest(properties = "fitness.booking.window.days-before=0")
+@Import(TestFixtures.class)
+class StatsRollupJdbcRepositoryTest {
+
+    private static final int SLOTS = 10;
+
+    @Autowired
+    private StatsRollupJdbcRepository statsRollupJdbcRepository;
+    @Autowired
+    private StatsRollupService statsRollupService;
+    @Autowired
+    private ScheduleService scheduleService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private WorkoutSubscriptionRepository workoutSubscriptionRepository;
+    @Autowired
+    private TestFixtures fixtures;
+
+    private TestFixtures.ClassFixture fixture;
+    private List<User> members;
+    private Schedule schedule;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String run = TestFixtures.newRun();
+        fixture = fixtures.createClass("Rollup", run, LocalDateTime.now().plusDays(2), SLOTS);
+        schedule = fixture.schedule();
+        members = fixtures.saveUsers("member", run, 3, Role.ROLE_USER);
+
+        // Three bookings, the last one cancelled: two live rows and one journal row
+        for (User member : members) {
+            scheduleService.signUpForWorkout(schedule.getId(), member.getId());
+        }
+        WorkoutSubscription cancelled = workoutSubscriptionRepository.findAllBySchedule(schedule).stream()
+                .filter(subscription -> subscription.getUser().getId().equals(members.get(2).getId()))
+                .findFirst().orElseThrow();
+        scheduleService.adminCancelSubscription(cancelled.getId());
+
+        from = LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.DAYS);
+        to = LocalDateTime.now().plusDays(5).truncatedTo(ChronoUnit.DAYS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.deleteClass(fixture);
+        userRepository.deleteAll(members);
+    }
+
+    @Test
+    void dailyRollupCountsBookingsCancellationsAndFill() {
+        statsRollupJdbcRepository.rollUp(StatsRollup.Granularity.DAY, from, to);
+
+        Map<StatsRollup.Metric, Long> byType = totals(StatsRollup.Granularity.DAY, StatsRollup.Dimension.WORKOUT_TYPE, fixture.workoutType().getId());
+        assertThat(byType).containsEntry(StatsRollup.Metric.BOOKINGS, 3L)
+                .containsEntry(StatsRollup.Metric.CANCELLATIONS, 1L)
+                .containsEntry(StatsRollup.Metric.CAPACITY, (long) SLOTS)
+                .containsEntry(StatsRollup.Metric.OCCUPIED, 2L);
+        assertThat(totals(StatsRollup.Granularity.DAY, StatsRollup.Dimension.TRAINER, fixture.trainer().getId())).isEqualTo(byType);
+    }
+
+    @Test
+    void rollingTheSameIntervalTwiceGivesTheSameTotals() {
+        statsRollupJdbcRepository.rollUp(StatsRollup.Granularity.DAY, from, to);
+        Map<StatsRollup.Metric, Long> first = totals(StatsRollup.Granularity.DAY, StatsRollup.Dimension.WORKOUT_TYPE, fixture.workoutType().getId());
+
+        statsRollupJdbcRepository.rollUp(StatsRollup.Granularity.DAY, from, to);
+
+        assertThat(totals(StatsRollup.Granularity.DAY, StatsRollup.Dimension.WORKOUT_TYPE, fixture.workoutType().getId())).isEqualTo(first);
+    }
+
+    @Test
+    void hourlyBucketsAddUpToDailyOnes() {
+        statsRollupJdbcRepository.rollUp(StatsRollup.Granularity.DAY, from, to);
+        statsRollupJdbcRepository.rollUp(StatsRollup.Granularity.HOUR, from, to);
+
+        assertThat(totals(StatsRollup.Granularity.HOUR, StatsRollup.Dimension.WORKOUT_TYPE, fixture.workoutType().getId()))
+                .isEqualTo(totals(StatsRollup.Granularity.DAY, StatsRollup.Dimension.WORKOUT_TYPE, fixture.workoutType().getId()));
+    }
+
+    @Test
+    void deletedScheduleKeepsItsBookingsWithoutCountingThemAsCancellations() {
+        scheduleService.deleteSchedule(schedule.getId());
+
+        statsRollupJdbcRepository.rollUp(StatsRollup.Granularity.DAY, from, to);
+
+        Map<StatsRollup.Metric, Long> byType = totals(StatsRollup.Granularity.DAY, StatsRollup.Dimension.WORKOUT_TYPE, fixture.workoutType().getId());
+        assertThat(byType).containsEntry(StatsRollup.Metric.BOOKINGS, 3L)
+                .containsEntry(StatsRollup.Metric.CANCELLATIONS, 1L)
+                .doesNotContainKey(StatsRollup.Metric.CAPACITY);
+    }
+
+    @Test
+    void backfillRunsAsBackgroundJob() throws Exception {
+        StatsRollupService.Job job = statsRollupService.startBackfill(3);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (job.getStatus() == StatsRollupService.Status.RUNNING && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        assertThat(job.getStatus()).isEqualTo(StatsRollupService.Status.DONE);
+        assertThat(job.getPercent()).isEqualTo(100);
+    }
+
+    private Map<StatsRollup.Metric, Long> totals(StatsRollup.Granularity granularity, StatsRollup.Dimension dimension, Long id) {
+        Map<StatsRollup.Metric, Long> totals = new EnumMap<>(StatsRollup.Metric.class);
+        statsRollupJdbcRepository.findTotals(granularity, dimension, from, to).stream()
+                .filter(total -> total.dimensionId() == id)
+                .forEach(total -> totals.put(total.metric(), total.value()));
+        return totals;
+    }
+}
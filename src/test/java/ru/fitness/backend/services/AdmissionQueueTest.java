@@ -0,0 +1,125 @@
+package ru.fitness.backend.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.fitness.backend.exceptions.NoAvailableSlotsException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Admission queue fairness against a mocked booking call; no Spring context needed.
+ */
+class AdmissionQueueTest {
+
+    private static final long SCHEDULE_ID = 42L;
+    private static final int APPLICANTS = 50;
+
+    private final ScheduleService scheduleService = mock(ScheduleService.class);
+    private final List<Long> bookedInOrder = Collections.synchronizedList(new ArrayList<>());
+    private AdmissionQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void fifoQueueBooksInSubmissionOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        recordBookings(release);
+        // One booking at a time, so dispatch order is observable
+        queue = startQueue(1, AdmissionQueue.Order.FIFO);
+
+        List<AdmissionQueue.Ticket> tickets = new ArrayList<>();
+        for (long userId = 1; userId <= APPLICANTS; userId++) {
+            tickets.add(queue.submit(SCHEDULE_ID, userId).orElseThrow());
+        }
+        release.countDown();
+        awaitFinished(tickets);
+
+        assertThat(bookedInOrder).containsExactlyElementsOf(tickets.stream().map(AdmissionQueue.Ticket::getUserId).toList());
+        assertThat(tickets).allMatch(ticket -> ticket.getStatus() == AdmissionQueue.Status.BOOKED);
+    }
+
+    @Test
+    void repeatedSubmissionKeepsTheOriginalPlaceInLine() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        recordBookings(release);
+        queue = startQueue(1, AdmissionQueue.Order.FIFO);
+
+        AdmissionQueue.Ticket first = queue.submit(SCHEDULE_ID, 1L).orElseThrow();
+        AdmissionQueue.Ticket second = queue.submit(SCHEDULE_ID, 2L).orElseThrow();
+        AdmissionQueue.Ticket repeated = queue.submit(SCHEDULE_ID, 2L).orElseThrow();
+        release.countDown();
+        awaitFinished(List.of(first, second));
+
+        assertThat(repeated).isSameAs(second);
+        assertThat(bookedInOrder).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void lotteryBooksEveryApplicantExactlyOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        recordBookings(release);
+        queue = startQueue(4, AdmissionQueue.Order.LOTTERY);
+
+        List<AdmissionQueue.Ticket> tickets = new ArrayList<>();
+        for (long userId = 1; userId <= APPLICANTS; userId++) {
+            tickets.add(queue.submit(SCHEDULE_ID, userId).orElseThrow());
+        }
+        release.countDown();
+        awaitFinished(tickets);
+
+        assertThat(bookedInOrder).containsExactlyInAnyOrderElementsOf(
+                tickets.stream().map(AdmissionQueue.Ticket::getUserId).toList());
+    }
+
+    @Test
+    void rejectedBookingIsReportedOnTheTicket() throws Exception {
+        doThrow(new NoAvailableSlotsException("На эту тренировку нет свободных мест."))
+                .when(scheduleService).signUpForWorkout(eq(SCHEDULE_ID), anyLong());
+        queue = startQueue(1, AdmissionQueue.Order.FIFO);
+
+        AdmissionQueue.Ticket ticket = queue.submit(SCHEDULE_ID, 1L).orElseThrow();
+        awaitFinished(List.of(ticket));
+
+        assertThat(ticket.getStatus()).isEqualTo(AdmissionQueue.Status.REJECTED);
+        assertThat(ticket.getMessage()).isEqualTo("На эту тренировку нет свободных мест.");
+    }
+
+    private void recordBookings(CountDownLatch release) throws Exception {
+        doAnswer(invocation -> {
+            // Keep applicants queued until the test releases the first booking
+            release.await(10, TimeUnit.SECONDS);
+            bookedInOrder.add(invocation.getArgument(1));
+            return null;
+        }).when(scheduleService).signUpForWorkout(eq(SCHEDULE_ID), anyLong());
+    }
+
+    private AdmissionQueue startQueue(int maxInFlight, AdmissionQueue.Order order) {
+        AdmissionQueue admissionQueue = new AdmissionQueue(scheduleService, 1000, 1000, maxInFlight, order, 600);
+        admissionQueue.start();
+        return admissionQueue;
+    }
+
+    private static void awaitFinished(List<AdmissionQueue.Ticket> tickets) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!tickets.stream().allMatch(AdmissionQueue.Ticket::isFinished) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertThat(tickets).allMatch(AdmissionQueue.Ticket::isFinished);
+    }
+}
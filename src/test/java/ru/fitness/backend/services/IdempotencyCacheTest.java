@@ -0,0 +1,151 @@
+package ru.fitness.backend.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Replay semantics of the idempotency cache; no Spring context needed.
+ */
+class IdempotencyCacheTest {
+
+    private final IdempotencyCache cache = new IdempotencyCache(100, 600);
+
+    @Test
+    void replayReturnsStoredOutcomeWithoutRunningAgain() {
+        AtomicInteger runs = new AtomicInteger();
+
+        IdempotencyCache.Outcome first = cache.execute("1:signup:k", 10L, () -> {
+            runs.incrementAndGet();
+            return IdempotencyCache.Outcome.success("booked");
+        });
+        IdempotencyCache.Outcome replay = cache.execute("1:signup:k", 10L, () -> {
+            runs.incrementAndGet();
+            return IdempotencyCache.Outcome.failure("second run");
+        });
+
+        assertThat(replay).isEqualTo(first);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheOriginal() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<IdempotencyCache.Outcome> original = executor.submit(() -> cache.execute("1:signup:k", 10L, () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                await(release);
+                return IdempotencyCache.Outcome.success("booked");
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<IdempotencyCache.Outcome> duplicate = executor.submit(() -> cache.execute("1:signup:k", 10L, () -> {
+                runs.incrementAndGet();
+                return IdempotencyCache.Outcome.failure("second run");
+            }));
+            release.countDown();
+
+            assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo(original.get(5, TimeUnit.SECONDS));
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedOriginalIsNotReplayed() {
+        assertThatThrownBy(() -> cache.execute("1:signup:k", 10L, () -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        IdempotencyCache.Outcome retry = cache.execute("1:signup:k", 10L, () -> IdempotencyCache.Outcome.success("booked"));
+
+        assertThat(retry.success()).isTrue();
+    }
+
+    @Test
+    void duplicateOfFailingOriginalRunsAgainInsteadOfFailing() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<IdempotencyCache.Outcome> original = executor.submit(() -> cache.execute("1:signup:k", 10L, () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("database down");
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<IdempotencyCache.Outcome> duplicate = executor.submit(() ->
+                    cache.execute("1:signup:k", 10L, () -> IdempotencyCache.Outcome.success("booked")));
+            release.countDown();
+
+            assertThatThrownBy(() -> original.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+            assertThat(duplicate.get(5, TimeUnit.SECONDS).success()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void retryableOutcomeIsNotReplayed() {
+        AtomicInteger runs = new AtomicInteger();
+        IdempotencyCache.Outcome first = cache.execute("1:signup:k", 10L, () -> {
+            runs.incrementAndGet();
+            return IdempotencyCache.Outcome.retryLater("busy");
+        });
+
+        IdempotencyCache.Outcome retry = cache.execute("1:signup:k", 10L, () -> {
+            runs.incrementAndGet();
+            return IdempotencyCache.Outcome.success("booked");
+        });
+
+        assertThat(first.success()).isFalse();
+        assertThat(retry.success()).isTrue();
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void sameKeyForAnotherRequestIsRejected() {
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("1:signup:k", 10L, () -> {
+            runs.incrementAndGet();
+            return IdempotencyCache.Outcome.success("booked 10");
+        });
+
+        IdempotencyCache.Outcome other = cache.execute("1:signup:k", 11L, () -> {
+            runs.incrementAndGet();
+            return IdempotencyCache.Outcome.success("booked 11");
+        });
+
+        assertThat(other.success()).isFalse();
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void missingKeyAlwaysRuns() {
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute(null, 10L, () -> IdempotencyCache.Outcome.success(String.valueOf(runs.incrementAndGet())));
+        cache.execute(null, 10L, () -> IdempotencyCache.Outcome.success(String.valueOf(runs.incrementAndGet())));
+
+        assertThat(runs).hasValue(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.fitness.backend.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import ru.fitness.backend.TestFixtures;
+import ru.fitness.backend.exceptions.AlreadySignedUpException;
+import ru.fitness.backend.exceptions.NoAvailableSlotsException;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.User;
+import ru.fitness.backend.repositories.ScheduleRepository;
+import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * In-memory seat counters with write-behind persistence. The periodic flush is pushed far out,
+ * so each test decides when accepted bookings reach the database.
+ */
+@SpringBootTest(properties = {
+        "fitness.booking.in-memory.enabled=true",
+        "fitness.booking.in-memory.flush-interval-ms=3600000",
+        "fitness.booking.window.days-before=0"
+})
+@Import(TestFixtures.class)
+class InMemorySlotAllocatorTest {
+
+    private static final int BOOKERS = 200;
+    private static final int SLOTS = 20;
+
+    @Autowired
+    private InMemorySlotAllocator allocator;
+    @Autowired
+    private ScheduleService scheduleService;
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private WorkoutSubscriptionRepository workoutSubscriptionRepository;
+    @Autowired
+    private TestFixtures fixtures;
+
+    private TestFixtures.ClassFixture fixture;
+    private List<User> bookers;
+    private Schedule schedule;
+
+    @BeforeEach
+    void setUp() {
+        String run = TestFixtures.newRun();
+        fixture = fixtures.createClass("Allocator", run, LocalDateTime.now().plusDays(1), SLOTS);
+        schedule = fixture.schedule();
+        bookers = fixtures.saveUsers("booker", run, BOOKERS, Role.ROLE_USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.flush();
+        fixtures.deleteClass(fixture);
+        userRepository.deleteAll(userRepository.findAllById(bookers.stream().map(User::getId).toList()));
+    }
+
+    @Test
+    void concurrentBookingsNeverOversellAndReachDatabaseOnFlush() throws Exception {
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(50);
+        List<Future<?>> futures = new ArrayList<>();
+        for (User booker : bookers) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    scheduleService.signUpForWorkout(schedule.getId(), booker.getId());
+                    booked.incrementAndGet();
+                } catch (NoAvailableSlotsException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(booked.get()).isEqualTo(SLOTS);
+        assertThat(rejected.get()).isEqualTo(BOOKERS - SLOTS);
+        assertThat(allocator.availableSlots(schedule.getId())).isZero();
+
+        allocator.flush();
+
+        Schedule reloaded = scheduleRepository.findById(schedule.getId()).orElseThrow();
+        assertThat(reloaded.getAvailableSlots()).isZero();
+        assertThat(workoutSubscriptionRepository.findAllBySchedule(reloaded)).hasSize(SLOTS);
+    }
+
+    @Test
+    void bookingThatCannotBeWrittenReturnsSeatAndUser() throws Exception {
+        User lost = bookers.get(0);
+        scheduleService.signUpForWorkout(schedule.getId(), lost.getId());
+        assertThat(allocator.availableSlots(schedule.getId())).isEqualTo(SLOTS - 1);
+
+        // The account disappears before the write-behind batch lands
+        userRepository.delete(lost);
+        allocator.flush();
+
+        Schedule reloaded = scheduleRepository.findById(schedule.getId()).orElseThrow();
+        assertThat(workoutSubscriptionRepository.findAllBySchedule(reloaded)).isEmpty();
+        assertThat(reloaded.getAvailableSlots()).isEqualTo(SLOTS);
+        assertThat(allocator.availableSlots(schedule.getId())).isEqualTo(SLOTS);
+    }
+
+    @Test
+    void duplicateBookingIsRejectedWithoutTakingSecondSeat() throws Exception {
+        User booker = bookers.get(1);
+        scheduleService.signUpForWorkout(schedule.getId(), booker.getId());
+
+        assertThatThrownBy(() -> scheduleService.signUpForWorkout(schedule.getId(), booker.getId()))
+                .isInstanceOf(AlreadySignedUpException.class);
+        allocator.flush();
+
+        assertThat(allocator.availableSlots(schedule.getId())).isEqualTo(SLOTS - 1);
+        assertThat(scheduleRepository.findById(schedule.getId()).orElseThrow().getAvailableSlots()).isEqualTo(SLOTS - 1);
+    }
+}
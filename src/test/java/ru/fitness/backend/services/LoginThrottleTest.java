@@ -0,0 +1,83 @@
+package ru.fitness.backend.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lockout rules of the login throttle; no Spring context needed.
+ */
+class LoginThrottleTest {
+
+    private static final String ADDRESS = "10.0.0.1";
+    private static final String OTHER_ADDRESS = "10.0.0.2";
+
+    private final LoginThrottle throttle = new LoginThrottle(3, 5, 900);
+
+    @Test
+    void accountIsLockedAfterMaxFailures() {
+        fail(ADDRESS, "ivan@test.ru", 2);
+        assertThat(throttle.isBlocked(ADDRESS, "ivan@test.ru")).isFalse();
+
+        fail(ADDRESS, "ivan@test.ru", 1);
+
+        assertThat(throttle.isBlocked(ADDRESS, "ivan@test.ru")).isTrue();
+        // The account stays locked from another address, other accounts are unaffected
+        assertThat(throttle.isBlocked(OTHER_ADDRESS, "ivan@test.ru")).isTrue();
+        assertThat(throttle.isBlocked(OTHER_ADDRESS, "petr@test.ru")).isFalse();
+    }
+
+    @Test
+    void usernameIsMatchedIgnoringCaseAndSpaces() {
+        fail(ADDRESS, "Ivan@Test.RU", 2);
+        fail(OTHER_ADDRESS, " ivan@test.ru ", 1);
+
+        assertThat(throttle.isBlocked("10.0.0.3", "IVAN@TEST.RU")).isTrue();
+    }
+
+    @Test
+    void addressIsLockedAcrossAccounts() {
+        for (int i = 0; i < 5; i++) {
+            fail(ADDRESS, "user" + i + "@test.ru", 1);
+        }
+
+        assertThat(throttle.isBlocked(ADDRESS, "new@test.ru")).isTrue();
+        assertThat(throttle.isBlocked(ADDRESS, null)).isTrue();
+        assertThat(throttle.isBlocked(OTHER_ADDRESS, "new@test.ru")).isFalse();
+    }
+
+    @Test
+    void successfulLoginResetsTheAccount() {
+        fail(ADDRESS, "ivan@test.ru", 3);
+
+        throttle.onAuthenticationSuccess(new AuthenticationSuccessEvent(
+                new UsernamePasswordAuthenticationToken("Ivan@test.ru", null)));
+
+        assertThat(throttle.isBlocked(OTHER_ADDRESS, "ivan@test.ru")).isFalse();
+    }
+
+    @Test
+    void lockoutEndsWhenTheWindowExpires() throws InterruptedException {
+        LoginThrottle shortWindow = new LoginThrottle(2, 100, 1);
+        shortWindow.recordFailure(ADDRESS, "ivan@test.ru");
+        shortWindow.recordFailure(ADDRESS, "ivan@test.ru");
+        assertThat(shortWindow.isBlocked(ADDRESS, "ivan@test.ru")).isTrue();
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+
+        assertThat(shortWindow.isBlocked(ADDRESS, "ivan@test.ru")).isFalse();
+        // A failure after expiry starts a new window instead of adding to the old one
+        shortWindow.recordFailure(ADDRESS, "ivan@test.ru");
+        assertThat(shortWindow.isBlocked(ADDRESS, "ivan@test.ru")).isFalse();
+    }
+
+    private void fail(String address, String username, int times) {
+        for (int i = 0; i < times; i++) {
+            throttle.recordFailure(address, username);
+        }
+    }
+}
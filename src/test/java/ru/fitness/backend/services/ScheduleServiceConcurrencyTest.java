@@ -0,0 +1,103 @@
+package ru.fitness.backend.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import ru.fitness.backend.TestFixtures;
+import ru.fitness.backend.exceptions.NoAvailableSlotsException;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.User;
+import ru.fitness.backend.repositories.ScheduleRepository;
+import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stress test for the atomic seat reservation path: many users book the same class at once
+ * and the class must never be oversold.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+class ScheduleServiceConcurrencyTest {
+
+    private static final int BOOKERS = 500;
+    private static final int SLOTS = 50;
+
+    @Autowired
+    private ScheduleService scheduleService;
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private WorkoutSubscriptionRepository workoutSubscriptionRepository;
+    @Autowired
+    private TestFixtures fixtures;
+
+    private TestFixtures.ClassFixture fixture;
+    private List<User> bookers;
+    private Schedule schedule;
+
+    @BeforeEach
+    void setUp() {
+        String run = TestFixtures.newRun();
+        fixture = fixtures.createClass("Stress", run, LocalDateTime.now().plusDays(1), SLOTS);
+        schedule = fixture.schedule();
+        bookers = fixtures.saveUsers("booker", run, BOOKERS, Role.ROLE_USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.deleteClass(fixture);
+        userRepository.deleteAll(bookers);
+    }
+
+    @Test
+    void concurrentSignUpsNeverOversellSchedule() throws Exception {
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(BOOKERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (User booker : bookers) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    scheduleService.signUpForWorkout(schedule.getId(), booker.getId());
+                    booked.incrementAndGet();
+                } catch (NoAvailableSlotsException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        Schedule reloaded = scheduleRepository.findById(schedule.getId()).orElseThrow();
+        assertThat(booked.get()).isEqualTo(SLOTS);
+        assertThat(rejected.get()).isEqualTo(BOOKERS - SLOTS);
+        assertThat(reloaded.getAvailableSlots()).isZero();
+        assertThat(workoutSubscriptionRepository.findAllBySchedule(reloaded)).hasSize(SLOTS);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.fitness.backend.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ranking and maintenance of the in-memory trigram index; no Spring context needed.
+ */
+class TrigramIndexTest {
+
+    private final TrigramIndex index = new TrigramIndex(1.0, 0.6);
+
+    @Test
+    void wordPrefixRanksAboveInnerSubstring() {
+        index.put(1, "Кроссфит");
+        index.put(2, "Йога");
+        index.put(3, "Стретчинг и йога для начинающих");
+        index.put(4, "Бодийога");
+
+        assertThat(index.search("йога", 0)).extracting(TrigramIndex.Match::id).containsExactly(2L, 3L, 4L);
+    }
+
+    @Test
+    void titleMatchRanksAboveDescriptionMatch() {
+        index.put(1, "Силовая", "Пилатес для спины");
+        index.put(2, "Пилатес", "Мягкая нагрузка");
+
+        assertThat(index.search("пилатес", 0)).extracting(TrigramIndex.Match::id).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void typoMatchesOnlyAboveFuzzyThreshold() {
+        index.put(1, "Стретчинг");
+        index.put(2, "Бокс");
+
+        // One wrong letter keeps most trigrams of the word, an unrelated word shares none
+        assertThat(index.search("стрейчинг", 0)).extracting(TrigramIndex.Match::id).containsExactly(1L);
+        assertThat(index.search("аэробика", 0)).isEmpty();
+        assertThat(index.search("стрейчинг", 0).get(0).score()).isLessThan(index.search("стретчинг", 0).get(0).score());
+    }
+
+    @Test
+    void shortQueryFindsInnerSubstring() {
+        index.put(1, "Кроссфит");
+        index.put(2, "Бокс");
+
+        assertThat(index.search("сс", 0)).extracting(TrigramIndex.Match::id).containsExactly(1L);
+    }
+
+    @Test
+    void limitKeepsTheBestMatches() {
+        index.put(1, "Тайский бокс");
+        index.put(2, "Бокс");
+        index.put(3, "Кикбоксинг");
+
+        // Both titles have "бокс" at a word start; equal scores are ordered by ID
+        assertThat(index.search("бокс", 2)).extracting(TrigramIndex.Match::id).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void putReplacesAndRemoveDropsTheDocument() {
+        index.put(1, "Йога");
+        index.put(1, "Пилатес");
+
+        assertThat(index.search("йога", 0)).isEmpty();
+        assertThat(index.search("пилатес", 0)).extracting(TrigramIndex.Match::id).containsExactly(1L);
+
+        index.remove(1);
+
+        assertThat(index.search("пилатес", 0)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void normalizeFoldsCaseYoAndPunctuation() {
+        assertThat(TrigramIndex.normalize("  Ёга-Пилатес!! ")).isEqualTo("ега пилатес");
+        assertThat(TrigramIndex.normalize(null)).isEmpty();
+    }
+}
@@ -0,0 +1,56 @@
+package ru.fitness.backend.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CSV line parsing of the user import; no Spring context needed.
+ */
+class UserImportServiceTest {
+
+    @Test
+    void plainFieldsAreSplitOnDelimiter() {
+        assertThat(UserImportService.parseLine("a@test.ru,Ivan Ivanov,+79990000000,secret123", ','))
+                .containsExactly("a@test.ru", "Ivan Ivanov", "+79990000000", "secret123");
+        assertThat(UserImportService.parseLine("a@test.ru;Ivan Ivanov;;secret123", ';'))
+                .containsExactly("a@test.ru", "Ivan Ivanov", "", "secret123");
+    }
+
+    @Test
+    void quotedFieldKeepsEmbeddedDelimiter() {
+        assertThat(UserImportService.parseLine("a@test.ru,\"Ivanov, Ivan\",,secret123", ','))
+                .containsExactly("a@test.ru", "Ivanov, Ivan", "", "secret123");
+        assertThat(UserImportService.parseLine("a@test.ru;\"Ivanov; Ivan\";;secret123", ';'))
+                .containsExactly("a@test.ru", "Ivanov; Ivan", "", "secret123");
+    }
+
+    @Test
+    void doubledQuoteInsideQuotesIsLiteralQuote() {
+        assertThat(UserImportService.parseLine("a@test.ru,\"Ivan \"\"Iron\"\" Ivanov\",,\"pa\"\"ss,word\"", ','))
+                .containsExactly("a@test.ru", "Ivan \"Iron\" Ivanov", "", "pa\"ss,word");
+    }
+
+    @Test
+    void otherDelimiterIsPartOfValue() {
+        assertThat(UserImportService.parseLine("a@test.ru;Ivanov, Ivan", ';'))
+                .containsExactly("a@test.ru", "Ivanov, Ivan");
+    }
+
+    @Test
+    void shortAndMalformedRowsDoNotThrow() {
+        assertThat(UserImportService.parseLine("a@test.ru", ',')).containsExactly("a@test.ru");
+        assertThat(UserImportService.parseLine("", ',')).containsExactly("");
+        assertThat(UserImportService.parseLine(",,", ',')).containsExactly("", "", "");
+        // Unclosed quote swallows the rest of the line into one field
+        List<String> unclosed = UserImportService.parseLine("a@test.ru,\"Ivan,secret123", ',');
+        assertThat(unclosed).containsExactly("a@test.ru", "Ivan,secret123");
+    }
+
+    @Test
+    void emailKeyIgnoresCase() {
+        assertThat(UserImportService.emailKey("Ivan.Ivanov@Test.RU")).isEqualTo("ivan.ivanov@test.ru");
+    }
+}
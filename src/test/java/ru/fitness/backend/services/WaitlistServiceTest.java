@@ -0,0 +1,146 @@
+package ru.fitness.backend.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.fitness.backend.TestFixtures;
+import ru.fitness.backend.dto.ScheduleDto;
+import ru.fitness.backend.models.Role;
+import ru.fitness.backend.models.Schedule;
+import ru.fitness.backend.models.User;
+import ru.fitness.backend.models.WorkoutSubscription;
+import ru.fitness.backend.repositories.ScheduleRepository;
+import ru.fitness.backend.repositories.UserRepository;
+import ru.fitness.backend.repositories.WorkoutSubscriptionRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Waitlist order numbers: positions after joins and leaves, and promotion when a seat is freed
+ * or the class capacity is raised.
+ */
+@SpringBootTest(properties = "fitness.booking.window.days-before=0")
+@Import(TestFixtures.class)
+class WaitlistServiceTest {
+
+    private static final int WAITERS = 4;
+
+    @Autowired
+    private WaitlistService waitlistService;
+    @Autowired
+    private ScheduleService scheduleService;
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private WorkoutSubscriptionRepository workoutSubscriptionRepository;
+    @Autowired
+    private TestFixtures fixtures;
+
+    private TestFixtures.ClassFixture fixture;
+    private List<User> waiters;
+    private User booker;
+    private Schedule schedule;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String run = TestFixtures.newRun();
+        fixture = fixtures.createClass("Waitlist", run, LocalDateTime.now().plusDays(1), 1);
+        schedule = fixture.schedule();
+        booker = fixtures.saveUser(TestFixtures.email("booker", run), Role.ROLE_USER);
+        waiters = fixtures.saveUsers("waiter", run, WAITERS, Role.ROLE_USER);
+
+        // Единственное место занято, остальные встают в очередь по порядку
+        scheduleService.signUpForWorkout(schedule.getId(), booker.getId());
+        for (int i = 0; i < WAITERS; i++) {
+            assertThat(joinAs(waiters.get(i))).isEqualTo(i + 1);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        fixtures.deleteClass(fixture);
+        userRepository.deleteAll(waiters);
+        userRepository.delete(booker);
+    }
+
+    @Test
+    void leavingFromTheMiddleMovesLaterWaitersUp() {
+        loginAs(waiters.get(1));
+        waitlistService.leaveWaitlist(schedule.getId());
+
+        assertThat(positionOf(waiters.get(0))).isEqualTo(1);
+        assertThat(positionOf(waiters.get(1))).isNull();
+        assertThat(positionOf(waiters.get(2))).isEqualTo(2);
+        assertThat(positionOf(waiters.get(3))).isEqualTo(3);
+    }
+
+    @Test
+    void cancellationPromotesTheHeadAndShortensTheQueue() {
+        WorkoutSubscription subscription = workoutSubscriptionRepository.findAllBySchedule(schedule).get(0);
+        scheduleService.adminCancelSubscription(subscription.getId());
+
+        assertThat(subscribedUserIds()).containsExactly(waiters.get(0).getId());
+        assertThat(positionOf(waiters.get(0))).isNull();
+        assertThat(positionOf(waiters.get(1))).isEqualTo(1);
+        assertThat(positionOf(waiters.get(3))).isEqualTo(3);
+        assertThat(scheduleRepository.findById(schedule.getId()).orElseThrow().getAvailableSlots()).isZero();
+    }
+
+    @Test
+    void raisingCapacityPromotesWaitersInOrder() {
+        scheduleService.updateSchedule(schedule.getId(), dtoWithCapacity(3));
+
+        assertThat(subscribedUserIds()).containsExactlyInAnyOrder(
+                booker.getId(), waiters.get(0).getId(), waiters.get(1).getId());
+        assertThat(positionOf(waiters.get(2))).isEqualTo(1);
+        assertThat(positionOf(waiters.get(3))).isEqualTo(2);
+        assertThat(scheduleRepository.findById(schedule.getId()).orElseThrow().getAvailableSlots()).isZero();
+
+        // Мест больше, чем ожидающих: очередь пустеет, лишние места остаются свободными
+        scheduleService.updateSchedule(schedule.getId(), dtoWithCapacity(WAITERS + 3));
+
+        assertThat(subscribedUserIds()).hasSize(WAITERS + 1);
+        assertThat(scheduleRepository.findById(schedule.getId()).orElseThrow().getAvailableSlots()).isEqualTo(2);
+    }
+
+    private long joinAs(User user) throws Exception {
+        loginAs(user);
+        return waitlistService.joinWaitlist(schedule.getId());
+    }
+
+    private Long positionOf(User user) {
+        loginAs(user);
+        return waitlistService.findPositionsForCurrentUser().get(schedule.getId());
+    }
+
+    private List<Long> subscribedUserIds() {
+        return workoutSubscriptionRepository.findAllBySchedule(schedule).stream()
+                .map(subscription -> subscription.getUser().getId())
+                .toList();
+    }
+
+    private ScheduleDto dtoWithCapacity(int capacity) {
+        ScheduleDto dto = new ScheduleDto();
+        dto.setWorkoutTypeId(fixture.workoutType().getId());
+        dto.setTrainerId(fixture.trainer().getId());
+        dto.setStartTime(schedule.getStartTime());
+        dto.setAvailableSlots(capacity);
+        return dto;
+    }
+
+    private static void loginAs(User user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}